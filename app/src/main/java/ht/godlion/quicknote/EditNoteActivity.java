@@ -1,6 +1,11 @@
 package ht.godlion.quicknote;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.EditText;
@@ -10,15 +15,65 @@ import androidx.appcompat.widget.Toolbar;
 
 import java.util.Date;
 
-import ht.godlion.quicknote.db.NotesDB;
-import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.db.AutosaveQueue;
+import ht.godlion.quicknote.db.NotesRepository;
+import ht.godlion.quicknote.metrics.Metrics;
 import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.text.ChunkedText;
 
 public class EditNoteActivity extends AppCompatActivity {
     private EditText inputNote;
-    private NotesDao dao;
-    private Note temp;
+    private NotesRepository repository;
+    private AutosaveQueue.Draft draft;
+    private final Handler autosaveHandler = new Handler(Looper.getMainLooper());
+    private final Runnable pendingAutosave = this::autosave;
+    private long firstUnsavedEdit = 0;
     public static final String NOTE_EXTRA_Key = "note_id";
+    private static final String CREATE_SECTION = "EditNoteActivity.onCreate";
+    private static final String SAVE = "EditNoteActivity.save";
+    /** Quiet time after the last keystroke before the note is saved. */
+    static final long AUTOSAVE_DELAY_MS = 1_000;
+    /** Longest an edit waits to be saved while the user keeps typing. */
+    static final long AUTOSAVE_MAX_DELAY_MS = 5_000;
+    /** How much of a large note the editor shows at a time. */
+    static final int WINDOW_LENGTH = ChunkedText.CHUNK_SIZE;
+
+    /** The text of a chunked note, or null when the whole note is in {@link #inputNote}. */
+    private ChunkedText largeText;
+    private int largeNoteId;
+    /** The part of {@link #largeText} shown in {@link #inputNote}. */
+    private int windowStart, windowEnd;
+    private boolean showingWindow;
+    /** Whether a save that stores the note in chunks is being waited for, to show it in parts. */
+    private boolean switchingToChunks;
+
+    private final TextWatcher autosaveWatcher = new TextWatcher() {
+        @Override
+        public void beforeTextChanged ( CharSequence text, int start, int count, int after ) {}
+
+        @Override
+        public void onTextChanged ( CharSequence text, int start, int before, int count ) {}
+
+        @Override
+        public void afterTextChanged ( Editable text ) { scheduleAutosave(); }
+    };
+
+    private final TextWatcher largeNoteWatcher = new TextWatcher() {
+        @Override
+        public void beforeTextChanged ( CharSequence text, int start, int count, int after ) {}
+
+        @Override
+        public void onTextChanged ( CharSequence text, int start, int before, int count ) {
+            if ( showingWindow ) return;
+            largeText.replace(windowStart + start, windowStart + start + before, text.subSequence(start, start + count));
+            windowEnd += count - before;
+        }
+
+        @Override
+        public void afterTextChanged ( Editable text ) {
+            if ( !showingWindow ) scheduleAutosave();
+        }
+    };
 
     /**
      * This function sets up the activity for editing a note, including setting the layout, toolbar,
@@ -32,16 +87,93 @@ public class EditNoteActivity extends AppCompatActivity {
     @Override
     protected void onCreate ( Bundle savedInstanceState ) {
         super.onCreate(savedInstanceState);
+        long start = Metrics.begin(CREATE_SECTION);
         setContentView(R.layout.activity_edite_note);
         Toolbar toolbar = findViewById(R.id.edit_note_activity_toolbar);
         setSupportActionBar(toolbar);
         inputNote = findViewById(R.id.input_note);
-        dao = NotesDB.getInstance(this).notesDao();
+        repository = NotesRepository.getInstance(this);
         if (getIntent().getExtras() != null) {
             int id = getIntent().getExtras().getInt(NOTE_EXTRA_Key, 0);
-            temp = dao.getNoteById(id);
-            inputNote.setText(temp.getNoteText());
-        } else inputNote.setFocusable(true);
+            Note cached = repository.getCachedNote(id);
+            if ( cached != null ) showNote(cached);
+            else repository.getNoteById(id, note -> {
+                if ( note == null || isDestroyed() ) return;
+                showNote(note);
+            });
+        } else {
+            draft = new AutosaveQueue.Draft(0);
+            inputNote.addTextChangedListener(autosaveWatcher);
+            inputNote.setFocusable(true);
+        }
+        Metrics.end(CREATE_SECTION, start);
+    }
+
+    /**
+     * The function shows the text of the note being edited and starts autosaving its changes.
+     *
+     * @param note The note to edit, either from the note cache or just loaded.
+     */
+    private void showNote ( Note note ) {
+        if ( note.isChunked() ) {
+            repository.openChunkedText(note.getId(), text -> {
+                if ( isDestroyed() ) return;
+                largeNoteId = note.getId();
+                largeText = text;
+                inputNote.addTextChangedListener(largeNoteWatcher);
+                showWindow(0);
+            });
+            return;
+        }
+        draft = new AutosaveQueue.Draft(note.getId());
+        inputNote.setText(note.getNoteText());
+        inputNote.addTextChangedListener(autosaveWatcher);
+    }
+
+    /**
+     * The function shows the part of a large note starting at {@code start}, loading its chunks
+     * first if needed. Only the chunks of the part shown, and the ones with unsaved edits, are
+     * kept in memory.
+     *
+     * @param start Where the part starts in the whole note.
+     */
+    private void showWindow ( int start ) {
+        int end = Math.min(largeText.length(), start + WINDOW_LENGTH);
+        long[] missing = largeText.getMissingOrds(start, end);
+        if ( missing.length > 0 ) {
+            // A save can renumber chunks while they load: ask again for any still missing.
+            repository.loadChunks(largeNoteId, largeText, missing, () -> {
+                if ( !isDestroyed() ) showWindow(start);
+            });
+            return;
+        }
+        if ( end < largeText.length() && end - 1 > start
+                && Character.isHighSurrogate(largeText.substring(end - 1, end).charAt(0)) ) end--;
+        showingWindow = true;
+        inputNote.setText(largeText.substring(start, end));
+        showingWindow = false;
+        windowStart = start;
+        windowEnd = end;
+        largeText.evictOutside(start, end);
+        if ( getSupportActionBar() != null )
+            getSupportActionBar().setSubtitle(getString(R.string.note_part, start, end, largeText.length()));
+        invalidateOptionsMenu();
+    }
+
+    /**
+     * The function saves the latest text right away when the activity goes to the background, so
+     * an edit is not lost if the process is killed there.
+     */
+    @Override
+    protected void onPause () {
+        super.onPause();
+        if ( firstUnsavedEdit != 0 ) autosave();
+    }
+
+    @Override
+    protected void onDestroy () {
+        autosaveHandler.removeCallbacks(pendingAutosave);
+        super.onDestroy();
     }
 
     /**
@@ -57,6 +189,26 @@ public class EditNoteActivity extends AppCompatActivity {
         return super.onCreateOptionsMenu(menu);
     }
 
+    /**
+     * The function shows the previous and next part items only while a large note is open, and
+     * enables each one only if there is a part to move to.
+     *
+     * @param menu The options menu created in onCreateOptionsMenu.
+     * @return The method is returning a boolean value.
+     */
+    @Override
+    public boolean onPrepareOptionsMenu ( Menu menu ) {
+        MenuItem previous = menu.findItem(R.id.action_previous_part);
+        MenuItem next = menu.findItem(R.id.action_next_part);
+        previous.setVisible(largeText != null);
+        next.setVisible(largeText != null);
+        if ( largeText != null ) {
+            previous.setEnabled(windowStart > 0);
+            next.setEnabled(windowEnd < largeText.length());
+        }
+        return super.onPrepareOptionsMenu(menu);
+    }
+
   /**
    * The function checks if the selected menu item is the "save_note" item and calls the onSaveNote()
    * method if it is.
@@ -68,27 +220,99 @@ public class EditNoteActivity extends AppCompatActivity {
     public boolean onOptionsItemSelected ( MenuItem item ) {
         int id = item.getItemId();
         if (id == R.id.save_note) onSaveNote();
+        else if (id == R.id.action_previous_part && largeText != null) showWindow(Math.max(0, windowStart - WINDOW_LENGTH));
+        else if (id == R.id.action_next_part && largeText != null) showWindow(windowEnd);
         return super.onOptionsItemSelected(item);
     }
 
     /**
-     * The function saves a note by getting the text from an input field, creating a new Note object
-     * with the text and current date, and either inserting it into the database or updating an
-     * existing note.
+     * The function saves any unsaved edit right away and finishes the activity once every autosave
+     * of the note has been applied, so the list shows the saved note when it comes back. Nothing
+     * happens while the note is empty. Records the time from the tap to the note being saved.
      */
     private void onSaveNote () {
-        String text = inputNote.getText().toString();
-        if ( !text.isEmpty() ) {
-            long date = new Date().getTime();
-            if ( temp == null ) {
-                temp = new Note(text, date);
-                dao.insertNote(temp);
-            } else {
-                temp.setNoteText(text);
-                temp.setNoteDate(date);
-                dao.updateNote(temp);
-            }
+        int length = largeText != null ? largeText.length() : inputNote.getText().length();
+        if ( (draft == null && largeText == null) || length == 0 ) return;
+        long start = System.nanoTime();
+        if ( firstUnsavedEdit != 0 ) autosave();
+        repository.flushAutosaves(() -> {
+            Metrics.record(SAVE, start);
             finish();
+        });
+    }
+
+    /**
+     * The function schedules an autosave once the user stops typing for {@link #AUTOSAVE_DELAY_MS},
+     * but no later than {@link #AUTOSAVE_MAX_DELAY_MS} after the first unsaved edit, which bounds
+     * how long an edit can stay unsaved and how many saves a burst of typing causes.
+     */
+    private void scheduleAutosave () {
+        long now = SystemClock.uptimeMillis();
+        if ( firstUnsavedEdit == 0 ) firstUnsavedEdit = now;
+        long delay = Math.min(AUTOSAVE_DELAY_MS, firstUnsavedEdit + AUTOSAVE_MAX_DELAY_MS - now);
+        autosaveHandler.removeCallbacks(pendingAutosave);
+        autosaveHandler.postDelayed(pendingAutosave, Math.max(0, delay));
+    }
+
+    /**
+     * The function hands the current text to the repository's autosave queue, which writes it in
+     * the background. An empty note is not saved. For a large note only the chunks changed since
+     * the last save are written. A note that has grown large is stored in chunks by its save, and
+     * the editor then shows it in parts.
+     */
+    private void autosave () {
+        autosaveHandler.removeCallbacks(pendingAutosave);
+        firstUnsavedEdit = 0;
+        if ( largeText != null ) {
+            ChunkedText.Changes changes = largeText.takeChanges(new Date().getTime());
+            if ( !changes.isEmpty() ) repository.saveChunks(largeNoteId, changes, null);
+            return;
+        }
+        String text = inputNote.getText().toString();
+        if ( draft == null || text.isEmpty() ) return;
+        repository.autosave(draft, text, new Date().getTime());
+        if ( ChunkedText.isLarge(text) && !switchingToChunks ) {
+            switchingToChunks = true;
+            repository.flushAutosaves(this::showChunks);
+        }
+    }
+
+    /**
+     * The function switches the editor to the parts of the note once the save that stored it in
+     * chunks is written, opening the part the cursor is in. If the user typed in the meantime, that
+     * text is saved first and the switch waits for it.
+     */
+    private void showChunks () {
+        switchingToChunks = false;
+        if ( isDestroyed() || draft == null ) return;
+        if ( firstUnsavedEdit != 0 ) {
+            autosave();
+            return;
         }
+        int noteId = draft.getNoteId();
+        repository.openChunkedText(noteId, text -> {
+            if ( isDestroyed() || draft == null || text.length() == 0 ) return;
+            int cursor = Math.min(inputNote.getSelectionStart(), text.length());
+            int start = cursor - cursor % WINDOW_LENGTH;
+            long[] missing = text.getMissingOrds(start, Math.min(text.length(), start + WINDOW_LENGTH));
+            // The whole text stays editable until its part is loaded, so nothing typed is lost.
+            repository.loadChunks(noteId, text, missing, () -> {
+                if ( isDestroyed() || draft == null ) return;
+                if ( firstUnsavedEdit != 0 ) {
+                    autosave();
+                    return;
+                }
+                inputNote.removeTextChangedListener(autosaveWatcher);
+                draft = null;
+                largeNoteId = noteId;
+                largeText = text;
+                // The whole text is shown until the part is: edits go to it at their own offsets.
+                windowStart = 0;
+                windowEnd = inputNote.length();
+                inputNote.addTextChangedListener(largeNoteWatcher);
+                showWindow(start);
+                inputNote.setSelection(Math.min(cursor - start, inputNote.length()));
+            });
+        });
     }
 }
@@ -1,35 +1,58 @@
 package ht.godlion.quicknote;
 
-import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.ActionMode;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
+import androidx.paging.PagedList;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.android.material.snackbar.Snackbar;
 
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 
+import ht.godlion.quicknote.adapters.NoteRowInflater;
+import ht.godlion.quicknote.adapters.NoteSelection;
 import ht.godlion.quicknote.adapters.NotesAdapter;
+import ht.godlion.quicknote.adapters.SearchResultsAdapter;
 import ht.godlion.quicknote.callbacks.MainActionModeCallback;
 import ht.godlion.quicknote.callbacks.NoteEventListener;
-import ht.godlion.quicknote.db.NotesDB;
-import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.callbacks.SearchResultListener;
+import ht.godlion.quicknote.db.NoteArchiver;
+import ht.godlion.quicknote.db.NotesRepository;
+import ht.godlion.quicknote.metrics.Metrics;
 import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NotePreview;
+import ht.godlion.quicknote.model.NoteSearchResult;
 import ht.godlion.quicknote.utils.NoteUtils;
+import ht.godlion.quicknote.utils.StartupTimer;
 
 import static ht.godlion.quicknote.EditNoteActivity.NOTE_EXTRA_Key;
 
@@ -37,20 +60,52 @@ import static ht.godlion.quicknote.EditNoteActivity.NOTE_EXTRA_Key;
  * The MainActivity class is responsible for managing the main screen of a note-taking app, including
  * displaying a list of notes, handling user interactions, and performing CRUD operations on the notes.
  */
-public class MainActivity extends AppCompatActivity implements NoteEventListener {
+public class MainActivity extends AppCompatActivity implements NoteEventListener, SearchResultListener {
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+    private static final int ESTIMATED_ROW_HEIGHT_DP = 80;
+    private static final String CREATE_SECTION = "MainActivity.onCreate";
+    private static final String FIRST_LIST = "MainActivity.firstList";
+    private static final String SHOW_NOTES = "MainActivity.showNotes";
     private RecyclerView recyclerView;
-    private ArrayList<Note> notes;
     private NotesAdapter adapter;
-    private NotesDao dao;
+    private SearchResultsAdapter searchAdapter;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable pendingSearch = this::runSearch;
+    private String searchQuery;
+    private final BroadcastReceiver timeZoneReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive ( Context context, Intent intent ) {
+            NoteUtils.onTimeZoneChanged();
+            adapter.notifyItemRangeChanged(0, adapter.getItemCount());
+        }
+    };
+    private NotesRepository repository;
     private MainActionModeCallback actionModeCallback;
-    private int checkedCount = 0;
+    private int noteCount = 0;
+    private boolean firstListRendered = false;
+    private long createStart;
     private FloatingActionButton fab;
+    private final ActivityResultLauncher<String> exportLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(BACKUP_MIME_TYPE), this::exportNotesTo);
+    private final ActivityResultLauncher<String[]> importLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::importNotesFrom);
+    private static final String BACKUP_MIME_TYPE = "application/gzip";
+    private static final String BACKUP_FILE_NAME = "quicknote-notes.jsonl.gz";
     public static final String THEME_Key = "app_theme";
     public static final String APP_PREFERENCES="notepad_settings";
+    private static final int ARCHIVE_LIST_LIMIT = 100;
+    /** The ages offered for archiving, in days, in the order of {@code R.array.archive_after_choices}. */
+    private static final int[] ARCHIVE_AFTER_DAYS = {0, 30, 90, 365};
+    /**
+     * Longest text shared through an intent extra. The intent goes through a binder transaction,
+     * which fails above 1 MB, and the text takes two bytes a char there.
+     */
+    private static final int MAX_SHARE_LENGTH = 256 * 1024;
 
   /**
    * The `onCreate` function sets up the main activity by initializing the toolbar, setting the layout,
-   * configuring the RecyclerView, setting up a FloatingActionButton, and initializing the NotesDB DAO.
+   * configuring the RecyclerView with its long-lived adapter and swipe-to-delete helper, setting up a
+   * FloatingActionButton, and initializing the notes repository.
    * 
    * @param savedInstanceState The savedInstanceState parameter is a Bundle object that contains the
    * activity's previously saved state. It is used to restore the activity's state when it is
@@ -60,21 +115,53 @@ public class MainActivity extends AppCompatActivity implements NoteEventListener
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        createStart = Metrics.begin(CREATE_SECTION);
+        StartupTimer.mark(StartupTimer.MAIN_ACTIVITY_CREATED);
         setContentView(R.layout.activity_main);
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
         recyclerView = findViewById(R.id.notes_list);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        NoteRowInflater rows = new NoteRowInflater(this);
+        rows.attach(recyclerView);
+        rows.prepare(recyclerView, rowsPerScreen());
+        adapter = new NotesAdapter(rows);
+        adapter.setListener(this);
+        recyclerView.setAdapter(adapter);
+        swipeToDeleteHelper.attachToRecyclerView(recyclerView);
+        searchAdapter = new SearchResultsAdapter(rows);
+        searchAdapter.setListener(this);
 
         fab = (FloatingActionButton) findViewById(R.id.fab);
         fab.setOnClickListener(view -> onAddNewNote());
 
-        dao = NotesDB.getInstance(this).notesDao();
+        repository = NotesRepository.getInstance(this);
+        observeNotes();
+        registerReceiver(timeZoneReceiver, new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED));
+        Metrics.end(CREATE_SECTION, createStart);
+    }
+
+    /**
+     * The function estimates how many note rows fit on the screen, plus one partly shown at each
+     * edge, which is how many rows the first layout needs.
+     */
+    private int rowsPerScreen () {
+        float rowHeight = ESTIMATED_ROW_HEIGHT_DP * getResources().getDisplayMetrics().density;
+        return (int) (getResources().getDisplayMetrics().heightPixels / rowHeight) + 2;
+    }
+
+    @Override
+    protected void onDestroy () {
+        unregisterReceiver(timeZoneReceiver);
+        searchHandler.removeCallbacks(pendingSearch);
+        super.onDestroy();
     }
 
     /**
-     * The function is used to create the options menu for an Android application.
+     * The function is used to create the options menu for an Android application. Expanding the
+     * search item switches the list to search results, which are refreshed as the user types. The
+     * metrics item only shows in debuggable builds.
      * 
      * @param menu The menu parameter is an object of the Menu class. It represents the menu that will
      * be displayed in the activity's action bar.
@@ -83,84 +170,279 @@ public class MainActivity extends AppCompatActivity implements NoteEventListener
     @Override
     public boolean onCreateOptionsMenu ( Menu menu ) {
         getMenuInflater().inflate( R.menu.menu_main, menu );
+        menu.findItem( R.id.action_dump_metrics )
+                .setVisible( (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0 );
+        MenuItem searchItem = menu.findItem( R.id.action_search );
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit ( String query ) {
+                onSearchQueryChanged(query, 0);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange ( String newText ) {
+                onSearchQueryChanged(newText, SEARCH_DEBOUNCE_MS);
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand ( @NonNull MenuItem item ) {
+                enterSearchMode();
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse ( @NonNull MenuItem item ) {
+                exitSearchMode();
+                return true;
+            }
+        });
         return true;
     }
 
    /**
-    * The function is an override of the onOptionsItemSelected method and returns the result of calling
-    * the super class's onOptionsItemSelected method with the given MenuItem parameter.
+    * The function handles the export and import menu items by letting the user pick a document, and
+    * passes any other item to the super class's onOptionsItemSelected method.
     * 
     * @param item The parameter "item" is of type MenuItem and represents the menu item that was
     * selected by the user.
-    * @return The method is returning the value of the super class's onOptionsItemSelected method.
+    * @return The method returns true when it handled the item, otherwise the value of the super
+    * class's onOptionsItemSelected method.
     */
     @Override
-    public boolean onOptionsItemSelected ( @NonNull MenuItem item ) { return super.onOptionsItemSelected(item); }
+    public boolean onOptionsItemSelected ( @NonNull MenuItem item ) {
+        int id = item.getItemId();
+        if ( id == R.id.action_export_notes ) {
+            exportLauncher.launch(BACKUP_FILE_NAME);
+            return true;
+        } else if ( id == R.id.action_import_notes ) {
+            importLauncher.launch(new String[]{BACKUP_MIME_TYPE, "application/x-ndjson", "application/json", "text/plain"});
+            return true;
+        } else if ( id == R.id.action_archived_notes ) {
+            showArchivedNotes();
+            return true;
+        } else if ( id == R.id.action_archive_after ) {
+            showArchiveAfter();
+            return true;
+        } else if ( id == R.id.action_dump_metrics ) {
+            showMetrics();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
 
-   /**
-    * The function `onResume()` is overridden to call the `loadNotes()` method when the activity
-    * resumes.
-    */
-    @Override
-    protected void onResume() {
-        super.onResume();
-        loadNotes();
+    /**
+     * The function shows the startup times, counters and latency percentiles collected so far, and
+     * lets the user share them as plain text.
+     */
+    private void showMetrics () {
+        String dump = Metrics.dump();
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.metrics)
+                .setMessage(dump)
+                .setPositiveButton(android.R.string.ok, null)
+                .setNeutralButton(R.string.share, ( dialog, which ) -> {
+                    Intent share = new Intent(Intent.ACTION_SEND);
+                    share.setType("text/plain");
+                    share.putExtra(Intent.EXTRA_TEXT, dump);
+                    startActivity(Intent.createChooser(share, getString(R.string.metrics)));
+                })
+                .show();
+    }
+
+    /**
+     * The function lets the user pick the age after which notes are archived, saves it in the
+     * {@link NoteArchiver#PREF_ARCHIVE_AFTER_DAYS} preference read at every start, and archives the
+     * notes already older than that right away.
+     */
+    private void showArchiveAfter () {
+        SharedPreferences preferences = getSharedPreferences(APP_PREFERENCES, MODE_PRIVATE);
+        int days = preferences.getInt(NoteArchiver.PREF_ARCHIVE_AFTER_DAYS, NoteArchiver.DEFAULT_ARCHIVE_AFTER_DAYS);
+        int checked = 0;
+        for (int i = 0; i < ARCHIVE_AFTER_DAYS.length; i++) if ( ARCHIVE_AFTER_DAYS[i] == days ) checked = i;
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.archive_after)
+                .setSingleChoiceItems(R.array.archive_after_choices, checked, ( dialog, which ) -> {
+                    int chosen = ARCHIVE_AFTER_DAYS[which];
+                    preferences.edit().putInt(NoteArchiver.PREF_ARCHIVE_AFTER_DAYS, chosen).apply();
+                    dialog.dismiss();
+                    if ( chosen > 0 )
+                        repository.archiveOldNotes(chosen * 86_400_000L, count -> {
+                            if ( count > 0 && !isDestroyed() )
+                                Toast.makeText(this, count + " Note(s) archived", Toast.LENGTH_SHORT).show();
+                        });
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * The function lists the newest archived notes, or the archived notes matching the current search,
+     * and moves the one the user picks back into the note list before opening it.
+     */
+    private void showArchivedNotes () {
+        if ( searchQuery != null && !searchQuery.trim().isEmpty() )
+            repository.searchArchive(searchQuery, ARCHIVE_LIST_LIMIT, results -> {
+                List<Integer> ids = new ArrayList<>(results.size());
+                List<String> texts = new ArrayList<>(results.size());
+                for (NoteSearchResult result : results) {
+                    ids.add(result.getId());
+                    texts.add(result.getSnippet().replace(NoteSearchResult.HIGHLIGHT_START, "")
+                            .replace(NoteSearchResult.HIGHLIGHT_END, ""));
+                }
+                showArchivedNotes(ids, texts);
+            });
+        else
+            repository.getArchivedNotes(ARCHIVE_LIST_LIMIT, notes -> {
+                List<Integer> ids = new ArrayList<>(notes.size());
+                List<String> texts = new ArrayList<>(notes.size());
+                for (NotePreview note : notes) {
+                    ids.add(note.getId());
+                    texts.add(NoteUtils.dateFromLong(note.getNoteDate()) + "\n" + note.getPreview());
+                }
+                showArchivedNotes(ids, texts);
+            });
+    }
+
+    private void showArchivedNotes ( List<Integer> ids, List<String> texts ) {
+        if ( isDestroyed() ) return;
+        if ( ids.isEmpty() ) {
+            Toast.makeText(this, "No archived note(s)", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.archived_notes)
+                .setItems(texts.toArray(new String[0]), ( dialog, which ) -> {
+                    int noteId = ids.get(which);
+                    repository.restoreNotes(Collections.singletonList(noteId), () -> openNote(noteId));
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * The function streams every note, gzipped, to the document the user picked.
+     *
+     * @param uri The document to write to, or null if the user cancelled.
+     */
+    private void exportNotesTo ( Uri uri ) {
+        if ( uri == null ) return;
+        OutputStream out;
+        try {
+            out = getContentResolver().openOutputStream(uri);
+        } catch (FileNotFoundException e) {
+            out = null;
+        }
+        if ( out == null ) {
+            Toast.makeText(this, "Export failed", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        repository.exportNotes(out, true, count -> Toast.makeText(this,
+                count < 0 ? "Export failed" : count + " Note(s) exported", Toast.LENGTH_SHORT).show());
+    }
+
+    /**
+     * The function imports the notes of the backup the user picked; the list updates itself.
+     *
+     * @param uri The backup to read, or null if the user cancelled.
+     */
+    private void importNotesFrom ( Uri uri ) {
+        if ( uri == null ) return;
+        InputStream in;
+        try {
+            in = getContentResolver().openInputStream(uri);
+        } catch (FileNotFoundException e) {
+            in = null;
+        }
+        if ( in == null ) {
+            Toast.makeText(this, "Import failed", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        repository.importNotes(in, count ->
+                Toast.makeText(this, count < 0 ? "Import failed" : count + " Note(s) imported", Toast.LENGTH_SHORT).show());
     }
 
    /**
     * The function opens the EditNoteActivity and passes the ID of the clicked note as an extra.
     * 
-    * @param note The "note" parameter is an object of the Note class. It represents a specific note
+    * @param note The "note" parameter is an object of the NotePreview class. It represents a specific note
     * that the user has clicked on.
     */
     @Override
-    public void onNoteClick (Note note ) {
+    public void onNoteClick (NotePreview note ) { openNote(note.getId()); }
+
+    /**
+     * The function opens the note of the clicked search result.
+     *
+     * @param result The search result the user clicked on.
+     */
+    @Override
+    public void onSearchResultClick ( NoteSearchResult result ) { openNote(result.getId()); }
+
+    private void openNote ( int noteId ) {
         Intent edit = new Intent( this, EditNoteActivity.class );
-        edit.putExtra(NOTE_EXTRA_Key, note.getId());
+        edit.putExtra(NOTE_EXTRA_Key, noteId);
         startActivity(edit);
     }
 
   /**
-   * The function is triggered when a note is long-clicked and it enables multi-check mode, updates the
-   * checked count, and sets up the action mode callback.
+   * The function is triggered when a note is long-clicked and it enables multi-check mode, selects the
+   * note, and sets up the action mode callback. While the mode is active the adapter updates the
+   * selection itself, and this activity only refreshes the count shown in the action bar.
    * 
-   * @param note The "note" parameter is an object of the Note class, which represents a single note in
+   * @param note The "note" parameter is an object of the NotePreview class, which represents a single note in
    * the application.
    */
     @Override
-    public void onNoteLongClick ( Note note ) {
-        note.setChecked(true);
-        checkedCount = 1;
+    public void onNoteLongClick ( NotePreview note ) {
+        adapter.getSelection().select(note.getId());
         adapter.setMultiCheckMode(true);
         adapter.setListener( new NoteEventListener () {
-            @SuppressLint("NotifyDataSetChanged")
             @Override
-            public void onNoteClick ( Note note ) {
-                note.setChecked( !note.isChecked() );
-                if ( note.isChecked () ) checkedCount++;
-                else checkedCount--;
-                actionModeCallback.changeShareItemVisible(checkedCount <= 1);
-                if (checkedCount == 0) actionModeCallback.getAction().finish();
-                actionModeCallback.setCount(checkedCount + "/" + notes.size());
-                adapter.notifyDataSetChanged();
+            public void onNoteClick ( NotePreview note ) {
+                onSelectionChanged();
             }
 
             @Override
-            public void onNoteLongClick ( Note note ) {}
+            public void onNoteLongClick ( NotePreview note ) {
+                onSelectionChanged();
+            }
         });
 
         actionModeCallback = new MainActionModeCallback() {
             @Override
             public boolean onActionItemClicked(ActionMode actionMode, MenuItem menuItem) {
+                if ( menuItem.getItemId() == R.id.action_select_all ) {
+                    adapter.selectAll();
+                    onSelectionChanged();
+                    return true;
+                }
                 if ( menuItem.getItemId() == R.id.action_delete_notes ) onDeleteMultiNotes();
                 else if (menuItem.getItemId() == R.id.action_share_note) onShareNote();
+                else if (menuItem.getItemId() == R.id.action_archive_notes) onArchiveMultiNotes();
                 actionMode.finish();
                 return false;
             }
         };
         startActionMode(actionModeCallback);
         fab.setVisibility(View.GONE);
-        actionModeCallback.setCount(checkedCount + "/" + notes.size());
+        onSelectionChanged();
+    }
+
+    /**
+     * The function updates the action bar to the current selection: it shows the selected count,
+     * only offers sharing when a single note is selected, and leaves the mode once nothing is.
+     */
+    private void onSelectionChanged () {
+        if ( actionModeCallback == null ) return;
+        NoteSelection selection = adapter.getSelection();
+        int selectedCount = selection.getCount(noteCount);
+        actionModeCallback.changeShareItemVisible(selectedCount == 1 && !selection.isAllSelected());
+        actionModeCallback.setCount(selectedCount + "/" + noteCount);
+        if ( selectedCount == 0 && actionModeCallback.getAction() != null ) actionModeCallback.getAction().finish();
     }
 
    /**
@@ -175,6 +457,7 @@ public class MainActivity extends AppCompatActivity implements NoteEventListener
         super.onActionModeFinished(mode);
         adapter.setMultiCheckMode(false);
         adapter.setListener(this);
+        actionModeCallback = null;
         fab.setVisibility(View.VISIBLE);
     }
 
@@ -187,18 +470,20 @@ public class MainActivity extends AppCompatActivity implements NoteEventListener
 
         @Override
         public void onSwiped ( @NonNull RecyclerView.ViewHolder viewHolder, int direction ) {
-            if (notes != null) {
-                Note swipedNote = notes.get(viewHolder.getAdapterPosition());
-                if (swipedNote != null) swipeToDelete(swipedNote, viewHolder);
+            if (adapter != null) {
+                NotePreview swipedNote = adapter.getNoteAt(viewHolder.getAdapterPosition());
+                if (swipedNote != null) swipeToDelete(swipedNote);
             }
         }
     });
 
     /**
-     * The function checks if the notes list is empty and shows or hides the empty view accordingly.
+     * The function checks if the shown list, notes or search results, is empty and shows or hides the
+     * empty view accordingly.
      */
     private void showEmptyView () {
-        if ( notes.size() == 0 ) {
+        RecyclerView.Adapter<?> shown = recyclerView.getAdapter();
+        if ( shown == null || shown.getItemCount() == 0 ) {
             this.recyclerView.setVisibility(View.GONE);
             findViewById(R.id.empty_notes_view).setVisibility(View.VISIBLE);
         } else {
@@ -208,19 +493,86 @@ public class MainActivity extends AppCompatActivity implements NoteEventListener
     }
 
     /**
-     * The function loads notes from a data source, sets up an adapter and listener for a RecyclerView,
-     * and attaches a swipe-to-delete helper to the RecyclerView.
+     * The function subscribes, once, to the note list, the note count and the notes version. Room
+     * pushes a new list only when the notes table changes, whether from this screen, the editor's
+     * autosave or an import, and only while the activity is started; an active search is re-run on
+     * the same changes.
      */
-    private void loadNotes () {
-        this.notes = new ArrayList<>();
-        List<Note> list = dao.getNotes();
-        this.notes.addAll( list );
-        this.adapter = new NotesAdapter( this, this.notes );
-
-        this.adapter.setListener(this);
-        this.recyclerView.setAdapter(adapter);
-        showEmptyView();
+    private void observeNotes () {
+        repository.getNotesLive().observe(this, this::showNotes);
+        repository.getNoteCount().observe(this, count -> noteCount = count != null ? count : 0);
+        repository.getNotesVersion().observe(this, version -> { if ( searchQuery != null ) runSearch(); });
+    }
+
+    /**
+     * The function submits a paged list of notes to the adapter, which diffs it against the current
+     * list and rebinds only the rows that changed. The first list shown after launch is reported as
+     * fully drawn once its rows have been laid out. Records how long each list takes to diff and
+     * commit, and how long the first one took from the start of onCreate.
+     *
+     * @param notes The latest list of notes.
+     */
+    private void showNotes ( PagedList<NotePreview> notes ) {
+        long submitted = System.nanoTime();
+        adapter.submitList( notes, () -> {
+            Metrics.record(SHOW_NOTES, submitted);
+            if ( !firstListRendered ) Metrics.record(FIRST_LIST, createStart);
+            if ( searchQuery == null ) showEmptyView();
+            if ( !firstListRendered ) {
+                firstListRendered = true;
+                recyclerView.post(() -> {
+                    StartupTimer.mark(StartupTimer.FIRST_LIST_RENDERED);
+                    reportFullyDrawn();
+                });
+            }
+        } );
+    }
+
+    /**
+     * The function switches the list to search results, reusing the note rows already inflated;
+     * swipe-to-delete only applies to notes.
+     */
+    private void enterSearchMode () {
+        searchQuery = "";
+        swipeToDeleteHelper.attachToRecyclerView(null);
+        recyclerView.swapAdapter(searchAdapter, true);
+        fab.setVisibility(View.GONE);
+        runSearch();
+    }
+
+    /**
+     * The function drops any pending search and switches the list back to the notes.
+     */
+    private void exitSearchMode () {
+        searchQuery = null;
+        searchHandler.removeCallbacks(pendingSearch);
+        searchAdapter.submitList(null);
+        recyclerView.swapAdapter(adapter, true);
         swipeToDeleteHelper.attachToRecyclerView(recyclerView);
+        fab.setVisibility(View.VISIBLE);
+        showEmptyView();
+    }
+
+    /**
+     * The function debounces keystrokes: the search only runs once the query has not changed for the
+     * given delay.
+     *
+     * @param query The text in the search view.
+     * @param delayMs How long to wait before searching.
+     */
+    private void onSearchQueryChanged ( String query, long delayMs ) {
+        if ( searchQuery == null ) return;
+        searchQuery = query;
+        searchHandler.removeCallbacks(pendingSearch);
+        searchHandler.postDelayed(pendingSearch, delayMs);
+    }
+
+    private void runSearch () {
+        if ( searchQuery == null ) return;
+        repository.search(searchQuery, results -> {
+            if ( isDestroyed() || searchQuery == null ) return;
+            searchAdapter.submitList(results, this::showEmptyView);
+        });
     }
 
     /**
@@ -229,49 +581,87 @@ public class MainActivity extends AppCompatActivity implements NoteEventListener
     private void onAddNewNote () { startActivity(new Intent(this, EditNoteActivity.class)); }
 
     /**
-     * The function `swipeToDelete` displays an alert dialog asking the user to confirm the deletion of
-     * a note, and if confirmed, deletes the note from the database, removes it from the list of notes,
-     * updates the RecyclerView, and shows an empty view if necessary.
+     * The function `swipeToDelete` deletes the swiped note right away and offers to undo it; the list
+     * updates itself once the delete is applied.
      * 
-     * @param swipedNote The swipedNote parameter is the Note object that is being swiped and is to be
+     * @param swipedNote The swipedNote parameter is the NotePreview object that is being swiped and is to be
      * deleted.
-     * @param viewHolder The viewHolder parameter is the ViewHolder object associated with the swiped
-     * note in the RecyclerView. It contains information about the view and its position in the
-     * RecyclerView.
      */
-    private void swipeToDelete ( final Note swipedNote, final RecyclerView.ViewHolder viewHolder ) {
-        new AlertDialog.Builder( MainActivity.this )
-                .setMessage("Delete Note ?")
-                .setPositiveButton("Delete", ( dialogInterface, i ) -> {
-                    dao.deleteNote(swipedNote);
-                    notes.remove(swipedNote);
-                    adapter.notifyItemRemoved(viewHolder.getAdapterPosition());
-                    showEmptyView();
-                })
-                .setNegativeButton("Cancel", ( dialogInterface, i ) -> Objects.requireNonNull(recyclerView.getAdapter()).notifyItemChanged(viewHolder.getAdapterPosition() ))
-                .setCancelable(false)
-                .create().show();
+    private void swipeToDelete ( final NotePreview swipedNote ) {
+        long deletedAt = repository.deleteNoteById(swipedNote.getId(), null);
+        showUndoDelete("Note deleted", deletedAt);
     }
 
     /**
-     * The function onDeleteMultiNotes deletes multiple notes from a list and displays a toast message
-     * indicating the number of notes deleted.
+     * The function onDeleteMultiNotes deletes multiple notes from a list and displays a snackbar
+     * indicating the number of notes deleted, with an action to undo the delete.
      */
     private void onDeleteMultiNotes () {
-        List<Note> checkedNotes = adapter.getCheckedNotes();
-        if ( checkedNotes.size() != 0 ) {
-            for (Note note : checkedNotes) dao.deleteNote(note);
-            loadNotes();
-            Toast.makeText(this, checkedNotes.size() + " Note(s) Delete successfully !", Toast.LENGTH_SHORT).show();
+        NoteSelection selection = adapter.getSelection();
+        int selectedCount = selection.getCount(noteCount);
+        if ( selectedCount != 0 ) {
+            int[] ids = selection.getIds();
+            long deletedAt;
+            if ( selection.isAllSelected() ) deletedAt = repository.deleteNotesExcept(ids, null);
+            else {
+                List<Integer> noteIds = new ArrayList<>(ids.length);
+                for (int id : ids) noteIds.add(id);
+                deletedAt = repository.deleteNotesById(noteIds, null);
+            }
+            showUndoDelete(selectedCount + " Note(s) deleted", deletedAt);
         } else Toast.makeText(this, "No Note(s) selected", Toast.LENGTH_SHORT).show();
     }
 
     /**
-     * The function "onShareNote" allows the user to share a note by creating an intent with the note's
-     * text, creation date, and app name, and starting the share activity.
+     * The function shows a snackbar whose undo action brings back the notes of the delete made at
+     * {@code deletedAt}.
+     */
+    private void showUndoDelete ( String message, long deletedAt ) {
+        Snackbar.make(recyclerView, message, Snackbar.LENGTH_LONG)
+                .setAction(R.string.undo, view -> repository.undoDelete(deletedAt, null))
+                .show();
+    }
+
+    /**
+     * The function onArchiveMultiNotes moves the selected notes to the archive and, once done,
+     * displays a toast message indicating the number of notes archived.
+     */
+    private void onArchiveMultiNotes () {
+        NoteSelection selection = adapter.getSelection();
+        int selectedCount = selection.getCount(noteCount);
+        if ( selectedCount != 0 ) {
+            int[] ids = selection.getIds();
+            NotesRepository.Callback<Integer> onArchived = archived ->
+                    Toast.makeText(this, archived + " Note(s) archived", Toast.LENGTH_SHORT).show();
+            if ( selection.isAllSelected() ) repository.archiveNotesExcept(ids, onArchived);
+            else {
+                List<Integer> noteIds = new ArrayList<>(ids.length);
+                for (int id : ids) noteIds.add(id);
+                repository.archiveNotes(noteIds, onArchived);
+            }
+        } else Toast.makeText(this, "No Note(s) selected", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * The function "onShareNote" allows the user to share a note by loading its full text, creating an
+     * intent with the note's text, creation date, and app name, and starting the share activity. A
+     * chunked note, or any text too long for an intent, is not shared: the user is told to export it
+     * instead.
      */
     private void onShareNote () {
-        Note note = adapter.getCheckedNotes().get(0);
+        NoteSelection selection = adapter.getSelection();
+        int[] ids = selection.getIds();
+        if ( selection.isAllSelected() || ids.length == 0 ) return;
+        repository.getNoteById(ids[0], note -> {
+            if ( note == null || isDestroyed() ) return;
+            String text = note.getNoteText();
+            if ( note.isChunked() || ( text != null && text.length() > MAX_SHARE_LENGTH ) )
+                Toast.makeText(this, "This note is too large to share, export it instead", Toast.LENGTH_LONG).show();
+            else shareNote(note);
+        });
+    }
+
+    private void shareNote ( Note note ) {
         Intent share = new Intent(Intent.ACTION_SEND);
         share.setType("text/plain");
         String notetext = note.getNoteText() + "\n\n Create on : " +
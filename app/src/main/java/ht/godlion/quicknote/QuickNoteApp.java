@@ -0,0 +1,33 @@
+package ht.godlion.quicknote;
+
+import android.app.Application;
+
+import ht.godlion.quicknote.db.NoteArchiver;
+import ht.godlion.quicknote.db.NotesRepository;
+import ht.godlion.quicknote.utils.AppExecutors;
+import ht.godlion.quicknote.utils.StartupTimer;
+
+/**
+ * The QuickNoteApp class starts opening the notes database and loading the first page of the note
+ * list in the background as soon as the process starts, so that work overlaps with the creation of
+ * the first activity instead of following it. It then queues the purge of notes deleted more than
+ * {@link NotesRepository#DELETED_NOTE_TTL_MILLIS} ago and the archiving of notes older than the
+ * {@link NoteArchiver#PREF_ARCHIVE_AFTER_DAYS} setting, both of which run in short batches behind any
+ * save.
+ */
+public class QuickNoteApp extends Application {
+
+    @Override
+    public void onCreate () {
+        super.onCreate();
+        StartupTimer.mark(StartupTimer.APPLICATION_CREATED);
+        NotesRepository repository = NotesRepository.getInstance(this);
+        repository.prewarm();
+        repository.purgeDeletedNotes(NotesRepository.DELETED_NOTE_TTL_MILLIS, null);
+        AppExecutors.getInstance().diskRead().execute(() -> {
+            int days = getSharedPreferences(MainActivity.APP_PREFERENCES, MODE_PRIVATE)
+                    .getInt(NoteArchiver.PREF_ARCHIVE_AFTER_DAYS, NoteArchiver.DEFAULT_ARCHIVE_AFTER_DAYS);
+            if (days > 0) repository.archiveOldNotes(days * 86_400_000L, null);
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package ht.godlion.quicknote.adapters;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayDeque;
+
+import ht.godlion.quicknote.R;
+
+/**
+ * Creates the {@code note_layout} rows shared by {@link NotesAdapter} and {@link SearchResultsAdapter}.
+ * Rows can be inflated ahead of time off the main thread with {@link #prepare}; creating a holder
+ * takes a prepared row before inflating a new one, so the first layout and the first fling do not
+ * pay for inflation on the main thread.
+ * <p>
+ * Both adapters use the same view type and holder, so the list can swap between them with
+ * {@code RecyclerView.swapAdapter(adapter, true)} and keep its recycled rows.
+ */
+public class NoteRowInflater {
+    public static final int VIEW_TYPE_NOTE = 0;
+    /**
+     * How many detached rows the pool keeps. A fling recycles up to a screenful of rows at once,
+     * far more than the default of 5 per view type.
+     */
+    public static final int POOL_SIZE = 20;
+
+    private final LayoutInflater inflater;
+    private final ArrayDeque<View> prepared = new ArrayDeque<>();
+    private final RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+    private int inflateCount;
+    private int preparedCount;
+    private int preparedUseCount;
+
+    public NoteRowInflater ( Context context ) {
+        this.inflater = LayoutInflater.from(context);
+        pool.setMaxRecycledViews(VIEW_TYPE_NOTE, POOL_SIZE);
+    }
+
+    /**
+     * Makes the list recycle its rows through the shared pool.
+     */
+    public void attach ( RecyclerView recyclerView ) {
+        recyclerView.setRecycledViewPool(pool);
+    }
+
+    /**
+     * Inflates {@code count} rows on a background thread. Each row becomes available on the main
+     * thread as soon as it is ready; rows still pending are simply inflated on demand.
+     */
+    public void prepare ( @NonNull ViewGroup parent, int count ) {
+        AsyncLayoutInflater async = new AsyncLayoutInflater(inflater.getContext());
+        for (int i = 0; i < count; i++)
+            async.inflate(R.layout.note_layout, parent, ( view, resId, viewParent ) -> {
+                prepared.add(view);
+                preparedCount++;
+            });
+    }
+
+    @NonNull
+    NotesAdapter.NoteHolder createHolder ( @NonNull ViewGroup parent ) {
+        View view = prepared.poll();
+        if (view != null) preparedUseCount++;
+        else {
+            view = inflater.inflate(R.layout.note_layout, parent, false);
+            inflateCount++;
+        }
+        return new NotesAdapter.NoteHolder(view);
+    }
+
+    @NonNull
+    public RecyclerView.RecycledViewPool getPool () {
+        return pool;
+    }
+
+    /** Rows inflated on demand on the main thread. */
+    public int getInflateCount () {
+        return inflateCount;
+    }
+
+    /** Rows inflated ahead of time by {@link #prepare}. */
+    public int getPreparedCount () {
+        return preparedCount;
+    }
+
+    /** Holders created from a prepared row. */
+    public int getPreparedUseCount () {
+        return preparedUseCount;
+    }
+}
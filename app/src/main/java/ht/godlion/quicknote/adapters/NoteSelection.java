@@ -0,0 +1,74 @@
+package ht.godlion.quicknote.adapters;
+
+import androidx.annotation.NonNull;
+
+import ht.godlion.quicknote.utils.IntSet;
+
+/**
+ * The notes selected in multi-select mode, kept as note IDs rather than flags on loaded rows, so
+ * it covers rows whose page was never loaded and survives pages being dropped or reloaded.
+ * <p>
+ * Select-all does not enumerate the notes: it flips the set into exclusion mode, where the IDs it
+ * holds are the notes that were deselected afterwards. Every operation therefore costs
+ * O(IDs held), never O(notes).
+ */
+public class NoteSelection {
+    private final IntSet ids = new IntSet();
+    private boolean allSelected;
+
+    public boolean isSelected ( int noteId ) {
+        return allSelected != ids.contains(noteId);
+    }
+
+    public void select ( int noteId ) {
+        if (allSelected) ids.remove(noteId);
+        else ids.add(noteId);
+    }
+
+    public void deselect ( int noteId ) {
+        if (allSelected) ids.add(noteId);
+        else ids.remove(noteId);
+    }
+
+    /**
+     * @return Whether the note is selected afterwards.
+     */
+    public boolean toggle ( int noteId ) {
+        boolean selected = !isSelected(noteId);
+        if (selected) select(noteId);
+        else deselect(noteId);
+        return selected;
+    }
+
+    public void selectAll () {
+        allSelected = true;
+        ids.clear();
+    }
+
+    public void clear () {
+        allSelected = false;
+        ids.clear();
+    }
+
+    /**
+     * Whether the selection is every note except {@link #getIds()}.
+     */
+    public boolean isAllSelected () {
+        return allSelected;
+    }
+
+    /**
+     * The selected note IDs or, when {@link #isAllSelected()}, the IDs of the notes left out.
+     */
+    @NonNull
+    public int[] getIds () {
+        return ids.toArray();
+    }
+
+    /**
+     * @param noteCount How many notes there are in total, only needed after a select-all.
+     */
+    public int getCount ( int noteCount ) {
+        return allSelected ? Math.max(0, noteCount - ids.size()) : ids.size();
+    }
+}
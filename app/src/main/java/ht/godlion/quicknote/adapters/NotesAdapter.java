@@ -1,10 +1,12 @@
 package ht.godlion.quicknote.adapters;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.PagedList;
+import androidx.paging.PagedListAdapter;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CheckBox;
@@ -12,77 +14,178 @@ import android.widget.TextView;
 
 import ht.godlion.quicknote.R;
 import ht.godlion.quicknote.callbacks.NoteEventListener;
-import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.metrics.Metrics;
+import ht.godlion.quicknote.model.NotePreview;
 import ht.godlion.quicknote.utils.NoteUtils;
 
-import java.util.ArrayList;
 import java.util.List;
-
-public class NotesAdapter extends RecyclerView.Adapter<NotesAdapter.NoteHolder> {
-    private final Context context;
-    private final ArrayList<Note> notes;
+import java.util.Objects;
+
+/**
+ * The NotesAdapter class binds a {@link PagedList} of note previews to the list. Only the pages around the
+ * visible rows are loaded, and the list grows as the next keyset page arrives; it has no
+ * placeholders, since keyset pages have no total count to size them by. The adapter
+ * is meant to live as long as its RecyclerView: new lists are diffed against the current one off the
+ * main thread, so only rows whose note changed are rebound.
+ * <p>
+ * In multi-check mode a click toggles the row in the {@link NoteSelection} and a long click selects
+ * the loaded rows between it and the last row touched. Selection changes only rebind the
+ * checkboxes of the rows they touch.
+ */
+public class NotesAdapter extends PagedListAdapter<NotePreview, NotesAdapter.NoteHolder> {
+    private final NoteRowInflater rows;
     private NoteEventListener listener;
     private boolean multiCheckMode = false;
+    private final NoteSelection selection = new NoteSelection();
+    private int anchorPosition = RecyclerView.NO_POSITION;
+    private static final Object PAYLOAD_CHECK = new Object();
+    private static final String BIND_SECTION = "NotesAdapter.bind";
+
+    private static final DiffUtil.ItemCallback<NotePreview> DIFF_CALLBACK = new DiffUtil.ItemCallback<NotePreview>() {
+        @Override
+        public boolean areItemsTheSame ( @NonNull NotePreview oldNote, @NonNull NotePreview newNote ) {
+            return oldNote.getId() == newNote.getId();
+        }
 
+        @Override
+        public boolean areContentsTheSame ( @NonNull NotePreview oldNote, @NonNull NotePreview newNote ) {
+            return oldNote.getNoteDate() == newNote.getNoteDate()
+                    && Objects.equals(oldNote.getPreview(), newNote.getPreview());
+        }
+    };
 
-    public NotesAdapter ( Context context, ArrayList<Note> notes ) {
-        this.context = context;
-        this.notes = notes;
+    public NotesAdapter ( Context context ) {
+        this(new NoteRowInflater(context));
+    }
+
+    public NotesAdapter ( NoteRowInflater rows ) {
+        super(DIFF_CALLBACK);
+        this.rows = rows;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Stable IDs come from {@link NotePreview#getId()}. {@link #getItem} is nullable, so a missing
+     * row would get a negative ID derived from its position, which never collides with a note ID.
+     */
+    @Override
+    public long getItemId ( int position ) {
+        NotePreview note = getItem(position);
+        return note != null ? note.getId() : -2L - position;
     }
 
 
     @NonNull
     @Override
     public NoteHolder onCreateViewHolder ( @NonNull ViewGroup parent, int viewType ) {
-        View view = LayoutInflater.from(context).inflate( R.layout.note_layout, parent, false );
-        return new NoteHolder(view);
+        return rows.createHolder(parent);
     }
 
     @Override
     public void onBindViewHolder (@NonNull NoteHolder holder, int position ) {
-        final Note note = getNote(position);
+        long start = Metrics.begin(BIND_SECTION);
+        final NotePreview note = getItem(position);
         if ( note != null ) {
-            holder.noteText.setText(note.getNoteText());
+            holder.noteText.setText(note.getPreview());
             holder.noteDate.setText(NoteUtils.dateFromLong(note.getNoteDate()));
 
-            holder.itemView.setOnClickListener(view -> listener.onNoteClick(note));
+            holder.itemView.setOnClickListener(view -> {
+                int adapterPosition = holder.getBindingAdapterPosition();
+                if (multiCheckMode && adapterPosition != RecyclerView.NO_POSITION) {
+                    selection.toggle(note.getId());
+                    anchorPosition = adapterPosition;
+                    notifyItemChanged(adapterPosition, PAYLOAD_CHECK);
+                }
+                listener.onNoteClick(note);
+            });
 
             holder.itemView.setOnLongClickListener(view -> {
+                int adapterPosition = holder.getBindingAdapterPosition();
+                if (adapterPosition == RecyclerView.NO_POSITION) return false;
+                if (multiCheckMode) selectRange(anchorPosition, adapterPosition);
+                anchorPosition = adapterPosition;
                 listener.onNoteLongClick(note);
-                return false;
+                return true;
             });
 
-            if (multiCheckMode) {
-                holder.checkBox.setVisibility(View.VISIBLE);
-                holder.checkBox.setChecked(note.isChecked());
-            } else holder.checkBox.setVisibility(View.GONE);
+            bindCheckBox(holder, note);
+        } else {
+            holder.noteText.setText(null);
+            holder.noteDate.setText(null);
+            holder.itemView.setOnClickListener(null);
+            holder.itemView.setOnLongClickListener(null);
+            holder.checkBox.setVisibility(View.GONE);
         }
+        Metrics.end(BIND_SECTION, start);
     }
 
+    /**
+     * Rebinds only the checkbox when the row was changed with {@link #PAYLOAD_CHECK}.
+     */
     @Override
-    public int getItemCount () {
-        return notes.size();
+    public void onBindViewHolder ( @NonNull NoteHolder holder, int position, @NonNull List<Object> payloads ) {
+        NotePreview note = getItem(position);
+        if ( note != null && !payloads.isEmpty() && payloads.contains(PAYLOAD_CHECK) ) bindCheckBox(holder, note);
+        else onBindViewHolder(holder, position);
     }
 
-    private Note getNote ( int position ) {
-        return notes.get( position );
+    private void bindCheckBox ( NoteHolder holder, NotePreview note ) {
+        if (multiCheckMode) {
+            holder.checkBox.setVisibility(View.VISIBLE);
+            holder.checkBox.setChecked(selection.isSelected(note.getId()));
+        } else holder.checkBox.setVisibility(View.GONE);
     }
 
-    public List<Note> getCheckedNotes () {
-        List<Note> checkedNotes = new ArrayList<>();
-        for (Note note : this.notes) if ( note.isChecked() ) checkedNotes.add( note );
-        return checkedNotes;
+    /**
+     * Returns the note at the given position, or null when its page is not loaded yet.
+     */
+    @Nullable
+    public NotePreview getNoteAt ( int position ) {
+        return getItem( position );
+    }
+
+    @NonNull
+    public NoteSelection getSelection () {
+        return selection;
+    }
+
+    /**
+     * Selects the rows from {@code from} to {@code to}, both included. Rows whose page is not
+     * loaded are skipped rather than loaded, as their IDs are not known yet.
+     */
+    public void selectRange ( int from, int to ) {
+        PagedList<NotePreview> notes = getCurrentList();
+        if (notes == null || from == RecyclerView.NO_POSITION) return;
+        int start = Math.max(0, Math.min(from, to));
+        int end = Math.min(notes.size() - 1, Math.max(from, to));
+        if (start > end) return;
+        // Unlike getItem(), PagedList.get() does not trigger loads around the row.
+        for (int position = start; position <= end; position++) {
+            NotePreview note = notes.get(position);
+            if (note != null) selection.select(note.getId());
+        }
+        notifyItemRangeChanged(start, end - start + 1, PAYLOAD_CHECK);
+    }
+
+    /**
+     * Selects every note, including those not loaded yet. Only the bound rows are rebound.
+     */
+    public void selectAll () {
+        selection.selectAll();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_CHECK);
     }
 
     public void setListener(NoteEventListener listener) {
         this.listener = listener;
     }
 
-    @SuppressLint("NotifyDataSetChanged")
     public void setMultiCheckMode ( boolean multiCheckMode ) {
         this.multiCheckMode = multiCheckMode;
-        if (!multiCheckMode) for (Note note : this.notes) note.setChecked(false);
-        notifyDataSetChanged();
+        if (!multiCheckMode) {
+            selection.clear();
+            anchorPosition = RecyclerView.NO_POSITION;
+        }
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_CHECK);
     }
 
     static class NoteHolder extends RecyclerView.ViewHolder {
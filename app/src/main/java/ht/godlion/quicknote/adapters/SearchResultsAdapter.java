@@ -0,0 +1,104 @@
+package ht.godlion.quicknote.adapters;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagedListAdapter;
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.Objects;
+
+import ht.godlion.quicknote.callbacks.SearchResultListener;
+import ht.godlion.quicknote.metrics.Metrics;
+import ht.godlion.quicknote.model.NoteSearchResult;
+import ht.godlion.quicknote.utils.NoteUtils;
+
+/**
+ * The SearchResultsAdapter class shows paged search results in the same rows as the note list, with
+ * the matched terms of each snippet in bold. Its rows and holders are interchangeable with those of
+ * {@link NotesAdapter}.
+ */
+public class SearchResultsAdapter extends PagedListAdapter<NoteSearchResult, NotesAdapter.NoteHolder> {
+    private final NoteRowInflater rows;
+    private SearchResultListener listener;
+    private static final String BIND_SECTION = "SearchResultsAdapter.bind";
+
+    private static final DiffUtil.ItemCallback<NoteSearchResult> DIFF_CALLBACK = new DiffUtil.ItemCallback<NoteSearchResult>() {
+        @Override
+        public boolean areItemsTheSame ( @NonNull NoteSearchResult oldResult, @NonNull NoteSearchResult newResult ) {
+            return oldResult.getId() == newResult.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame ( @NonNull NoteSearchResult oldResult, @NonNull NoteSearchResult newResult ) {
+            return oldResult.getNoteDate() == newResult.getNoteDate()
+                    && Objects.equals(oldResult.getSnippet(), newResult.getSnippet());
+        }
+    };
+
+    public SearchResultsAdapter ( Context context ) {
+        this(new NoteRowInflater(context));
+    }
+
+    public SearchResultsAdapter ( NoteRowInflater rows ) {
+        super(DIFF_CALLBACK);
+        this.rows = rows;
+    }
+
+    @NonNull
+    @Override
+    public NotesAdapter.NoteHolder onCreateViewHolder ( @NonNull ViewGroup parent, int viewType ) {
+        return rows.createHolder(parent);
+    }
+
+    @Override
+    public void onBindViewHolder ( @NonNull NotesAdapter.NoteHolder holder, int position ) {
+        long start = Metrics.begin(BIND_SECTION);
+        final NoteSearchResult result = getItem(position);
+        holder.checkBox.setVisibility(View.GONE);
+        if ( result != null ) {
+            holder.noteText.setText(highlight(result.getSnippet()));
+            holder.noteDate.setText(NoteUtils.dateFromLong(result.getNoteDate()));
+            holder.itemView.setOnClickListener(view -> listener.onSearchResultClick(result));
+        } else {
+            holder.noteText.setText(null);
+            holder.noteDate.setText(null);
+            holder.itemView.setOnClickListener(null);
+        }
+        // Rows may come from the note list's pool still carrying its long-click listener.
+        holder.itemView.setOnLongClickListener(null);
+        Metrics.end(BIND_SECTION, start);
+    }
+
+    public void setListener ( SearchResultListener listener ) {
+        this.listener = listener;
+    }
+
+    /**
+     * Strips the highlight markers from a snippet and makes the text between them bold.
+     */
+    private static CharSequence highlight ( String snippet ) {
+        SpannableStringBuilder text = new SpannableStringBuilder();
+        if (snippet == null) return text;
+        int index = 0;
+        while (index < snippet.length()) {
+            int start = snippet.indexOf(NoteSearchResult.HIGHLIGHT_START, index);
+            if (start < 0) break;
+            int end = snippet.indexOf(NoteSearchResult.HIGHLIGHT_END, start);
+            if (end < 0) break;
+            text.append(snippet, index, start);
+            int spanStart = text.length();
+            text.append(snippet, start + NoteSearchResult.HIGHLIGHT_START.length(), end);
+            text.setSpan(new StyleSpan(Typeface.BOLD), spanStart, text.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            index = end + NoteSearchResult.HIGHLIGHT_END.length();
+        }
+        text.append(snippet, index, snippet.length());
+        return text;
+    }
+}
@@ -0,0 +1,237 @@
+package ht.godlion.quicknote.backup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ht.godlion.quicknote.model.Note;
+
+/**
+ * Writes and reads one note as a single line of JSON: {@code {"id":1,"date":1600000000000,"text":"..."}}.
+ * A note filed under tags also has {@code "tags":["name",...]}, and a note from the archive
+ * {@code "archived":true}. Only the flat objects written here need to be read back, so both directions are hand-rolled and
+ * work straight on the stream and the line, without building an object tree per note.
+ */
+final class NoteJson {
+    private NoteJson () {}
+
+    /** A note read back from a line, its tag names, and whether it was in the archive. */
+    static final class Entry {
+        final Note note;
+        List<String> tags = Collections.emptyList();
+        boolean archived;
+
+        Entry ( Note note ) { this.note = note; }
+    }
+
+    static void write ( @NonNull Writer out, int id, long date, @Nullable String text, @NonNull List<String> tags,
+                        boolean archived ) throws IOException {
+        out.write("{\"id\":");
+        out.write(Integer.toString(id));
+        out.write(",\"date\":");
+        out.write(Long.toString(date));
+        out.write(",\"text\":");
+        if (text == null) out.write("null");
+        else writeString(out, text);
+        if (!tags.isEmpty()) {
+            out.write(",\"tags\":[");
+            for (int i = 0; i < tags.size(); i++) {
+                if (i > 0) out.write(',');
+                writeString(out, tags.get(i));
+            }
+            out.write(']');
+        }
+        if (archived) out.write(",\"archived\":true");
+        out.write("}\n");
+    }
+
+    private static void writeString ( Writer out, String text ) throws IOException {
+        out.write('"');
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            String escape;
+            switch (c) {
+                case '"': escape = "\\\""; break;
+                case '\\': escape = "\\\\"; break;
+                case '\n': escape = "\\n"; break;
+                case '\r': escape = "\\r"; break;
+                case '\t': escape = "\\t"; break;
+                default:
+                    if (c >= 0x20 && c != 0x2028 && c != 0x2029) continue;
+                    escape = String.format("\\u%04x", (int) c);
+            }
+            out.write(text, start, i - start);
+            out.write(escape);
+            start = i + 1;
+        }
+        out.write(text, start, length - start);
+        out.write('"');
+    }
+
+    /**
+     * Parses a line written by {@link #write}. Unknown keys are skipped, so files written by a later
+     * version with more fields can still be imported.
+     *
+     * @throws IOException If the line is not a flat JSON object.
+     */
+    @NonNull
+    static Entry parse ( @NonNull String line ) throws IOException {
+        Parser parser = new Parser(line);
+        Note note = new Note();
+        Entry entry = new Entry(note);
+        parser.expect('{');
+        if (!parser.consume('}')) {
+            do {
+                String key = parser.readString();
+                parser.expect(':');
+                switch (key) {
+                    case "id": note.setId((int) parser.readLong()); break;
+                    case "date": note.setNoteDate(parser.readLong()); break;
+                    case "text": note.setNoteText(parser.readNullableString()); break;
+                    case "tags": entry.tags = parser.readStringArray(); break;
+                    case "archived": entry.archived = parser.readBoolean(); break;
+                    default: parser.skipValue();
+                }
+            } while (parser.consume(','));
+            parser.expect('}');
+        }
+        parser.expectEnd();
+        return entry;
+    }
+
+    private static final class Parser {
+        private final String line;
+        private int pos;
+
+        Parser ( String line ) { this.line = line; }
+
+        boolean consume ( char c ) {
+            skipWhitespace();
+            if (pos < line.length() && line.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect ( char c ) throws IOException {
+            if (!consume(c)) throw error("expected '" + c + "'");
+        }
+
+        void expectEnd () throws IOException {
+            skipWhitespace();
+            if (pos != line.length()) throw error("unexpected trailing characters");
+        }
+
+        long readLong () throws IOException {
+            skipWhitespace();
+            int start = pos;
+            if (pos < line.length() && line.charAt(pos) == '-') pos++;
+            while (pos < line.length() && Character.isDigit(line.charAt(pos))) pos++;
+            try {
+                return Long.parseLong(line.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("expected a number");
+            }
+        }
+
+        List<String> readStringArray () throws IOException {
+            expect('[');
+            List<String> values = new ArrayList<>();
+            if (consume(']')) return values;
+            do values.add(readString());
+            while (consume(','));
+            expect(']');
+            return values;
+        }
+
+        boolean readBoolean () throws IOException {
+            skipWhitespace();
+            if (line.startsWith("true", pos)) {
+                pos += 4;
+                return true;
+            }
+            if (line.startsWith("false", pos)) {
+                pos += 5;
+                return false;
+            }
+            throw error("expected true or false");
+        }
+
+        @Nullable
+        String readNullableString () throws IOException {
+            skipWhitespace();
+            if (line.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            return readString();
+        }
+
+        String readString () throws IOException {
+            expect('"');
+            StringBuilder text = null;
+            int start = pos;
+            while (pos < line.length()) {
+                char c = line.charAt(pos);
+                if (c == '"') {
+                    String value = text == null ? line.substring(start, pos) : text.append(line, start, pos).toString();
+                    pos++;
+                    return value;
+                }
+                if (c != '\\') {
+                    pos++;
+                    continue;
+                }
+                if (text == null) text = new StringBuilder(line.length() - start);
+                text.append(line, start, pos);
+                if (++pos >= line.length()) break;
+                char escaped = line.charAt(pos++);
+                switch (escaped) {
+                    case 'n': text.append('\n'); break;
+                    case 'r': text.append('\r'); break;
+                    case 't': text.append('\t'); break;
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > line.length()) throw error("truncated \\u escape");
+                        try {
+                            text.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("invalid \\u escape");
+                        }
+                        pos += 4;
+                        break;
+                    default: text.append(escaped);
+                }
+                start = pos;
+            }
+            throw error("unterminated string");
+        }
+
+        void skipValue () throws IOException {
+            skipWhitespace();
+            if (pos < line.length() && line.charAt(pos) == '"') readString();
+            else {
+                int start = pos;
+                while (pos < line.length() && ",}".indexOf(line.charAt(pos)) < 0) pos++;
+                if (pos == start) throw error("expected a value");
+            }
+        }
+
+        private void skipWhitespace () {
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) pos++;
+        }
+
+        private IOException error ( String message ) {
+            return new IOException(message + " at column " + (pos + 1));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package ht.godlion.quicknote.backup;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.model.ArchivedNote;
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.text.ChunkedText;
+import ht.godlion.quicknote.utils.NoteCodec;
+
+/**
+ * The NotesBackup class exports the notes and the archived notes to JSON Lines, one note per line,
+ * and imports such a file back. Both directions stream: export walks the table one bounded cursor at a time and
+ * import inserts a batch at a time, so memory use does not depend on how many notes there are.
+ * Exports may be gzip-compressed; imports detect compression from the stream itself.
+ * <p>
+ * Both methods block and must run off the main thread. Neither closes the stream it is given.
+ */
+public final class NotesBackup {
+    /** Notes read per export cursor, and inserted per import transaction. */
+    public static final int BATCH_SIZE = 1_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private NotesBackup () {}
+
+    /**
+     * Writes every note to {@code out} with its tag names, in ID order, then every archived note,
+     * marked as such.
+     *
+     * @return The number of notes written.
+     */
+    public static int exportNotes ( @NonNull NotesDao dao, @NonNull OutputStream out, boolean gzip ) throws IOException {
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(new NonClosingOutputStream(out), BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                compressed != null ? compressed : new NonClosingOutputStream(out), StandardCharsets.UTF_8), BUFFER_SIZE);
+        int count = 0;
+        int lastId = 0;
+        int rows;
+        do {
+            rows = 0;
+            try (Cursor cursor = dao.getNotesCursor(lastId, BATCH_SIZE)) {
+                int idColumn = cursor.getColumnIndexOrThrow("id");
+                int textColumn = cursor.getColumnIndexOrThrow("text");
+                int bodyColumn = cursor.getColumnIndexOrThrow("body");
+                int chunkedColumn = cursor.getColumnIndexOrThrow("chunked");
+                int dateColumn = cursor.getColumnIndexOrThrow("date");
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getInt(idColumn);
+                    String text = cursor.getInt(chunkedColumn) != 0 ? String.join("", dao.getChunkTexts(lastId))
+                            : !cursor.isNull(bodyColumn) ? NoteCodec.decompress(cursor.getBlob(bodyColumn))
+                            : cursor.isNull(textColumn) ? null : cursor.getString(textColumn);
+                    NoteJson.write(writer, lastId, cursor.getLong(dateColumn), text, dao.getTagNamesForNote(lastId), false);
+                    rows++;
+                }
+            }
+            count += rows;
+        } while (rows == BATCH_SIZE);
+        lastId = 0;
+        List<ArchivedNote> archived;
+        do {
+            archived = dao.getArchivedNotesAfter(lastId, BATCH_SIZE);
+            for (ArchivedNote note : archived) {
+                lastId = note.getId();
+                NoteJson.write(writer, lastId, note.getNoteDate(), note.getNoteText(), Arrays.asList(note.getTagNames()), true);
+            }
+            count += archived.size();
+        } while (archived.size() == BATCH_SIZE);
+        // Closing finishes the gzip trailer; the caller's stream itself stays open.
+        writer.close();
+        return count;
+    }
+
+    /**
+     * Reads notes written by {@link #exportNotes} and inserts them {@link #BATCH_SIZE} per
+     * transaction, and files them under their tags in the same transaction. Imported notes get new
+     * IDs, so importing never overwrites an existing note. A
+     * note of {@link ChunkedText#LARGE_NOTE_LENGTH} chars or more is stored in chunks, in a
+     * transaction of its own. Archived notes go back to the archive, archived at the time of the
+     * import. Blank lines are skipped. If a line cannot be read, the batches before it stay
+     * imported.
+     *
+     * @return The number of notes imported.
+     * @throws IOException If reading fails or a line is not a note, with the line number.
+     */
+    public static int importNotes ( @NonNull NotesDao dao, @NonNull InputStream in ) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        InputStream source = isGzip(buffered) ? new GZIPInputStream(buffered, BUFFER_SIZE) : buffered;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8), BUFFER_SIZE);
+        List<Note> batch = new ArrayList<>(BATCH_SIZE);
+        List<List<String>> batchTags = new ArrayList<>(BATCH_SIZE);
+        List<Note> archivedBatch = new ArrayList<>(BATCH_SIZE);
+        List<List<String>> archivedTags = new ArrayList<>(BATCH_SIZE);
+        long archivedAt = System.currentTimeMillis();
+        int count = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) continue;
+            NoteJson.Entry entry;
+            try {
+                entry = NoteJson.parse(line);
+            } catch (IOException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+            Note note = entry.note;
+            note.setId(0);
+            if (entry.archived) {
+                archivedBatch.add(note);
+                archivedTags.add(entry.tags);
+                if (archivedBatch.size() == BATCH_SIZE) {
+                    dao.importArchivedNotes(archivedBatch, archivedTags, archivedAt);
+                    count += archivedBatch.size();
+                    archivedBatch.clear();
+                    archivedTags.clear();
+                }
+                continue;
+            }
+            if (ChunkedText.isLarge(note.getNoteText())) {
+                int id = dao.insertLargeNote(note);
+                if (!entry.tags.isEmpty()) dao.tagNote(id, entry.tags);
+                count++;
+                continue;
+            }
+            batch.add(note);
+            batchTags.add(entry.tags);
+            if (batch.size() == BATCH_SIZE) {
+                dao.insertTaggedNotes(batch, batchTags);
+                count += batch.size();
+                batch.clear();
+                batchTags.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            dao.insertTaggedNotes(batch, batchTags);
+            count += batch.size();
+        }
+        if (!archivedBatch.isEmpty()) {
+            dao.importArchivedNotes(archivedBatch, archivedTags, archivedAt);
+            count += archivedBatch.size();
+        }
+        return count;
+    }
+
+    private static boolean isGzip ( BufferedInputStream in ) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        return first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+
+    /** Lets the writers be closed to flush and finish compression without closing the caller's stream. */
+    private static final class NonClosingOutputStream extends OutputStream {
+        private final OutputStream out;
+
+        NonClosingOutputStream ( OutputStream out ) { this.out = out; }
+
+        @Override
+        public void write ( int b ) throws IOException { out.write(b); }
+
+        @Override
+        public void write ( @NonNull byte[] b, int off, int len ) throws IOException { out.write(b, off, len); }
+
+        @Override
+        public void flush () throws IOException { out.flush(); }
+
+        @Override
+        public void close () throws IOException { out.flush(); }
+    }
+}
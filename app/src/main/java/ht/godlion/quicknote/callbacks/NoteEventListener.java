@@ -1,9 +1,9 @@
 package ht.godlion.quicknote.callbacks;
 
-import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NotePreview;
 
 public interface NoteEventListener {
-    void onNoteClick ( Note note );
+    void onNoteClick ( NotePreview note );
 
-    void onNoteLongClick ( Note note );
+    void onNoteLongClick ( NotePreview note );
 }
@@ -0,0 +1,7 @@
+package ht.godlion.quicknote.callbacks;
+
+import ht.godlion.quicknote.model.NoteSearchResult;
+
+public interface SearchResultListener {
+    void onSearchResultClick ( NoteSearchResult result );
+}
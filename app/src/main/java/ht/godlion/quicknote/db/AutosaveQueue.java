@@ -0,0 +1,136 @@
+package ht.godlion.quicknote.db;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.text.ChunkedText;
+
+/**
+ * The AutosaveQueue class coalesces autosaves of notes being edited. Each {@link Draft} has at most
+ * one write queued on the write lane; a version submitted while it waits replaces the one it
+ * carries, so only the latest text reaches the disk and superseded versions are dropped without
+ * being written. A draft of a new note is inserted by its first write and updated afterwards,
+ * so each write that changes the text adds one revision to its history.
+ */
+public class AutosaveQueue {
+    private final NotesDao dao;
+    private final Executor diskWrite;
+    @Nullable
+    private final NoteCache noteCache;
+    private final Map<Draft, Version> pending = new HashMap<>();
+    private int submitCount;
+    private int coalesceCount;
+    private int writeCount;
+
+    /**
+     * The note an editor is saving. Only the write lane assigns its ID.
+     */
+    public static final class Draft {
+        private volatile int noteId;
+
+        /**
+         * @param noteId The ID of the note being edited, or 0 for a note that is not saved yet.
+         */
+        public Draft ( int noteId ) {
+            this.noteId = noteId;
+        }
+
+        /** The ID of the note, or 0 until the first write of a new note has been applied. */
+        public int getNoteId () {
+            return noteId;
+        }
+    }
+
+    private static final class Version {
+        String text;
+        long date;
+
+        Version ( String text, long date ) {
+            this.text = text;
+            this.date = date;
+        }
+    }
+
+    /**
+     * @param noteCache Updated with every note written, if not null.
+     */
+    public AutosaveQueue ( @NonNull NotesDao dao, @NonNull Executor diskWrite, @Nullable NoteCache noteCache ) {
+        this.dao = dao;
+        this.diskWrite = diskWrite;
+        this.noteCache = noteCache;
+    }
+
+    public AutosaveQueue ( @NonNull NotesDao dao, @NonNull Executor diskWrite ) {
+        this(dao, diskWrite, null);
+    }
+
+    /**
+     * Queues a write of the draft with the given text, or replaces the version its queued write
+     * carries if there is one.
+     */
+    public void submit ( @NonNull Draft draft, @NonNull String text, long date ) {
+        synchronized (this) {
+            submitCount++;
+            Version version = pending.get(draft);
+            if (version != null) {
+                version.text = text;
+                version.date = date;
+                coalesceCount++;
+                return;
+            }
+            pending.put(draft, new Version(text, date));
+        }
+        diskWrite.execute(() -> writeLatest(draft));
+    }
+
+    /**
+     * Runs {@code onComplete} on the write lane once every version submitted so far is written.
+     */
+    public void flush ( @NonNull Runnable onComplete ) {
+        diskWrite.execute(onComplete);
+    }
+
+    private void writeLatest ( Draft draft ) {
+        Version version;
+        synchronized (this) {
+            version = pending.remove(draft);
+            writeCount++;
+        }
+        Note note = new Note(version.text, version.date);
+        boolean large = ChunkedText.isLarge(version.text);
+        if (draft.noteId == 0 && large) draft.noteId = dao.insertLargeNote(note);
+        else if (draft.noteId == 0) draft.noteId = (int) dao.insertNote(note);
+        else {
+            note.setId(draft.noteId);
+            dao.updateNoteWithHistory(note);
+        }
+        if (noteCache != null) {
+            // A large note is now chunked, which the plain note written here is not.
+            if (large) noteCache.remove(draft.noteId);
+            else {
+                note.setId(draft.noteId);
+                noteCache.put(note);
+            }
+        }
+    }
+
+    /** Versions submitted so far. */
+    public synchronized int getSubmitCount () {
+        return submitCount;
+    }
+
+    /** Versions replaced by a later one before they were written. */
+    public synchronized int getCoalesceCount () {
+        return coalesceCount;
+    }
+
+    /** Writes that reached the database. */
+    public synchronized int getWriteCount () {
+        return writeCount;
+    }
+}
@@ -0,0 +1,74 @@
+package ht.godlion.quicknote.db;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves notes older than a cutoff date from {@code notes} to the archive, with their revision
+ * history, a batch of {@link #BATCH_SIZE} notes per transaction, oldest first. A {@link #runPass pass} stops starting
+ * batches once its time budget is spent, so a large backlog is worked off over many short passes
+ * that other writes can run between, and never holds the write lane for long.
+ * <p>
+ * Runs on the write lane only; it keeps no state between passes, so a pass that is interrupted
+ * or never rescheduled leaves the tables consistent.
+ */
+public class NoteArchiver {
+    /** Notes moved per transaction. */
+    public static final int BATCH_SIZE = 50;
+    /** Time after which a pass starts no new batch. */
+    public static final long PASS_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+    /**
+     * Preference holding the age, in days, after which a note is archived; 0 turns it off. The user
+     * sets it from the main menu.
+     */
+    public static final String PREF_ARCHIVE_AFTER_DAYS = "archive_after_days";
+    /** Archiving by age is off until the user picks an age, so no note leaves the list unasked. */
+    public static final int DEFAULT_ARCHIVE_AFTER_DAYS = 0;
+
+    private final NotesDao dao;
+
+    /** What a pass did. */
+    public static final class Pass {
+        private final List<Integer> archivedIds;
+        private final boolean finished;
+
+        Pass ( List<Integer> archivedIds, boolean finished ) {
+            this.archivedIds = archivedIds;
+            this.finished = finished;
+        }
+
+        @NonNull
+        public List<Integer> getArchivedIds () {
+            return archivedIds;
+        }
+
+        /** Whether no note older than the cutoff is left, so no further pass is needed. */
+        public boolean isFinished () {
+            return finished;
+        }
+    }
+
+    public NoteArchiver ( @NonNull NotesDao dao ) {
+        this.dao = dao;
+    }
+
+    /**
+     * Archives batches of notes dated before {@code cutoffDate} until none is left or
+     * {@code budgetNanos} have passed. At least one batch runs, so every pass makes progress.
+     */
+    @NonNull
+    public Pass runPass ( long cutoffDate, long budgetNanos ) {
+        long start = System.nanoTime();
+        List<Integer> archived = new ArrayList<>();
+        long archivedAt = System.currentTimeMillis();
+        do {
+            List<Integer> ids = dao.getArchivableNoteIds(cutoffDate, BATCH_SIZE);
+            if (!ids.isEmpty()) archived.addAll(dao.archiveNotes(ids, archivedAt));
+            if (ids.size() < BATCH_SIZE) return new Pass(archived, true);
+        } while (System.nanoTime() - start < budgetNanos);
+        return new Pass(archived, false);
+    }
+}
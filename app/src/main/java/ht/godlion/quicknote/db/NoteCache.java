@@ -0,0 +1,136 @@
+package ht.godlion.quicknote.db;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.text.ChunkedText;
+
+/**
+ * The NoteCache class keeps recently opened and saved notes in memory, keyed by ID, so reopening a
+ * note does not query and decompress it again. It is bounded by the size of the texts it holds
+ * rather than by entry count, since one pasted log can outweigh hundreds of short notes; the least
+ * recently used notes are evicted first. Cached notes are copies: callers get their own object
+ * sharing the immutable text. A text long enough to be stored in chunks is never cached whole, as
+ * its editor only loads a window of it.
+ * <p>
+ * Every write to the notes table must go through {@link #put} or {@link #remove}. A note loaded
+ * from the database is only cached with {@link #putLoaded} if no write happened since the load
+ * started, so a slow read cannot put back a version a write replaced.
+ */
+public class NoteCache {
+    /** Estimated bytes of a cached note besides its text. */
+    static final int ENTRY_OVERHEAD = 64;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Integer, Note> notes = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+    private int version;
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+
+    public NoteCache ( long maxBytes ) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a copy of the cached note, or null on a miss.
+     */
+    @Nullable
+    public synchronized Note get ( int noteId ) {
+        Note note = notes.get(noteId);
+        if (note == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return copy(note);
+    }
+
+    /**
+     * Returns the current version, which changes with every write. Read it before loading a note
+     * and pass it to {@link #putLoaded}.
+     */
+    public synchronized int getVersion () {
+        return version;
+    }
+
+    /** Caches a note read from the database, unless a write happened since {@code version} was read. */
+    public synchronized void putLoaded ( @NonNull Note note, int version ) {
+        if (version == this.version) store(note);
+    }
+
+    /** Caches a note that was just written. */
+    public synchronized void put ( @NonNull Note note ) {
+        version++;
+        store(note);
+    }
+
+    /** Drops a note that was deleted or overwritten without its new value at hand. */
+    public synchronized void remove ( int noteId ) {
+        version++;
+        Note removed = notes.remove(noteId);
+        if (removed != null) sizeBytes -= weigh(removed);
+    }
+
+    public synchronized void clear () {
+        version++;
+        notes.clear();
+        sizeBytes = 0;
+    }
+
+    private void store ( Note note ) {
+        Note cached = copy(note);
+        long weight = weigh(cached);
+        Note replaced = notes.remove(cached.getId());
+        if (replaced != null) sizeBytes -= weigh(replaced);
+        if (weight > maxBytes || ChunkedText.isLarge(cached.getNoteText())) return;
+        notes.put(cached.getId(), cached);
+        sizeBytes += weight;
+        Iterator<Map.Entry<Integer, Note>> eldest = notes.entrySet().iterator();
+        while (sizeBytes > maxBytes) {
+            Note evicted = eldest.next().getValue();
+            eldest.remove();
+            sizeBytes -= weigh(evicted);
+            evictionCount++;
+        }
+    }
+
+    private static Note copy ( Note note ) {
+        Note copy = new Note(note.getNoteText(), note.getNoteDate());
+        copy.setId(note.getId());
+        copy.setChunked(note.isChunked());
+        return copy;
+    }
+
+    /** Two bytes per UTF-16 char of text plus {@link #ENTRY_OVERHEAD}. */
+    static long weigh ( Note note ) {
+        String text = note.getNoteText();
+        return ENTRY_OVERHEAD + (text != null ? 2L * text.length() : 0);
+    }
+
+    public synchronized long getSizeBytes () {
+        return sizeBytes;
+    }
+
+    public synchronized int size () {
+        return notes.size();
+    }
+
+    public synchronized int getHitCount () {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount () {
+        return missCount;
+    }
+
+    public synchronized int getEvictionCount () {
+        return evictionCount;
+    }
+}
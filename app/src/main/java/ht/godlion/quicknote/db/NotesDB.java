@@ -1,24 +1,268 @@
 package ht.godlion.quicknote.db;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 import android.content.Context;
+import android.database.Cursor;
 
+import ht.godlion.quicknote.model.ArchivedNote;
+import ht.godlion.quicknote.model.ArchivedNoteFts;
+import ht.godlion.quicknote.model.ArchivedNoteRevision;
 import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NoteChunk;
+import ht.godlion.quicknote.model.NoteFts;
+import ht.godlion.quicknote.model.NoteRevision;
+import ht.godlion.quicknote.model.NoteTag;
+import ht.godlion.quicknote.model.Tag;
+import ht.godlion.quicknote.utils.AppExecutors;
+import ht.godlion.quicknote.utils.NoteCodec;
 
-@Database(entities = Note.class, version = 1)
+@Database(entities = {Note.class, NoteFts.class, NoteRevision.class, Tag.class, NoteTag.class, NoteChunk.class,
+        ArchivedNote.class, ArchivedNoteFts.class, ArchivedNoteRevision.class}, version = 13)
 public abstract class NotesDB extends RoomDatabase {
     public abstract NotesDao notesDao();
 
     public static final String DATABSE_NAME = "notesDb";
-    private static NotesDB instance;
+    private static volatile NotesDB instance;
 
+    /**
+     * Adds the {@code notes_fts} full-text index with the same content-sync triggers Room creates for
+     * new databases, then builds the index from the existing notes.
+     */
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate ( @NonNull SupportSQLiteDatabase db ) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `notes_fts` USING FTS4(`text` TEXT, content=`notes`)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_BEFORE_UPDATE BEFORE UPDATE ON `notes` BEGIN DELETE FROM `notes_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_BEFORE_DELETE BEFORE DELETE ON `notes` BEGIN DELETE FROM `notes_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_AFTER_UPDATE AFTER UPDATE ON `notes` BEGIN INSERT INTO `notes_fts`(`docid`, `text`) VALUES (NEW.`rowid`, NEW.`text`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_AFTER_INSERT AFTER INSERT ON `notes` BEGIN INSERT INTO `notes_fts`(`docid`, `text`) VALUES (NEW.`rowid`, NEW.`text`); END");
+            db.execSQL("INSERT INTO `notes_fts`(`notes_fts`) VALUES ('rebuild')");
+        }
+    };
+
+    /**
+     * Adds the index on {@code date} that the newest-first and date-range keyset queries rely on.
+     * Existing notes are kept; SQLite builds the index from them.
+     */
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate ( @NonNull SupportSQLiteDatabase db ) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_date` ON `notes` (`date`)");
+        }
+    };
+
+    /**
+     * Adds the revision history table. Existing notes start without history; their current text
+     * becomes their first revision the next time they change.
+     */
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate ( @NonNull SupportSQLiteDatabase db ) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `note_revisions` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`note_id` INTEGER NOT NULL, `number` INTEGER NOT NULL, `date` INTEGER NOT NULL, "
+                    + "`checkpoint` INTEGER NOT NULL, `data` BLOB, "
+                    + "FOREIGN KEY(`note_id`) REFERENCES `notes`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_note_revisions_note_id_number` ON `note_revisions` (`note_id`, `number`)");
+        }
+    };
+
+    /**
+     * Adds the column for compressed note bodies. Existing notes stay as plain text until they are
+     * next saved.
+     */
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate ( @NonNull SupportSQLiteDatabase db ) {
+            db.execSQL("ALTER TABLE `notes` ADD COLUMN `body` BLOB");
+        }
+    };
+
+    /**
+     * Adds the tags table and the join table filing notes under tags. Existing notes start untagged.
+     */
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate ( @NonNull SupportSQLiteDatabase db ) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `tags` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `name` TEXT NOT NULL)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_tags_name` ON `tags` (`name`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `note_tags` (`note_id` INTEGER NOT NULL, `tag_id` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`note_id`, `tag_id`), "
+                    + "FOREIGN KEY(`note_id`) REFERENCES `notes`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE , "
+                    + "FOREIGN KEY(`tag_id`) REFERENCES `tags`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_note_tags_tag_id_note_id` ON `note_tags` (`tag_id`, `note_id`)");
+        }
+    };
+
+    /**
+     * Adds the chunk table for large notes and the flag marking them. Existing notes stay whole
+     * until they are next saved.
+     */
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate ( @NonNull SupportSQLiteDatabase db ) {
+            db.execSQL("ALTER TABLE `notes` ADD COLUMN `chunked` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `note_chunks` (`note_id` INTEGER NOT NULL, `ord` INTEGER NOT NULL, "
+                    + "`length` INTEGER NOT NULL, `text` TEXT, PRIMARY KEY(`note_id`, `ord`), "
+                    + "FOREIGN KEY(`note_id`) REFERENCES `notes`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+        }
+    };
+
+    /**
+     * Adds the archive table with its own full-text index, and the restore time that keeps a
+     * restored note from being archived again right away. Nothing is archived here: the archiver
+     * moves old notes in the background.
+     */
+    public static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate ( @NonNull SupportSQLiteDatabase db ) {
+            db.execSQL("ALTER TABLE `notes` ADD COLUMN `restored_at` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `archived_notes` (`id` INTEGER NOT NULL, `text` TEXT, `body` BLOB, "
+                    + "`date` INTEGER NOT NULL, `tags` TEXT, `archived_at` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_archived_notes_date_id` ON `archived_notes` (`date`, `id`)");
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `archived_notes_fts` USING FTS4(`text` TEXT, content=`archived_notes`)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_archived_notes_fts_BEFORE_UPDATE BEFORE UPDATE ON `archived_notes` BEGIN DELETE FROM `archived_notes_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_archived_notes_fts_BEFORE_DELETE BEFORE DELETE ON `archived_notes` BEGIN DELETE FROM `archived_notes_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_archived_notes_fts_AFTER_UPDATE AFTER UPDATE ON `archived_notes` BEGIN INSERT INTO `archived_notes_fts`(`docid`, `text`) VALUES (NEW.`rowid`, NEW.`text`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_archived_notes_fts_AFTER_INSERT AFTER INSERT ON `archived_notes` BEGIN INSERT INTO `archived_notes_fts`(`docid`, `text`) VALUES (NEW.`rowid`, NEW.`text`); END");
+        }
+    };
+
+    /**
+     * Adds the tombstone column for deleted notes. The date index becomes a (deleted_at, date)
+     * index, so the list skips tombstones without reading them and the purge finds them by range.
+     */
+    public static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate ( @NonNull SupportSQLiteDatabase db ) {
+            db.execSQL("ALTER TABLE `notes` ADD COLUMN `deleted_at` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("DROP INDEX IF EXISTS `index_notes_date`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_deleted_at_date` ON `notes` (`deleted_at`, `date`)");
+        }
+    };
+
+    /**
+     * Gives {@code notes_fts} its own copy of the text, so that a compressed note is indexed in full
+     * rather than by the prefix kept in {@code notes}. The content-sync triggers go: the index is
+     * written by {@link NotesDao} along with each note, and holds only the notes that are not
+     * deleted. The index is rebuilt a note at a time from the decompressed bodies.
+     */
+    public static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate ( @NonNull SupportSQLiteDatabase db ) {
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_BEFORE_UPDATE");
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_BEFORE_DELETE");
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_AFTER_UPDATE");
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_AFTER_INSERT");
+            db.execSQL("DROP TABLE IF EXISTS `notes_fts`");
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `notes_fts` USING FTS4(`text` TEXT)");
+            try (Cursor cursor = db.query("SELECT id, text, body FROM notes WHERE deleted_at = 0")) {
+                while (cursor.moveToNext()) {
+                    String text = cursor.isNull(2) ? cursor.getString(1) : NoteCodec.decompress(cursor.getBlob(2));
+                    db.execSQL("INSERT INTO `notes_fts` (`docid`, `text`) VALUES (?, ?)",
+                            new Object[]{cursor.getInt(0), text});
+                }
+            }
+        }
+    };
+
+    /**
+     * Adds the table that keeps the revisions of archived notes, so archiving no longer loses a
+     * note's history.
+     */
+    public static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate ( @NonNull SupportSQLiteDatabase db ) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `archived_note_revisions` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`note_id` INTEGER NOT NULL, `number` INTEGER NOT NULL, `date` INTEGER NOT NULL, "
+                    + "`checkpoint` INTEGER NOT NULL, `data` BLOB)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_archived_note_revisions_note_id_number` "
+                    + "ON `archived_note_revisions` (`note_id`, `number`)");
+        }
+    };
+
+    /**
+     * Gives {@code archived_notes_fts} its own copy of the text, as {@link #MIGRATION_9_10} did for
+     * {@code notes_fts}, so a compressed archived note is searchable past its stored prefix.
+     */
+    public static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate ( @NonNull SupportSQLiteDatabase db ) {
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_archived_notes_fts_BEFORE_UPDATE");
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_archived_notes_fts_BEFORE_DELETE");
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_archived_notes_fts_AFTER_UPDATE");
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_archived_notes_fts_AFTER_INSERT");
+            db.execSQL("DROP TABLE IF EXISTS `archived_notes_fts`");
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `archived_notes_fts` USING FTS4(`text` TEXT)");
+            try (Cursor cursor = db.query("SELECT id, text, body FROM archived_notes")) {
+                while (cursor.moveToNext()) {
+                    String text = cursor.isNull(2) ? cursor.getString(1) : NoteCodec.decompress(cursor.getBlob(2));
+                    db.execSQL("INSERT INTO `archived_notes_fts` (`docid`, `text`) VALUES (?, ?)",
+                            new Object[]{cursor.getInt(0), text});
+                }
+            }
+        }
+    };
+
+    /**
+     * Indexes the whole text of every chunked note, which was indexed by its stored prefix only.
+     */
+    public static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate ( @NonNull SupportSQLiteDatabase db ) {
+            try (Cursor notes = db.query("SELECT id FROM notes WHERE chunked = 1 AND deleted_at = 0")) {
+                while (notes.moveToNext()) {
+                    int id = notes.getInt(0);
+                    StringBuilder text = new StringBuilder();
+                    try (Cursor chunks = db.query("SELECT text FROM note_chunks WHERE note_id = ? ORDER BY ord",
+                            new Object[]{id})) {
+                        while (chunks.moveToNext()) text.append(chunks.getString(0));
+                    }
+                    db.execSQL("DELETE FROM `notes_fts` WHERE `docid` = ?", new Object[]{id});
+                    db.execSQL("INSERT INTO `notes_fts` (`docid`, `text`) VALUES (?, ?)", new Object[]{id, text.toString()});
+                }
+            }
+        }
+    };
+
+    /** Every migration, in order; a database of any earlier version is upgraded step by step. */
+    public static final Migration[] MIGRATIONS = {MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5,
+            MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9,
+            MIGRATION_9_10, MIGRATION_10_11, MIGRATION_11_12, MIGRATION_12_13};
+
+    /**
+     * Returns the single database instance, building it on first use. Callers may race from any
+     * thread; the double-checked lock makes sure only one Room instance, and so one connection pool,
+     * is ever built. Building is cheap: the file is opened by the first query.
+     */
     public static NotesDB getInstance(Context context) {
-        if (instance == null)
-            instance = Room.databaseBuilder(context, NotesDB.class, DATABSE_NAME)
-                    .allowMainThreadQueries()
-                    .build();
+        if (instance == null) {
+            synchronized (NotesDB.class) {
+                if (instance == null)
+                    instance = configure(Room.databaseBuilder(context.getApplicationContext(), NotesDB.class, DATABSE_NAME),
+                            AppExecutors.getInstance())
+                            .build();
+            }
+        }
         return instance;
     }
+
+    /**
+     * Applies the settings every on-disk NotesDB is opened with. The database is written ahead to a
+     * log, so readers see the last committed state while a write is in progress instead of waiting
+     * for it, and the connection pool hands each reader thread its own connection. Room's own
+     * background work runs on the same lanes as the repository: queries, such as invalidation
+     * checks, on the read lane and transactions on the single write lane.
+     */
+    static RoomDatabase.Builder<NotesDB> configure ( @NonNull RoomDatabase.Builder<NotesDB> builder,
+                                                    @NonNull AppExecutors executors ) {
+        return builder.addMigrations(MIGRATIONS)
+                .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                .setQueryExecutor(executors.diskRead())
+                .setTransactionExecutor(executors.diskWrite());
+    }
 }
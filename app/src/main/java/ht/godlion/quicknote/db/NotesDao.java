@@ -1,34 +1,768 @@
 package ht.godlion.quicknote.db;
 
+import android.database.Cursor;
+
+import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
+import ht.godlion.quicknote.history.NoteHistory;
+import ht.godlion.quicknote.model.ArchivedNote;
+import ht.godlion.quicknote.model.ArchivedNoteFts;
 import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NoteChunk;
+import ht.godlion.quicknote.model.NoteFts;
+import ht.godlion.quicknote.model.NoteMatch;
+import ht.godlion.quicknote.model.NotePreview;
+import ht.godlion.quicknote.model.NoteRevision;
+import ht.godlion.quicknote.model.NoteSearchResult;
+import ht.godlion.quicknote.model.NoteTag;
+import ht.godlion.quicknote.model.Tag;
+import ht.godlion.quicknote.model.TagCount;
+import ht.godlion.quicknote.text.ChunkedText;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 @SuppressWarnings("ALL")
 @Dao
 public interface NotesDao {
+    /** Largest number of IDs bound to a single statement, below SQLite's limit of 999 variables. */
+    int MAX_BATCH_SIZE = 500;
+    /**
+     * The IDs of the deleted notes still in {@code notes}, as a subquery. It is a range on
+     * {@code index_notes_deleted_at_date}, so it reads only the tombstones.
+     */
+    String TOMBSTONE_IDS = "(SELECT id FROM notes WHERE deleted_at > 0)";
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    long insertNoteRow ( Note note );
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insertNote ( Note note );
+    List<Long> insertNoteRows ( List<Note> notes );
 
     @Delete
-    void deleteNote( Note ... note );
+    void deleteNoteRows ( Note ... note );
 
     @Update
-    void updateNote ( Note note );
+    void updateNoteRow ( Note note );
+
+    @Update
+    void updateNoteRows ( List<Note> notes );
+
+    @Insert
+    void insertNoteIndex ( List<NoteFts> entries );
+
+    @Query( "DELETE FROM notes_fts WHERE rowid IN (:noteIds)" )
+    void deleteNoteIndexBatch ( List<Integer> noteIds );
+
+    @Query( "DELETE FROM notes_fts WHERE rowid > :afterId AND rowid < :beforeId" )
+    void deleteNoteIndexBetween ( long afterId, long beforeId );
+
+    /**
+     * Writes the full text of the notes to {@code notes_fts} in place of what was indexed for them:
+     * the whole decoded text of a compressed note, and the joined chunks of a chunked one.
+     */
+    default void indexNotes ( List<Integer> noteIds, List<Note> notes ) {
+        List<NoteFts> entries = new ArrayList<>(notes.size());
+        for (int i = 0; i < notes.size(); i++) {
+            Note note = notes.get(i);
+            String text = note.isChunked() ? String.join("", getChunkTexts(noteIds.get(i))) : note.getNoteText();
+            entries.add(new NoteFts(noteIds.get(i), text));
+        }
+        for (int start = 0; start < noteIds.size(); start += MAX_BATCH_SIZE)
+            deleteNoteIndexBatch(noteIds.subList(start, Math.min(start + MAX_BATCH_SIZE, noteIds.size())));
+        insertNoteIndex(entries);
+    }
+
+    /**
+     * Inserts the note, or replaces the one with its ID, and indexes its text.
+     *
+     * @return The row ID, which is the ID of the note.
+     */
+    @Transaction
+    default long insertNote ( Note note ) {
+        long id = insertNoteRow(note);
+        indexNotes(Collections.singletonList((int) id), Collections.singletonList(note));
+        return id;
+    }
+
+    /**
+     * @return The IDs of the notes, in order.
+     */
+    @Transaction
+    default List<Integer> insertNotes ( List<Note> notes ) {
+        List<Long> rowIds = insertNoteRows(notes);
+        List<Integer> ids = new ArrayList<>(rowIds.size());
+        for (long id : rowIds) ids.add((int) id);
+        indexNotes(ids, notes);
+        return ids;
+    }
+
+    /**
+     * Inserts the notes and files each one under its tag names, {@code tagNames} being in the
+     * order of {@code notes}, in one transaction.
+     */
+    @Transaction
+    default void insertTaggedNotes ( List<Note> notes, List<List<String>> tagNames ) {
+        List<Integer> ids = insertNotes(notes);
+        for (int i = 0; i < ids.size(); i++)
+            if (!tagNames.get(i).isEmpty()) tagNote(ids.get(i), tagNames.get(i));
+    }
 
-    @Query( "SELECT * FROM notes" )
+    @Transaction
+    default void deleteNote ( Note ... note ) {
+        List<Integer> ids = new ArrayList<>(note.length);
+        for (Note n : note) ids.add(n.getId());
+        for (int start = 0; start < ids.size(); start += MAX_BATCH_SIZE)
+            deleteNoteIndexBatch(ids.subList(start, Math.min(start + MAX_BATCH_SIZE, ids.size())));
+        deleteNoteRows(note);
+    }
+
+    @Transaction
+    default void updateNote ( Note note ) {
+        updateNoteRow(note);
+        indexNotes(Collections.singletonList(note.getId()), Collections.singletonList(note));
+    }
+
+    @Transaction
+    default void updateNotes ( List<Note> notes ) {
+        updateNoteRows(notes);
+        List<Integer> ids = new ArrayList<>(notes.size());
+        for (Note note : notes) ids.add(note.getId());
+        indexNotes(ids, notes);
+    }
+
+    /**
+     * Updates the note and records the change of text in its revision history, in one
+     * transaction. See {@link NoteHistory}. A text of {@link ChunkedText#LARGE_NOTE_LENGTH} chars or
+     * more is stored in chunks instead, without history; a chunked note that becomes short again is
+     * stored whole, and its history goes on from a checkpoint of that text. The edit is never lost
+     * to a note that went away while it was open: an archived note is restored first, a deleted
+     * one is brought back, and a purged one is stored again under the same ID.
+     */
+    @Transaction
+    default void updateNoteWithHistory ( Note note ) {
+        Note previous = getNoteById(note.getId());
+        if (previous == null) {
+            if (getArchivedNote(note.getId()) != null) {
+                restoreArchivedNotes(Collections.singletonList(note.getId()), note.getNoteDate());
+            } else if (undeleteNoteRow(note.getId()) == 0) {
+                if (!ChunkedText.isLarge(note.getNoteText())) {
+                    insertNote(note);
+                    return;
+                }
+                Note empty = new Note("", note.getNoteDate());
+                empty.setId(note.getId());
+                insertNote(empty);
+            }
+            previous = getNoteById(note.getId());
+        }
+        if (ChunkedText.isLarge(note.getNoteText())) {
+            saveChunks(note.getId(), ChunkedText.fromText(note.getNoteText()).takeChanges(note.getNoteDate()));
+            return;
+        }
+        if (previous.isChunked()) {
+            deleteChunks(note.getId());
+            NoteHistory.recordCheckpoint(this, note);
+        } else NoteHistory.recordUpdate(this, previous, note);
+        updateNote(note);
+    }
+
+    /**
+     * Inserts a note of {@link ChunkedText#LARGE_NOTE_LENGTH} chars or more, stored in chunks. The
+     * chunks need the note's ID, so the note is inserted empty first, in the same transaction.
+     *
+     * @return The ID of the note.
+     */
+    @Transaction
+    default int insertLargeNote ( Note note ) {
+        int id = (int) insertNote(new Note("", note.getNoteDate()));
+        saveChunks(id, ChunkedText.fromText(note.getNoteText()).takeChanges(note.getNoteDate()));
+        return id;
+    }
+
+    /**
+     * Updates all the notes and records their history in one transaction.
+     */
+    @Transaction
+    default void updateNotesWithHistory ( List<Note> notes ) {
+        for (Note note : notes) updateNoteWithHistory(note);
+    }
+
+    @Insert
+    void insertRevision ( NoteRevision revision );
+
+    /** The number of the latest revision of the note, or 0 if it has no history yet. */
+    @Query( "SELECT COALESCE(MAX(number), 0) FROM note_revisions WHERE note_id = :noteId" )
+    int getLatestRevisionNumber ( int noteId );
+
+    /** Every revision of the note, newest first. */
+    @Query( "SELECT * FROM note_revisions WHERE note_id = :noteId ORDER BY number DESC" )
+    List<NoteRevision> getRevisions ( int noteId );
+
+    /**
+     * The revisions needed to rebuild revision {@code number}: the closest checkpoint at or before
+     * it and the deltas after that, oldest first. Both lookups are ranges on the
+     * (note_id, number) index.
+     */
+    @Query( "SELECT * FROM note_revisions WHERE note_id = :noteId AND number <= :number AND number >= " +
+            "(SELECT MAX(number) FROM note_revisions WHERE note_id = :noteId AND number <= :number AND checkpoint) " +
+            "ORDER BY number" )
+    List<NoteRevision> getRevisionChain ( int noteId, int number );
+
+    @Query( "SELECT * FROM notes WHERE deleted_at = 0" )
     List<Note> getNotes ();
 
-    @Query( "SELECT * FROM notes WHERE id = :noteId" )
+    @Query( "SELECT COUNT(*) FROM notes WHERE deleted_at = 0" )
+    int countNotes ();
+
+    /** The number of notes, queried again only when the notes table changes. */
+    @Query( "SELECT COUNT(*) FROM notes WHERE deleted_at = 0" )
+    LiveData<Integer> observeNoteCount ();
+
+    /**
+     * Up to {@code limit} full notes with an ID above {@code afterId}, in ID order, as a raw cursor
+     * the caller must close. Walking the table one such cursor at a time streams it with memory
+     * bounded by {@code limit}, and never holds a read transaction open for the whole table.
+     */
+    @Query( "SELECT id, text, body, chunked, date FROM notes WHERE id > :afterId AND deleted_at = 0 " +
+            "ORDER BY id LIMIT :limit" )
+    Cursor getNotesCursor ( int afterId, int limit );
+
+    /**
+     * Keyset page of note previews, newest first: the {@code limit} notes dated from
+     * {@code fromDate} that come right after the cursor ({@code cursorDate}, {@code cursorId}) in
+     * (date, id) descending order. Deleted notes are left out and the range condition on
+     * {@code date} is served by {@code index_notes_deleted_at_date}, so a page costs
+     * O(log n + limit) however deep it is and however many tombstones there are. Only the first
+     * {@link NotePreview#PREVIEW_LENGTH} characters of each text leave SQLite.
+     */
+    @Query( "SELECT id, date, substr(text, 1, " + NotePreview.PREVIEW_LENGTH + ") AS preview FROM notes " +
+            "WHERE deleted_at = 0 AND date >= :fromDate AND date <= :cursorDate " +
+            "AND (date < :cursorDate OR id < :cursorId) ORDER BY date DESC, id DESC LIMIT :limit" )
+    List<NotePreview> getNotesBefore ( long fromDate, long cursorDate, int cursorId, int limit );
+
+    /**
+     * Keyset page of the note previews dated up to {@code toDate} that come right before the cursor
+     * in (date, id) descending order, returned oldest first.
+     */
+    @Query( "SELECT id, date, substr(text, 1, " + NotePreview.PREVIEW_LENGTH + ") AS preview FROM notes " +
+            "WHERE deleted_at = 0 AND date <= :toDate AND date >= :cursorDate " +
+            "AND (date > :cursorDate OR id > :cursorId) ORDER BY date ASC, id ASC LIMIT :limit" )
+    List<NotePreview> getNotesAfter ( long toDate, long cursorDate, int cursorId, int limit );
+
+    @Query( "SELECT * FROM notes WHERE id = :noteId AND deleted_at = 0" )
     Note getNoteById ( int noteId );
 
-    @Query( "DELETE FROM notes WHERE id = :noteId" )
-    void deleteNoteById ( int noteId );
+    default void deleteNoteById ( int noteId ) {
+        deleteNotesByIdBatch(Collections.singletonList(noteId));
+    }
+
+    @Query( "DELETE FROM notes WHERE id IN (:noteIds)" )
+    void deleteNoteRowsById ( List<Integer> noteIds );
+
+    /**
+     * Deletes at most {@link #MAX_BATCH_SIZE} notes and their index rows.
+     */
+    @Transaction
+    default void deleteNotesByIdBatch ( List<Integer> noteIds ) {
+        deleteNoteIndexBatch(noteIds);
+        deleteNoteRowsById(noteIds);
+    }
+
+    /**
+     * Deletes every note in the list in one transaction, binding at most {@link #MAX_BATCH_SIZE} IDs
+     * per statement.
+     */
+    @Transaction
+    default void deleteNotesById ( List<Integer> noteIds ) {
+        for (int start = 0; start < noteIds.size(); start += MAX_BATCH_SIZE)
+            deleteNotesByIdBatch(noteIds.subList(start, Math.min(start + MAX_BATCH_SIZE, noteIds.size())));
+    }
+
+    @Query( "DELETE FROM notes WHERE id > :afterId AND id < :beforeId" )
+    void deleteNoteRowsBetween ( long afterId, long beforeId );
+
+    @Transaction
+    default void deleteNotesBetween ( long afterId, long beforeId ) {
+        deleteNoteIndexBetween(afterId, beforeId);
+        deleteNoteRowsBetween(afterId, beforeId);
+    }
+
+    /**
+     * Deletes every note but the kept ones in one transaction. It deletes the ID ranges between
+     * the kept notes, so it runs one primary-key range delete per kept note however many notes go.
+     */
+    @Transaction
+    default void deleteNotesExcept ( int[] keptIds ) {
+        int[] sorted = keptIds.clone();
+        Arrays.sort(sorted);
+        long afterId = Long.MIN_VALUE;
+        for (int id : sorted) {
+            deleteNotesBetween(afterId, id);
+            afterId = id;
+        }
+        deleteNotesBetween(afterId, Long.MAX_VALUE);
+    }
+
+    @Query( "UPDATE notes SET deleted_at = :deletedAt WHERE id IN (:noteIds) AND deleted_at = 0" )
+    void softDeleteNoteRows ( List<Integer> noteIds, long deletedAt );
+
+    /**
+     * Marks the note deleted at {@code deletedAt}: one primary-key update, and its index row goes.
+     * The note stays in {@code notes}, hidden from every query, until {@link #undeleteNotes} or
+     * the purge.
+     */
+    default void softDeleteNote ( int noteId, long deletedAt ) {
+        softDeleteNotesBatch(Collections.singletonList(noteId), deletedAt);
+    }
+
+    @Transaction
+    default void softDeleteNotesBatch ( List<Integer> noteIds, long deletedAt ) {
+        softDeleteNoteRows(noteIds, deletedAt);
+        deleteNoteIndexBatch(noteIds);
+    }
+
+    /**
+     * Marks every note in the list deleted in one transaction, like {@link #deleteNotesById}.
+     */
+    @Transaction
+    default void softDeleteNotesById ( List<Integer> noteIds, long deletedAt ) {
+        for (int start = 0; start < noteIds.size(); start += MAX_BATCH_SIZE)
+            softDeleteNotesBatch(noteIds.subList(start, Math.min(start + MAX_BATCH_SIZE, noteIds.size())), deletedAt);
+    }
+
+    @Query( "UPDATE notes SET deleted_at = :deletedAt WHERE id > :afterId AND id < :beforeId AND deleted_at = 0" )
+    void softDeleteNoteRowsBetween ( long afterId, long beforeId, long deletedAt );
+
+    @Transaction
+    default void softDeleteNotesBetween ( long afterId, long beforeId, long deletedAt ) {
+        softDeleteNoteRowsBetween(afterId, beforeId, deletedAt);
+        deleteNoteIndexBetween(afterId, beforeId);
+    }
+
+    /**
+     * Marks every note but the kept ones deleted in one transaction, a primary-key range at a time
+     * like {@link #deleteNotesExcept}.
+     */
+    @Transaction
+    default void softDeleteNotesExcept ( int[] keptIds, long deletedAt ) {
+        int[] sorted = keptIds.clone();
+        Arrays.sort(sorted);
+        long afterId = Long.MIN_VALUE;
+        for (int id : sorted) {
+            softDeleteNotesBetween(afterId, id, deletedAt);
+            afterId = id;
+        }
+        softDeleteNotesBetween(afterId, Long.MAX_VALUE, deletedAt);
+    }
+
+    /**
+     * Up to {@code limit} notes deleted at {@code deletedAt} with an ID above {@code afterId}, in
+     * ID order.
+     */
+    @Query( "SELECT * FROM notes WHERE deleted_at = :deletedAt AND id > :afterId ORDER BY id LIMIT :limit" )
+    List<Note> getDeletedNotes ( long deletedAt, int afterId, int limit );
+
+    @Query( "UPDATE notes SET deleted_at = 0 WHERE deleted_at = :deletedAt" )
+    int undeleteNoteRows ( long deletedAt );
+
+    /**
+     * Brings back a single deleted note without indexing it; the caller writes its index row.
+     *
+     * @return 1 if the note was a tombstone, 0 otherwise.
+     */
+    @Query( "UPDATE notes SET deleted_at = 0 WHERE id = :noteId AND deleted_at > 0" )
+    int undeleteNoteRow ( int noteId );
+
+    /**
+     * Brings back every note deleted at {@code deletedAt}, found through the index on the
+     * tombstones, and indexes their text again, {@link #MAX_BATCH_SIZE} notes at a time.
+     *
+     * @return How many notes came back.
+     */
+    @Transaction
+    default int undeleteNotes ( long deletedAt ) {
+        List<Note> batch;
+        int afterId = 0;
+        do {
+            batch = getDeletedNotes(deletedAt, afterId, MAX_BATCH_SIZE);
+            List<Integer> ids = new ArrayList<>(batch.size());
+            for (Note note : batch) ids.add(note.getId());
+            indexNotes(ids, batch);
+            if (!batch.isEmpty()) afterId = ids.get(ids.size() - 1);
+        } while (batch.size() == MAX_BATCH_SIZE);
+        return undeleteNoteRows(deletedAt);
+    }
+
+    @Query( "SELECT id FROM notes WHERE deleted_at > 0 AND deleted_at < :cutoff LIMIT :limit" )
+    List<Integer> getExpiredTombstones ( long cutoff, int limit );
+
+    /**
+     * Deletes for good at most {@code limit} notes deleted before {@code cutoff}, with their
+     * revisions, tags and chunks, in one transaction.
+     *
+     * @return How many notes were purged; fewer than {@code limit} means none is left.
+     */
+    @Transaction
+    default int purgeDeletedNotes ( long cutoff, int limit ) {
+        List<Integer> ids = getExpiredTombstones(cutoff, limit);
+        if (!ids.isEmpty()) deleteNotesByIdBatch(ids);
+        return ids.size();
+    }
+
+    /**
+     * Full-text matches, newest note first. A deleted note's row leaves {@code notes_fts} with the
+     * soft delete and comes back with the undo, so the index holds only live notes and the limit is
+     * never spent on tombstones.
+     */
+    @Query( "SELECT rowid AS id, matchinfo(notes_fts, 'pcnalx') AS match_info FROM notes_fts " +
+            "WHERE notes_fts MATCH :query ORDER BY rowid DESC LIMIT :limit" )
+    List<NoteMatch> matchNotes ( String query, int limit );
+
+    /**
+     * Every full-text match, newest note first, as a raw cursor the caller must close. Ranking
+     * streams it through {@link ht.godlion.quicknote.search.SearchRanker#rank(Cursor)}, which keeps
+     * only an ID and a score per match rather than every matchinfo blob.
+     */
+    @Query( "SELECT rowid AS id, matchinfo(notes_fts, 'pcnalx') AS match_info FROM notes_fts " +
+            "WHERE notes_fts MATCH :query ORDER BY rowid DESC" )
+    Cursor matchAllNotes ( String query );
+
+    @Query( "SELECT rowid AS id, matchinfo(notes_fts, 'pcnalx') AS match_info FROM notes_fts " +
+            "WHERE notes_fts MATCH :query AND rowid IN (:noteIds) ORDER BY rowid DESC" )
+    List<NoteMatch> matchNotesIn ( String query, List<Integer> noteIds );
+
+    @Query( "SELECT notes.id AS id, notes.date AS date, " +
+            "snippet(notes_fts, char(2), char(3), '…', -1, 12) AS snippet " +
+            "FROM notes_fts JOIN notes ON notes.id = notes_fts.rowid " +
+            "WHERE notes_fts MATCH :query AND notes_fts.rowid IN (:noteIds) AND notes.deleted_at = 0" )
+    List<NoteSearchResult> getSearchResults ( String query, List<Integer> noteIds );
+
+    @Insert( onConflict = OnConflictStrategy.IGNORE )
+    long insertTag ( Tag tag );
+
+    @Query( "SELECT * FROM tags WHERE name = :name" )
+    Tag getTagByName ( String name );
+
+    @Query( "DELETE FROM tags WHERE id = :tagId" )
+    void deleteTag ( int tagId );
+
+    /**
+     * Returns the ID of the tag with this name, once normalized, creating the tag if needed.
+     */
+    @Transaction
+    default int getOrCreateTagId ( String name ) {
+        Tag tag = new Tag(name);
+        Tag existing = getTagByName(tag.getName());
+        return existing != null ? existing.getId() : (int) insertTag(tag);
+    }
+
+    @Insert( onConflict = OnConflictStrategy.IGNORE )
+    void insertNoteTags ( List<NoteTag> noteTags );
+
+    /**
+     * Files the note under every named tag, creating the tags that do not exist yet. Tags the note
+     * already has and blank names are skipped.
+     */
+    @Transaction
+    default void tagNote ( int noteId, List<String> names ) {
+        List<NoteTag> noteTags = new ArrayList<>(names.size());
+        for (String name : names)
+            if (!Tag.normalize(name).isEmpty()) noteTags.add(new NoteTag(noteId, getOrCreateTagId(name)));
+        insertNoteTags(noteTags);
+    }
+
+    @Query( "DELETE FROM note_tags WHERE note_id = :noteId AND tag_id = :tagId" )
+    void untagNote ( int noteId, int tagId );
+
+    @Query( "SELECT tags.* FROM tags JOIN note_tags ON note_tags.tag_id = tags.id " +
+            "WHERE note_tags.note_id = :noteId ORDER BY tags.name" )
+    List<Tag> getTagsForNote ( int noteId );
+
+    @Query( "SELECT tags.name FROM tags JOIN note_tags ON note_tags.tag_id = tags.id " +
+            "WHERE note_tags.note_id = :noteId ORDER BY tags.name" )
+    List<String> getTagNamesForNote ( int noteId );
+
+    /**
+     * Every tag with the number of notes filed under it, by name. SQLite counts each tag's rows
+     * on the {@code (tag_id, note_id)} index without reading the notes, only the tombstones.
+     */
+    @Query( "SELECT tags.id AS id, tags.name AS name, COUNT(note_tags.note_id) AS note_count " +
+            "FROM tags LEFT JOIN note_tags ON note_tags.tag_id = tags.id " +
+            "AND note_tags.note_id NOT IN " + TOMBSTONE_IDS + " " +
+            "GROUP BY tags.id ORDER BY tags.name" )
+    List<TagCount> getTagCounts ();
+
+    /**
+     * A page of the notes filed under at least one of the tags, newest first, after the keyset
+     * cursor like {@link #getNotesBefore}.
+     */
+    @Query( "SELECT id, date, substr(text, 1, " + NotePreview.PREVIEW_LENGTH + ") AS preview FROM notes " +
+            "WHERE id IN (SELECT note_id FROM note_tags WHERE tag_id IN (:tagIds)) " +
+            "AND deleted_at = 0 AND date <= :cursorDate AND (date < :cursorDate OR id < :cursorId) " +
+            "ORDER BY date DESC, id DESC LIMIT :limit" )
+    List<NotePreview> getNotesWithAnyTag ( List<Integer> tagIds, long cursorDate, int cursorId, int limit );
+
+    /**
+     * A page of the notes filed under every one of the tags. {@code tagCount} must be the number
+     * of distinct IDs in {@code tagIds}.
+     */
+    @Query( "SELECT id, date, substr(text, 1, " + NotePreview.PREVIEW_LENGTH + ") AS preview FROM notes " +
+            "WHERE id IN (SELECT note_id FROM note_tags WHERE tag_id IN (:tagIds) " +
+            "GROUP BY note_id HAVING COUNT(*) = :tagCount) " +
+            "AND deleted_at = 0 AND date <= :cursorDate AND (date < :cursorDate OR id < :cursorId) " +
+            "ORDER BY date DESC, id DESC LIMIT :limit" )
+    List<NotePreview> getNotesWithAllTags ( List<Integer> tagIds, int tagCount, long cursorDate, int cursorId, int limit );
+
+    @Query( "SELECT COUNT(DISTINCT note_id) FROM note_tags WHERE tag_id IN (:tagIds) " +
+            "AND note_id NOT IN " + TOMBSTONE_IDS )
+    int countNotesWithAnyTag ( List<Integer> tagIds );
+
+    @Query( "SELECT COUNT(*) FROM (SELECT note_id FROM note_tags WHERE tag_id IN (:tagIds) " +
+            "AND note_id NOT IN " + TOMBSTONE_IDS + " GROUP BY note_id HAVING COUNT(*) = :tagCount)" )
+    int countNotesWithAllTags ( List<Integer> tagIds, int tagCount );
+
+    /**
+     * A page of the notes matching the tag filter: under every tag when {@code matchAll}, under any
+     * of them otherwise.
+     */
+    default List<NotePreview> getNotesWithTags ( List<Integer> tagIds, boolean matchAll, long cursorDate, int cursorId, int limit ) {
+        if (!matchAll) return getNotesWithAnyTag(tagIds, cursorDate, cursorId, limit);
+        List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(tagIds));
+        return getNotesWithAllTags(distinct, distinct.size(), cursorDate, cursorId, limit);
+    }
+
+    default int countNotesWithTags ( List<Integer> tagIds, boolean matchAll ) {
+        if (!matchAll) return countNotesWithAnyTag(tagIds);
+        List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(tagIds));
+        return countNotesWithAllTags(distinct, distinct.size());
+    }
+
+    /** The layout of the chunks of a note, in order, without their text. */
+    @Query( "SELECT note_id, ord, length FROM note_chunks WHERE note_id = :noteId ORDER BY ord" )
+    List<NoteChunk> getChunkLayout ( int noteId );
+
+    @Query( "SELECT * FROM note_chunks WHERE note_id = :noteId AND ord IN (:ords)" )
+    List<NoteChunk> getChunks ( int noteId, List<Long> ords );
+
+    @Query( "SELECT text FROM note_chunks WHERE note_id = :noteId ORDER BY ord" )
+    List<String> getChunkTexts ( int noteId );
+
+    @Insert( onConflict = OnConflictStrategy.REPLACE )
+    void insertChunks ( List<NoteChunk> chunks );
+
+    @Query( "DELETE FROM note_chunks WHERE note_id = :noteId AND ord IN (:ords)" )
+    void deleteChunksBatch ( int noteId, List<Long> ords );
+
+    @Query( "DELETE FROM note_chunks WHERE note_id = :noteId" )
+    void deleteChunks ( int noteId );
+
+    @Query( "UPDATE note_chunks SET ord = :newOrd WHERE note_id = :noteId AND ord = :oldOrd" )
+    void moveChunk ( int noteId, long oldOrd, long newOrd );
+
+    @Query( "UPDATE notes SET text = :prefix, body = NULL, chunked = 1, date = :date WHERE id = :noteId" )
+    void updateChunkedNoteRow ( int noteId, String prefix, long date );
+
+    /**
+     * Indexes the whole text of a chunked note, its chunks joined in order, in place of what was
+     * indexed for it.
+     */
+    default void indexChunkedNote ( int noteId ) {
+        deleteNoteIndexBatch(Collections.singletonList(noteId));
+        insertNoteIndex(Collections.singletonList(new NoteFts(noteId, String.join("", getChunkTexts(noteId)))));
+    }
+
+    @Query( "UPDATE notes SET date = :date WHERE id = :noteId" )
+    void updateNoteDate ( int noteId, long date );
+
+    /**
+     * Applies the changes of a chunked text in one transaction: the removed chunks are deleted,
+     * the moved ones re-keyed and only the changed ones written. Moves go through negative keys
+     * first so that no two rows ever share a key. When any chunk changed, the joined text of all of
+     * them is indexed again, so the whole note is searchable and not only its stored prefix.
+     */
+    @Transaction
+    default void saveChunks ( int noteId, ChunkedText.Changes changes ) {
+        if (changes.replacesAll()) deleteChunks(noteId);
+        List<Long> deleted = new ArrayList<>(changes.getDeletedOrds().length);
+        for (long ord : changes.getDeletedOrds()) deleted.add(ord);
+        for (int start = 0; start < deleted.size(); start += MAX_BATCH_SIZE)
+            deleteChunksBatch(noteId, deleted.subList(start, Math.min(start + MAX_BATCH_SIZE, deleted.size())));
+        long[] movedFrom = changes.getMovedFrom();
+        long[] movedTo = changes.getMovedTo();
+        for (long ord : movedFrom) moveChunk(noteId, ord, -1 - ord);
+        for (int i = 0; i < movedFrom.length; i++) moveChunk(noteId, -1 - movedFrom[i], movedTo[i]);
+        List<NoteChunk> written = new ArrayList<>(changes.getWrittenOrds().length);
+        for (int i = 0; i < changes.getWrittenOrds().length; i++)
+            written.add(new NoteChunk(noteId, changes.getWrittenOrds()[i], changes.getWrittenTexts()[i]));
+        insertChunks(written);
+        if (changes.getPrefix() != null) updateChunkedNoteRow(noteId, changes.getPrefix(), changes.getDate());
+        else updateNoteDate(noteId, changes.getDate());
+        if (!changes.isEmpty()) indexChunkedNote(noteId);
+    }
+
+    /**
+     * Opens the chunked text of a note with none of its chunks loaded.
+     */
+    default ChunkedText openChunkedText ( int noteId ) {
+        List<NoteChunk> layout = getChunkLayout(noteId);
+        long[] ords = new long[layout.size()];
+        int[] lengths = new int[layout.size()];
+        for (int i = 0; i < ords.length; i++) {
+            ords[i] = layout.get(i).getOrd();
+            lengths[i] = layout.get(i).getLength();
+        }
+        return ChunkedText.fromChunks(ords, lengths);
+    }
+
+    /**
+     * The oldest notes dated before {@code cutoffDate}, and not restored from the archive since, up
+     * to {@code limit}. Served by {@code index_notes_deleted_at_date}. Chunked notes stay in
+     * {@code notes}, and deleted ones are left to the purge.
+     */
+    @Query( "SELECT id FROM notes WHERE deleted_at = 0 AND date < :cutoffDate AND restored_at < :cutoffDate AND chunked = 0 " +
+            "ORDER BY date LIMIT :limit" )
+    List<Integer> getArchivableNoteIds ( long cutoffDate, int limit );
+
+    @Query( "SELECT id FROM notes WHERE id > :afterId AND chunked = 0 AND deleted_at = 0 ORDER BY id LIMIT :limit" )
+    List<Integer> getNoteIdsAfter ( int afterId, int limit );
+
+    @Query( "SELECT * FROM notes WHERE id IN (:noteIds) AND deleted_at = 0" )
+    List<Note> getNotesByIdBatch ( List<Integer> noteIds );
+
+    @Insert( onConflict = OnConflictStrategy.REPLACE )
+    void insertArchivedNoteRows ( List<ArchivedNote> notes );
+
+    @Insert
+    void insertArchivedNoteIndex ( List<ArchivedNoteFts> entries );
+
+    @Query( "DELETE FROM archived_notes_fts WHERE rowid IN (:noteIds)" )
+    void deleteArchivedNoteIndexBatch ( List<Integer> noteIds );
+
+    @Query( "INSERT INTO archived_note_revisions (id, note_id, number, date, checkpoint, data) " +
+            "SELECT id, note_id, number, date, checkpoint, data FROM note_revisions WHERE note_id IN (:noteIds)" )
+    void archiveRevisions ( List<Integer> noteIds );
+
+    @Query( "INSERT INTO note_revisions (id, note_id, number, date, checkpoint, data) " +
+            "SELECT id, note_id, number, date, checkpoint, data FROM archived_note_revisions WHERE note_id IN (:noteIds)" )
+    void restoreRevisions ( List<Integer> noteIds );
+
+    @Query( "DELETE FROM archived_note_revisions WHERE note_id IN (:noteIds)" )
+    void deleteArchivedRevisions ( List<Integer> noteIds );
+
+    /**
+     * Moves at most {@link #MAX_BATCH_SIZE} notes, with their tag names and revisions, to the
+     * archive in one transaction. Chunked notes and IDs that are not in {@code notes} are skipped.
+     *
+     * @return The IDs of the notes archived.
+     */
+    @Transaction
+    default List<Integer> archiveNotes ( List<Integer> noteIds, long archivedAt ) {
+        List<ArchivedNote> archived = new ArrayList<>(noteIds.size());
+        List<ArchivedNoteFts> index = new ArrayList<>(noteIds.size());
+        List<Integer> ids = new ArrayList<>(noteIds.size());
+        for (Note note : getNotesByIdBatch(noteIds)) {
+            if (note.isChunked()) continue;
+            List<String> tagNames = new ArrayList<>();
+            for (Tag tag : getTagsForNote(note.getId())) tagNames.add(tag.getName());
+            archived.add(new ArchivedNote(note, tagNames, archivedAt));
+            index.add(new ArchivedNoteFts(note.getId(), note.getNoteText()));
+            ids.add(note.getId());
+        }
+        insertArchivedNoteRows(archived);
+        deleteArchivedNoteIndexBatch(ids);
+        insertArchivedNoteIndex(index);
+        // The revisions are copied before the delete cascades them away.
+        archiveRevisions(ids);
+        deleteNotesByIdBatch(ids);
+        return ids;
+    }
+
+    @Query( "SELECT * FROM archived_notes WHERE id IN (:noteIds)" )
+    List<ArchivedNote> getArchivedNotesBatch ( List<Integer> noteIds );
+
+    @Query( "DELETE FROM archived_notes WHERE id IN (:noteIds)" )
+    void deleteArchivedNotesBatch ( List<Integer> noteIds );
+
+    /**
+     * Moves archived notes back to {@code notes} under their own IDs, with their tags and
+     * revisions, in one transaction. {@code restoredAt} keeps them from being archived by age again right away.
+     *
+     * @return How many notes were restored.
+     */
+    @Transaction
+    default int restoreArchivedNotes ( List<Integer> noteIds, long restoredAt ) {
+        int restored = 0;
+        for (int start = 0; start < noteIds.size(); start += MAX_BATCH_SIZE) {
+            List<Integer> batch = noteIds.subList(start, Math.min(start + MAX_BATCH_SIZE, noteIds.size()));
+            for (ArchivedNote archived : getArchivedNotesBatch(batch)) {
+                Note note = new Note(archived.getNoteText(), archived.getNoteDate());
+                note.setId(archived.getId());
+                note.setRestoredAt(restoredAt);
+                insertNote(note);
+                String[] tagNames = archived.getTagNames();
+                if (tagNames.length > 0) tagNote(archived.getId(), Arrays.asList(tagNames));
+                restored++;
+            }
+            restoreRevisions(batch);
+            deleteArchivedRevisions(batch);
+            deleteArchivedNoteIndexBatch(batch);
+            deleteArchivedNotesBatch(batch);
+        }
+        return restored;
+    }
+
+    @Query( "SELECT * FROM archived_notes WHERE id = :noteId" )
+    ArchivedNote getArchivedNote ( int noteId );
+
+    /** Up to {@code limit} archived notes with an ID above {@code afterId}, in ID order. */
+    @Query( "SELECT * FROM archived_notes WHERE id > :afterId ORDER BY id LIMIT :limit" )
+    List<ArchivedNote> getArchivedNotesAfter ( int afterId, int limit );
+
+    /**
+     * Puts imported notes straight into the archive, with their tag names, in one transaction.
+     * They are inserted into {@code notes} first, which gives them new IDs that no note can take
+     * later, and tagged there, then archived.
+     */
+    @Transaction
+    default void importArchivedNotes ( List<Note> notes, List<List<String>> tagNames, long archivedAt ) {
+        List<Long> rowIds = insertNoteRows(notes);
+        List<Integer> ids = new ArrayList<>(rowIds.size());
+        for (long id : rowIds) ids.add((int) id);
+        for (int i = 0; i < ids.size(); i++)
+            if (!tagNames.get(i).isEmpty()) tagNote(ids.get(i), tagNames.get(i));
+        for (int start = 0; start < ids.size(); start += MAX_BATCH_SIZE)
+            archiveNotes(ids.subList(start, Math.min(start + MAX_BATCH_SIZE, ids.size())), archivedAt);
+    }
+
+    @Query( "SELECT COUNT(*) FROM archived_notes" )
+    int countArchivedNotes ();
+
+    /**
+     * Keyset page of archived note previews, newest first, as {@link #getNotesBefore} for notes.
+     */
+    @Query( "SELECT id, date, substr(text, 1, " + NotePreview.PREVIEW_LENGTH + ") AS preview FROM archived_notes " +
+            "WHERE date <= :cursorDate AND (date < :cursorDate OR id < :cursorId) " +
+            "ORDER BY date DESC, id DESC LIMIT :limit" )
+    List<NotePreview> getArchivedNotesBefore ( long cursorDate, int cursorId, int limit );
+
+    /**
+     * Archived notes matching a full-text query, newest first, with a snippet like
+     * {@link #getSearchResults}.
+     */
+    @Query( "SELECT archived_notes.id AS id, archived_notes.date AS date, " +
+            "snippet(archived_notes_fts, char(2), char(3), '…', -1, 12) AS snippet " +
+            "FROM archived_notes_fts JOIN archived_notes ON archived_notes.id = archived_notes_fts.rowid " +
+            "WHERE archived_notes_fts MATCH :query ORDER BY archived_notes.date DESC LIMIT :limit" )
+    List<NoteSearchResult> searchArchivedNotes ( String query, int limit );
 }
@@ -0,0 +1,114 @@
+package ht.godlion.quicknote.db;
+
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.paging.ItemKeyedDataSource;
+import androidx.room.InvalidationTracker;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import ht.godlion.quicknote.model.NotePreview;
+
+/**
+ * Pages through the note previews newest first with keyset pagination: each page continues from the
+ * (date, id) of the last note loaded instead of skipping an OFFSET, so loading a page deep in the
+ * list costs the same as loading the first one. The list can be restricted to a date range. The data
+ * source invalidates itself whenever the notes table changes.
+ */
+public class NotesKeyedDataSource extends ItemKeyedDataSource<NotesKeyedDataSource.Key, NotePreview> {
+    private final NotesDao dao;
+    private final InvalidationTracker tracker;
+    private final long fromDate;
+    private final long toDate;
+    private final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("notes") {
+        @Override
+        public void onInvalidated ( @NonNull Set<String> tables ) {
+            invalidate();
+        }
+    };
+
+    /**
+     * The position of a note in (date, id) descending order.
+     */
+    public static final class Key {
+        final long date;
+        final int id;
+
+        public Key ( long date, int id ) {
+            this.date = date;
+            this.id = id;
+        }
+    }
+
+    NotesKeyedDataSource ( NotesDao dao, InvalidationTracker tracker, long fromDate, long toDate ) {
+        this.dao = dao;
+        this.tracker = tracker;
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        if (tracker != null) {
+            tracker.addWeakObserver(observer);
+            addInvalidatedCallback(() -> tracker.removeObserver(observer));
+        }
+    }
+
+    @Override
+    public void loadInitial ( @NonNull LoadInitialParams<Key> params, @NonNull LoadInitialCallback<NotePreview> callback ) {
+        Key key = params.requestedInitialKey;
+        List<NotePreview> notes = key == null
+                ? dao.getNotesBefore(fromDate, toDate, Integer.MAX_VALUE, params.requestedLoadSize)
+                // Restart from the note that was at the top, including it.
+                : dao.getNotesBefore(fromDate, key.date, key.id + 1, params.requestedLoadSize);
+        callback.onResult(notes);
+    }
+
+    @Override
+    public void loadAfter ( @NonNull LoadParams<Key> params, @NonNull LoadCallback<NotePreview> callback ) {
+        callback.onResult(dao.getNotesBefore(fromDate, params.key.date, params.key.id, params.requestedLoadSize));
+    }
+
+    @Override
+    public void loadBefore ( @NonNull LoadParams<Key> params, @NonNull LoadCallback<NotePreview> callback ) {
+        List<NotePreview> notes = dao.getNotesAfter(toDate, params.key.date, params.key.id, params.requestedLoadSize);
+        Collections.reverse(notes);
+        callback.onResult(notes);
+    }
+
+    @NonNull
+    @Override
+    public Key getKey ( @NonNull NotePreview note ) {
+        return new Key(note.getNoteDate(), note.getId());
+    }
+
+    /**
+     * Creates a new data source each time the previous one is invalidated.
+     */
+    public static class Factory extends DataSource.Factory<Key, NotePreview> {
+        private final NotesDao dao;
+        private final InvalidationTracker tracker;
+        private final long fromDate;
+        private final long toDate;
+
+        public Factory ( @NonNull NotesDao dao, InvalidationTracker tracker ) {
+            this(dao, tracker, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        /**
+         * @param fromDate The oldest date to include, inclusive.
+         * @param toDate The newest date to include, inclusive.
+         */
+        public Factory ( @NonNull NotesDao dao, InvalidationTracker tracker, long fromDate, long toDate ) {
+            this.dao = dao;
+            this.tracker = tracker;
+            this.fromDate = fromDate;
+            this.toDate = toDate;
+        }
+
+        @NonNull
+        @Override
+        public DataSource<Key, NotePreview> create () {
+            return new NotesKeyedDataSource(dao, tracker, fromDate, toDate);
+        }
+    }
+}
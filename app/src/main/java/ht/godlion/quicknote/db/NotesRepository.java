@@ -0,0 +1,715 @@
+package ht.godlion.quicknote.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
+import androidx.room.InvalidationTracker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ht.godlion.quicknote.backup.NotesBackup;
+import ht.godlion.quicknote.history.NoteHistory;
+import ht.godlion.quicknote.metrics.Metrics;
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NoteChunk;
+import ht.godlion.quicknote.model.NotePreview;
+import ht.godlion.quicknote.model.NoteRevision;
+import ht.godlion.quicknote.model.NoteSearchResult;
+import ht.godlion.quicknote.model.Tag;
+import ht.godlion.quicknote.model.TagCount;
+import ht.godlion.quicknote.search.SearchDataSource;
+import ht.godlion.quicknote.search.SearchQuery;
+import ht.godlion.quicknote.search.SearchRanker;
+import ht.godlion.quicknote.search.SearchResultCache;
+import ht.godlion.quicknote.text.ChunkedText;
+import ht.godlion.quicknote.utils.AppExecutors;
+import ht.godlion.quicknote.utils.IntSet;
+import ht.godlion.quicknote.utils.StartupTimer;
+
+/**
+ * The NotesRepository class sits between the activities and {@link NotesDao}. Every query runs on the
+ * read lane and every write on the write lane of {@link AppExecutors}; results and completions are
+ * posted back to the main thread, so the UI never touches the database directly.
+ */
+public class NotesRepository {
+    private static final String TAG = "NotesRepository";
+    public static final int PAGE_SIZE = 30;
+    /** Keyset pages have no total count, so the note list does not use placeholders. */
+    private static final PagedList.Config NOTES_PAGE_CONFIG = new PagedList.Config.Builder()
+            .setPageSize(PAGE_SIZE)
+            .setInitialLoadSizeHint(PAGE_SIZE * 2)
+            .setPrefetchDistance(PAGE_SIZE)
+            .setEnablePlaceholders(false)
+            .build();
+    private static final PagedList.Config PAGE_CONFIG = new PagedList.Config.Builder()
+            .setPageSize(PAGE_SIZE)
+            .setInitialLoadSizeHint(PAGE_SIZE * 2)
+            .setPrefetchDistance(PAGE_SIZE)
+            .setEnablePlaceholders(true)
+            .build();
+    /**
+     * The largest cached search result that the query of a longer input is narrowed to, by passing
+     * its IDs back to {@link NotesDao#matchNotesIn}. Kept below SQLite's limit of 999 bound variables; a larger
+     * result is ranked again from the whole index instead.
+     */
+    public static final int NARROW_LIMIT = NotesDao.MAX_BATCH_SIZE;
+    private static final int SEARCH_CACHE_SIZE = 32;
+    /** Text bytes of recently opened notes kept in memory. */
+    private static final long NOTE_CACHE_BYTES = 4L * 1024 * 1024;
+    /** How long deleted notes can be brought back before the purge removes them. */
+    public static final long DELETED_NOTE_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+    /** Deleted notes removed for good per transaction. */
+    public static final int PURGE_BATCH_SIZE = 100;
+    private static final String CACHE_HIT = "NoteCache.hit";
+    private static final String CACHE_MISS = "NoteCache.miss";
+    private static volatile NotesRepository instance;
+
+    private final NotesDao dao;
+    private final NotesKeyedDataSource.Factory notesFactory;
+    private final AppExecutors executors;
+    private final SearchResultCache searchCache = new SearchResultCache(SEARCH_CACHE_SIZE);
+    private final NoteCache noteCache = new NoteCache(NOTE_CACHE_BYTES);
+    private final AutosaveQueue autosaveQueue;
+    private final NoteArchiver archiver;
+    private final AtomicLong lastDeletedAt = new AtomicLong();
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+    private final LiveData<PagedList<NotePreview>> notesLive;
+    private final MutableLiveData<Integer> notesVersion = new MutableLiveData<>(0);
+    private final AtomicInteger notesChanges = new AtomicInteger();
+    private FutureTask<Void> pendingSearch;
+    private volatile long lastSearchNanos;
+
+    /**
+     * Receives the result of an asynchronous query on the main thread.
+     */
+    public interface Callback<T> {
+        void onResult ( T result );
+    }
+
+    /**
+     * @param tracker The invalidation tracker of the database behind {@code dao}, used to refresh
+     * paged lists and drop cached search results when notes change. May be null in tests.
+     */
+    public NotesRepository ( @NonNull NotesDao dao, @Nullable InvalidationTracker tracker, @NonNull AppExecutors executors ) {
+        this.dao = dao;
+        this.notesFactory = new NotesKeyedDataSource.Factory(dao, tracker);
+        this.executors = executors;
+        this.autosaveQueue = new AutosaveQueue(dao, executors.diskWrite(), noteCache);
+        this.archiver = new NoteArchiver(dao);
+        this.notesLive = new LivePagedListBuilder<>(notesFactory, NOTES_PAGE_CONFIG)
+                .setFetchExecutor(executors.diskRead())
+                .build();
+        if (tracker != null)
+            tracker.addObserver(new InvalidationTracker.Observer("notes") {
+                @Override
+                public void onInvalidated ( @NonNull Set<String> tables ) {
+                    onNotesChanged();
+                }
+            });
+    }
+
+    public static NotesRepository getInstance ( Context context ) {
+        if (instance == null) {
+            synchronized (NotesRepository.class) {
+                if (instance == null) {
+                    NotesDB db = NotesDB.getInstance(context);
+                    NotesDao dao = Metrics.traced(NotesDao.class, db.notesDao());
+                    instance = new NotesRepository(dao, db.getInvalidationTracker(), AppExecutors.getInstance());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void getNotes ( @NonNull Callback<List<Note>> callback ) {
+        executors.diskRead().execute(() -> {
+            List<Note> notes = dao.getNotes();
+            executors.mainThread().execute(() -> callback.onResult(notes));
+        });
+    }
+
+    /**
+     * Returns the note list, newest first, as a {@link PagedList} of previews that is replaced
+     * whenever the notes table changes. Only a window of rows around what is displayed is kept in
+     * memory; pages are fetched on the read lane with keyset queries as the list is scrolled. Room's
+     * invalidation tracker drives the updates, so nothing is queried again while notes stay as they
+     * are, and nothing at all while no one observes. The same instance is returned every time.
+     */
+    public LiveData<PagedList<NotePreview>> getNotesLive () {
+        return notesLive;
+    }
+
+    /**
+     * Returns the number of notes, updated by Room whenever the notes table changes.
+     */
+    public LiveData<Integer> getNoteCount () {
+        return dao.observeNoteCount();
+    }
+
+    /**
+     * Returns a counter that goes up each time the notes table changes, for results that are not
+     * observable themselves, such as search results.
+     */
+    public LiveData<Integer> getNotesVersion () {
+        return notesVersion;
+    }
+
+    /**
+     * Opens the database and loads the first page of the note list on the read lane at process
+     * start, ahead of the first screen. The list stays in {@link #getNotesLive()}, so the first
+     * observer receives it at once instead of querying again. Must be called on the main thread.
+     */
+    public void prewarm () {
+        notesLive.observeForever(new Observer<PagedList<NotePreview>>() {
+            @Override
+            public void onChanged ( PagedList<NotePreview> notes ) {
+                StartupTimer.mark(StartupTimer.DATABASE_WARM);
+                notesLive.removeObserver(this);
+            }
+        });
+    }
+
+    /**
+     * Runs a full-text search for what the user typed and builds a {@link PagedList} of the results,
+     * best match first, each with a highlighted snippet. Every matching note is ranked, so an old
+     * note that matches best comes first however many newer notes also match; only the page being
+     * shown loads snippets. The list is empty when the input has nothing to search for.
+     * <p>
+     * Must be called from the main thread. A new search supersedes the previous one: if that one has
+     * not started yet it is cancelled, otherwise its result is dropped instead of being delivered.
+     * Ranked results are cached, and the query of an input that extends a cached one is narrowed to
+     * the cached IDs; it still runs against SQLite, but does not search the whole index.
+     */
+    public void search ( @Nullable String input, @NonNull Callback<PagedList<NoteSearchResult>> callback ) {
+        int generation = searchGeneration.incrementAndGet();
+        if (pendingSearch != null) pendingSearch.cancel(false);
+        pendingSearch = new FutureTask<>(() -> {
+            if (generation != searchGeneration.get()) return;
+            long start = System.nanoTime();
+            String expression = SearchQuery.toMatchExpression(input);
+            List<Integer> rankedIds = expression == null
+                    ? Collections.emptyList()
+                    : rankedSearchIds(input, expression);
+            if (generation != searchGeneration.get()) return;
+            PagedList<NoteSearchResult> results = new PagedList.Builder<>(
+                    new SearchDataSource(dao, expression == null ? "" : expression, rankedIds), PAGE_CONFIG)
+                    .setFetchExecutor(executors.diskRead())
+                    .setNotifyExecutor(executors.mainThread())
+                    .build();
+            lastSearchNanos = System.nanoTime() - start;
+            executors.mainThread().execute(() -> {
+                if (generation == searchGeneration.get()) callback.onResult(results);
+            });
+        }, null);
+        executors.diskRead().execute(pendingSearch);
+    }
+
+    private List<Integer> rankedSearchIds ( String input, String expression ) {
+        int cacheVersion = searchCache.getVersion();
+        List<Integer> rankedIds = searchCache.get(expression);
+        if (rankedIds != null) return rankedIds;
+        List<Integer> superset = searchCache.getSuperset(input);
+        if (superset != null) {
+            rankedIds = SearchRanker.rank(dao.matchNotesIn(expression, superset));
+        } else {
+            try (Cursor matches = dao.matchAllNotes(expression)) {
+                rankedIds = SearchRanker.rank(matches);
+            }
+        }
+        rankedIds = Collections.unmodifiableList(rankedIds);
+        searchCache.put(input, expression, rankedIds, rankedIds.size() <= NARROW_LIMIT, cacheVersion);
+        return rankedIds;
+    }
+
+    /**
+     * Called whenever the notes table changes; cached search results may no longer be valid.
+     */
+    public void onNotesChanged () {
+        searchCache.clear();
+        notesVersion.postValue(notesChanges.incrementAndGet());
+    }
+
+    public SearchResultCache getSearchCache () {
+        return searchCache;
+    }
+
+    /**
+     * Returns how long the last completed search took to rank its matches and load its first page.
+     */
+    public long getLastSearchNanos () {
+        return lastSearchNanos;
+    }
+
+    public void countNotes ( @NonNull Callback<Integer> callback ) {
+        executors.diskRead().execute(() -> {
+            int count = dao.countNotes();
+            executors.mainThread().execute(() -> callback.onResult(count));
+        });
+    }
+
+    /**
+     * Loads a full note, from the note cache when it is there. A compressed text is decompressed
+     * here on the read lane, so the caller gets it without blocking the main thread.
+     */
+    public void getNoteById ( int noteId, @NonNull Callback<Note> callback ) {
+        executors.diskRead().execute(() -> {
+            Note note = noteCache.get(noteId);
+            Metrics.increment(note != null ? CACHE_HIT : CACHE_MISS);
+            if (note == null) {
+                int version = noteCache.getVersion();
+                note = dao.getNoteById(noteId);
+                if (note != null) {
+                    note.getNoteText();
+                    noteCache.putLoaded(note, version);
+                }
+            }
+            Note result = note;
+            executors.mainThread().execute(() -> callback.onResult(result));
+        });
+    }
+
+    /**
+     * Returns the note right away if it is in the note cache, otherwise null; use
+     * {@link #getNoteById} then.
+     */
+    @Nullable
+    public Note getCachedNote ( int noteId ) {
+        Note note = noteCache.get(noteId);
+        if (note != null) Metrics.increment(CACHE_HIT);
+        return note;
+    }
+
+    public NoteCache getNoteCache () {
+        return noteCache;
+    }
+
+    public void insertNote ( @NonNull Note note, @Nullable Runnable onComplete ) {
+        write(() -> {
+            note.setId((int) dao.insertNote(note));
+            noteCache.put(note);
+        }, onComplete);
+    }
+
+    /**
+     * Updates the note, keeping its previous text in its revision history.
+     */
+    public void updateNote ( @NonNull Note note, @Nullable Runnable onComplete ) {
+        write(() -> {
+            dao.updateNoteWithHistory(note);
+            noteCache.put(note);
+        }, onComplete);
+    }
+
+    /**
+     * Saves the latest text of a note being edited on the write lane, dropping versions that are
+     * replaced before their write runs. See {@link AutosaveQueue}.
+     */
+    public void autosave ( @NonNull AutosaveQueue.Draft draft, @NonNull String text, long date ) {
+        autosaveQueue.submit(draft, text, date);
+    }
+
+    /**
+     * Runs {@code onComplete} on the main thread once every autosave submitted so far is written.
+     */
+    public void flushAutosaves ( @NonNull Runnable onComplete ) {
+        autosaveQueue.flush(() -> executors.mainThread().execute(onComplete));
+    }
+
+    public AutosaveQueue getAutosaveQueue () {
+        return autosaveQueue;
+    }
+
+    /**
+     * Inserts all the notes in a single transaction.
+     */
+    public void insertNotes ( @NonNull List<Note> notes, @Nullable Runnable onComplete ) {
+        write(() -> {
+            dao.insertNotes(notes);
+            for (Note note : notes) if (note.getId() != 0) noteCache.remove(note.getId());
+        }, onComplete);
+    }
+
+    /**
+     * Updates all the notes in a single transaction, keeping their history.
+     */
+    public void updateNotes ( @NonNull List<Note> notes, @Nullable Runnable onComplete ) {
+        write(() -> {
+            dao.updateNotesWithHistory(notes);
+            for (Note note : notes) noteCache.put(note);
+        }, onComplete);
+    }
+
+    /**
+     * Lists the revisions of a note, newest first. A note that never changed has none.
+     */
+    public void getRevisions ( int noteId, @NonNull Callback<List<NoteRevision>> callback ) {
+        executors.diskRead().execute(() -> {
+            List<NoteRevision> revisions = dao.getRevisions(noteId);
+            executors.mainThread().execute(() -> callback.onResult(revisions));
+        });
+    }
+
+    /**
+     * Rebuilds the text of a revision; the callback receives null if the note has no such revision.
+     */
+    public void getRevisionText ( int noteId, int number, @NonNull Callback<String> callback ) {
+        executors.diskRead().execute(() -> {
+            List<NoteRevision> chain = dao.getRevisionChain(noteId, number);
+            String text = chain.isEmpty() || chain.get(chain.size() - 1).getNumber() != number
+                    ? null : NoteHistory.rebuild(chain);
+            executors.mainThread().execute(() -> callback.onResult(text));
+        });
+    }
+
+    /**
+     * Makes the text of a revision the current text of the note. The restore is itself saved as a
+     * new revision, so the versions after the restored one stay in the history. Does nothing if
+     * the note or the revision does not exist.
+     */
+    public void restoreRevision ( int noteId, int number, long date, @Nullable Runnable onComplete ) {
+        write(() -> {
+            List<NoteRevision> chain = dao.getRevisionChain(noteId, number);
+            Note note = dao.getNoteById(noteId);
+            if (note == null || chain.isEmpty() || chain.get(chain.size() - 1).getNumber() != number) return;
+            note.setNoteText(NoteHistory.rebuild(chain));
+            note.setNoteDate(date);
+            dao.updateNoteWithHistory(note);
+            noteCache.put(note);
+        }, onComplete);
+    }
+
+    /**
+     * Deletes all the notes in a single transaction. Deletes only mark the notes: pass the
+     * returned time to {@link #undoDelete} to bring them back, and {@link #purgeDeletedNotes}
+     * removes them for good later.
+     *
+     * @return The time the notes are marked deleted at, unique to this delete.
+     */
+    public long deleteNotes ( @NonNull List<Note> notes, @Nullable Runnable onComplete ) {
+        List<Integer> noteIds = new ArrayList<>(notes.size());
+        for (Note note : notes) noteIds.add(note.getId());
+        return deleteNotesById(noteIds, onComplete);
+    }
+
+    public long deleteNotesById ( @NonNull List<Integer> noteIds, @Nullable Runnable onComplete ) {
+        long deletedAt = nextDeletedAt();
+        write(() -> {
+            dao.softDeleteNotesById(noteIds, deletedAt);
+            for (int noteId : noteIds) noteCache.remove(noteId);
+        }, onComplete);
+        return deletedAt;
+    }
+
+    /**
+     * Deletes every note except {@code keptIds}, without loading the IDs of the deleted ones.
+     */
+    public long deleteNotesExcept ( @NonNull int[] keptIds, @Nullable Runnable onComplete ) {
+        long deletedAt = nextDeletedAt();
+        write(() -> {
+            dao.softDeleteNotesExcept(keptIds, deletedAt);
+            noteCache.clear();
+        }, onComplete);
+        return deletedAt;
+    }
+
+    public long deleteNoteById ( int noteId, @Nullable Runnable onComplete ) {
+        long deletedAt = nextDeletedAt();
+        write(() -> {
+            dao.softDeleteNote(noteId, deletedAt);
+            noteCache.remove(noteId);
+        }, onComplete);
+        return deletedAt;
+    }
+
+    /**
+     * Brings back the notes of the delete that returned {@code deletedAt}, unless they were
+     * purged already.
+     */
+    public void undoDelete ( long deletedAt, @Nullable Runnable onComplete ) {
+        write(() -> dao.undeleteNotes(deletedAt), onComplete);
+    }
+
+    /**
+     * Deletes for good the notes deleted more than {@code maxAgeMillis} ago, a batch of
+     * {@link #PURGE_BATCH_SIZE} per transaction. Each batch is its own task on the write lane, so
+     * saves submitted meanwhile run in between.
+     *
+     * @param onComplete Receives how many notes were purged, on the main thread.
+     */
+    public void purgeDeletedNotes ( long maxAgeMillis, @Nullable Callback<Integer> onComplete ) {
+        purgeBatch(System.currentTimeMillis() - maxAgeMillis, 0, onComplete);
+    }
+
+    private void purgeBatch ( long cutoff, int purgedBefore, @Nullable Callback<Integer> onComplete ) {
+        executors.diskWrite().execute(() -> {
+            int batch = dao.purgeDeletedNotes(cutoff, PURGE_BATCH_SIZE);
+            int purged = purgedBefore + batch;
+            if (batch == PURGE_BATCH_SIZE) purgeBatch(cutoff, purged, onComplete);
+            else if (onComplete != null) executors.mainThread().execute(() -> onComplete.onResult(purged));
+        });
+    }
+
+    /**
+     * The current time, or one past the last tombstone time handed out, so that every delete can
+     * be undone on its own.
+     */
+    private long nextDeletedAt () {
+        return lastDeletedAt.accumulateAndGet(System.currentTimeMillis(), ( last, now ) -> Math.max(last + 1, now));
+    }
+
+    /**
+     * Opens the text of a chunked note with none of its chunks loaded; load the chunks to show
+     * with {@link #loadChunks}. The callback receives an empty text if the note has no chunks.
+     */
+    public void openChunkedText ( int noteId, @NonNull Callback<ChunkedText> callback ) {
+        executors.diskRead().execute(() -> {
+            ChunkedText text = dao.openChunkedText(noteId);
+            executors.mainThread().execute(() -> callback.onResult(text));
+        });
+    }
+
+    /**
+     * Loads the given chunks into {@code text} on the main thread, then runs {@code onLoaded}.
+     * Runs on the write lane rather than the read lane so that it sees every chunk saved before.
+     */
+    public void loadChunks ( int noteId, @NonNull ChunkedText text, @NonNull long[] ords, @NonNull Runnable onLoaded ) {
+        List<Long> keys = new ArrayList<>(ords.length);
+        for (long ord : ords) keys.add(ord);
+        executors.diskWrite().execute(() -> {
+            List<NoteChunk> chunks = dao.getChunks(noteId, keys);
+            executors.mainThread().execute(() -> {
+                for (NoteChunk chunk : chunks) text.fill(chunk.getOrd(), chunk.getText());
+                onLoaded.run();
+            });
+        });
+    }
+
+    /**
+     * Writes the chunks of a large note changed since its last save.
+     */
+    public void saveChunks ( int noteId, @NonNull ChunkedText.Changes changes, @Nullable Runnable onComplete ) {
+        write(() -> {
+            dao.saveChunks(noteId, changes);
+            noteCache.remove(noteId);
+        }, onComplete);
+    }
+
+    /**
+     * Archives the notes last changed more than {@code maxAgeMillis} ago. The work runs as short
+     * {@link NoteArchiver} passes on the write lane, each one queued behind the writes submitted
+     * while the previous one ran, so saves never wait for the whole backlog.
+     *
+     * @param onComplete Receives how many notes were archived, on the main thread.
+     */
+    public void archiveOldNotes ( long maxAgeMillis, @Nullable Callback<Integer> onComplete ) {
+        archivePass(System.currentTimeMillis() - maxAgeMillis, 0, onComplete);
+    }
+
+    private void archivePass ( long cutoffDate, int archivedBefore, @Nullable Callback<Integer> onComplete ) {
+        executors.diskWrite().execute(() -> {
+            NoteArchiver.Pass pass = archiver.runPass(cutoffDate, NoteArchiver.PASS_BUDGET_NANOS);
+            for (int id : pass.getArchivedIds()) noteCache.remove(id);
+            int archived = archivedBefore + pass.getArchivedIds().size();
+            if (!pass.isFinished()) archivePass(cutoffDate, archived, onComplete);
+            else if (onComplete != null) executors.mainThread().execute(() -> onComplete.onResult(archived));
+        });
+    }
+
+    /**
+     * Archives the listed notes, whatever their age, a {@link NoteArchiver#BATCH_SIZE} batch per
+     * task on the write lane, so saves submitted meanwhile run in between.
+     *
+     * @param onComplete Receives how many notes were archived, on the main thread.
+     */
+    public void archiveNotes ( @NonNull List<Integer> noteIds, @Nullable Callback<Integer> onComplete ) {
+        archiveBatch(new ArrayList<>(noteIds), 0, System.currentTimeMillis(), 0, onComplete);
+    }
+
+    private void archiveBatch ( List<Integer> noteIds, int start, long archivedAt, int archivedBefore,
+                                @Nullable Callback<Integer> onComplete ) {
+        executors.diskWrite().execute(() -> {
+            int end = Math.min(start + NoteArchiver.BATCH_SIZE, noteIds.size());
+            List<Integer> archived = end > start ? dao.archiveNotes(noteIds.subList(start, end), archivedAt) : Collections.emptyList();
+            for (int id : archived) noteCache.remove(id);
+            int total = archivedBefore + archived.size();
+            if (end < noteIds.size()) archiveBatch(noteIds, end, archivedAt, total, onComplete);
+            else if (onComplete != null) executors.mainThread().execute(() -> onComplete.onResult(total));
+        });
+    }
+
+    /**
+     * Archives every note except {@code keptIds}, walking the table by ID a
+     * {@link NoteArchiver#BATCH_SIZE} batch per task on the write lane, like {@link #archiveNotes}.
+     *
+     * @param onComplete Receives how many notes were archived, on the main thread.
+     */
+    public void archiveNotesExcept ( @NonNull int[] keptIds, @Nullable Callback<Integer> onComplete ) {
+        IntSet kept = new IntSet();
+        for (int id : keptIds) kept.add(id);
+        archiveBatchAfter(kept, 0, System.currentTimeMillis(), 0, onComplete);
+    }
+
+    private void archiveBatchAfter ( IntSet kept, int afterId, long archivedAt, int archivedBefore,
+                                     @Nullable Callback<Integer> onComplete ) {
+        executors.diskWrite().execute(() -> {
+            List<Integer> ids = dao.getNoteIdsAfter(afterId, NoteArchiver.BATCH_SIZE);
+            List<Integer> batch = new ArrayList<>(ids.size());
+            for (int id : ids) if (!kept.contains(id)) batch.add(id);
+            List<Integer> archived = batch.isEmpty() ? Collections.emptyList() : dao.archiveNotes(batch, archivedAt);
+            for (int id : archived) noteCache.remove(id);
+            int total = archivedBefore + archived.size();
+            if (ids.size() == NoteArchiver.BATCH_SIZE)
+                archiveBatchAfter(kept, ids.get(ids.size() - 1), archivedAt, total, onComplete);
+            else if (onComplete != null) executors.mainThread().execute(() -> onComplete.onResult(total));
+        });
+    }
+
+    /**
+     * Moves archived notes back into the note list under their own IDs.
+     */
+    public void restoreNotes ( @NonNull List<Integer> noteIds, @Nullable Runnable onComplete ) {
+        write(() -> dao.restoreArchivedNotes(noteIds, System.currentTimeMillis()), onComplete);
+    }
+
+    /**
+     * The newest archived notes, at most {@code limit}.
+     */
+    public void getArchivedNotes ( int limit, @NonNull Callback<List<NotePreview>> callback ) {
+        executors.diskRead().execute(() -> {
+            List<NotePreview> notes = dao.getArchivedNotesBefore(Long.MAX_VALUE, Integer.MAX_VALUE, limit);
+            executors.mainThread().execute(() -> callback.onResult(notes));
+        });
+    }
+
+    /**
+     * Searches the archived notes with the same query syntax as {@link #search}, newest first.
+     */
+    public void searchArchive ( @Nullable String input, int limit, @NonNull Callback<List<NoteSearchResult>> callback ) {
+        executors.diskRead().execute(() -> {
+            String expression = SearchQuery.toMatchExpression(input);
+            List<NoteSearchResult> results = expression == null
+                    ? Collections.emptyList()
+                    : dao.searchArchivedNotes(expression, limit);
+            executors.mainThread().execute(() -> callback.onResult(results));
+        });
+    }
+
+    /**
+     * Files the note under the named tags, creating the tags that do not exist yet.
+     */
+    public void tagNote ( int noteId, @NonNull List<String> tagNames, @Nullable Runnable onComplete ) {
+        write(() -> dao.tagNote(noteId, tagNames), onComplete);
+    }
+
+    public void untagNote ( int noteId, int tagId, @Nullable Runnable onComplete ) {
+        write(() -> dao.untagNote(noteId, tagId), onComplete);
+    }
+
+    public void deleteTag ( int tagId, @Nullable Runnable onComplete ) {
+        write(() -> dao.deleteTag(tagId), onComplete);
+    }
+
+    public void getTagsForNote ( int noteId, @NonNull Callback<List<Tag>> callback ) {
+        executors.diskRead().execute(() -> {
+            List<Tag> tags = dao.getTagsForNote(noteId);
+            executors.mainThread().execute(() -> callback.onResult(tags));
+        });
+    }
+
+    /**
+     * Loads every tag with its note count, counted by SQLite.
+     */
+    public void getTagCounts ( @NonNull Callback<List<TagCount>> callback ) {
+        executors.diskRead().execute(() -> {
+            List<TagCount> counts = dao.getTagCounts();
+            executors.mainThread().execute(() -> callback.onResult(counts));
+        });
+    }
+
+    /**
+     * Loads the newest {@code limit} notes matching the tag filter: under every tag when
+     * {@code matchAll}, under any of them otherwise. Pass the last note of a page as the cursor
+     * to load the next one, or null for the first page.
+     */
+    public void getNotesWithTags ( @NonNull List<Integer> tagIds, boolean matchAll, @Nullable NotePreview cursor,
+                                   int limit, @NonNull Callback<List<NotePreview>> callback ) {
+        long cursorDate = cursor != null ? cursor.getNoteDate() : Long.MAX_VALUE;
+        int cursorId = cursor != null ? cursor.getId() : Integer.MAX_VALUE;
+        executors.diskRead().execute(() -> {
+            List<NotePreview> notes = dao.getNotesWithTags(tagIds, matchAll, cursorDate, cursorId, limit);
+            executors.mainThread().execute(() -> callback.onResult(notes));
+        });
+    }
+
+    public void countNotesWithTags ( @NonNull List<Integer> tagIds, boolean matchAll, @NonNull Callback<Integer> callback ) {
+        executors.diskRead().execute(() -> {
+            int count = dao.countNotesWithTags(tagIds, matchAll);
+            executors.mainThread().execute(() -> callback.onResult(count));
+        });
+    }
+
+    /**
+     * Streams every note, archived ones included, to {@code out} as JSON Lines on the read lane,
+     * then closes the stream.
+     * The callback receives the number of notes written, or -1 if writing failed.
+     *
+     * @param gzip Whether to gzip the output.
+     */
+    public void exportNotes ( @NonNull OutputStream out, boolean gzip, @NonNull Callback<Integer> callback ) {
+        executors.diskRead().execute(() -> {
+            int count;
+            try (OutputStream stream = out) {
+                count = NotesBackup.exportNotes(dao, stream, gzip);
+            } catch (IOException e) {
+                Log.e(TAG, "Export failed", e);
+                count = -1;
+            }
+            int result = count;
+            executors.mainThread().execute(() -> callback.onResult(result));
+        });
+    }
+
+    /**
+     * Imports notes from a JSON Lines export, plain or gzipped, on the write lane, then closes the
+     * stream. The callback receives the number of notes imported, or -1 if the file could not be
+     * read; notes from the batches before the failure stay imported.
+     */
+    public void importNotes ( @NonNull InputStream in, @NonNull Callback<Integer> callback ) {
+        executors.diskWrite().execute(() -> {
+            int count;
+            try (InputStream stream = in) {
+                count = NotesBackup.importNotes(dao, stream);
+            } catch (IOException e) {
+                Log.e(TAG, "Import failed", e);
+                count = -1;
+            }
+            int result = count;
+            executors.mainThread().execute(() -> callback.onResult(result));
+        });
+    }
+
+    private void write ( Runnable operation, @Nullable Runnable onComplete ) {
+        executors.diskWrite().execute(() -> {
+            operation.run();
+            if (onComplete != null) executors.mainThread().execute(onComplete);
+        });
+    }
+}
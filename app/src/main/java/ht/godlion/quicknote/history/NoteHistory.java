@@ -0,0 +1,80 @@
+package ht.godlion.quicknote.history;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NoteRevision;
+
+/**
+ * The NoteHistory class records a revision each time the text of a note changes and rebuilds the
+ * text of any revision. Every {@link #CHECKPOINT_INTERVAL}th revision, starting with the first,
+ * stores the full text; the others store a {@link TextDelta} against the revision before, so
+ * rebuilding a revision applies fewer than {@link #CHECKPOINT_INTERVAL} deltas to a checkpoint.
+ * <p>
+ * History starts at the first change: the text the note had until then becomes revision 1. The
+ * latest revision is always the current text of the note, as long as updates go through
+ * {@link NotesDao#updateNoteWithHistory}, except while the note is chunked: chunked texts are not
+ * recorded, and the text it has when it is stored whole again starts over from a checkpoint.
+ */
+public final class NoteHistory {
+    public static final int CHECKPOINT_INTERVAL = 16;
+
+    private NoteHistory () {}
+
+    /**
+     * Adds the revisions for an update of {@code previous} to {@code updated}. Does nothing when
+     * only the date changed. Must run in the transaction that applies the update.
+     */
+    public static void recordUpdate ( @NonNull NotesDao dao, @NonNull Note previous, @NonNull Note updated ) {
+        String oldText = textOf(previous);
+        String newText = textOf(updated);
+        if (oldText.equals(newText)) return;
+        int noteId = previous.getId();
+        int latest = dao.getLatestRevisionNumber(noteId);
+        if (latest == 0) {
+            dao.insertRevision(new NoteRevision(noteId, 1, previous.getNoteDate(), true, TextDelta.encodeText(oldText)));
+            latest = 1;
+        }
+        int number = latest + 1;
+        boolean checkpoint = isCheckpoint(number);
+        byte[] data = checkpoint ? TextDelta.encodeText(newText) : TextDelta.encode(oldText, newText);
+        dao.insertRevision(new NoteRevision(noteId, number, updated.getNoteDate(), checkpoint, data));
+    }
+
+    /**
+     * Adds a checkpoint holding the whole current text of {@code note}, so the revisions after it do
+     * not depend on the ones before. For a note that leaves chunked storage, whose chunked texts
+     * are not in its history. Must run in the transaction that applies the update.
+     */
+    public static void recordCheckpoint ( @NonNull NotesDao dao, @NonNull Note note ) {
+        int noteId = note.getId();
+        int number = dao.getLatestRevisionNumber(noteId) + 1;
+        dao.insertRevision(new NoteRevision(noteId, number, note.getNoteDate(), true, TextDelta.encodeText(textOf(note))));
+    }
+
+    /**
+     * Rebuilds the text at the end of a chain of revisions that starts with a checkpoint, as
+     * returned by {@link NotesDao#getRevisionChain}.
+     *
+     * @throws IllegalArgumentException If the chain is empty or does not start with a checkpoint.
+     */
+    @NonNull
+    public static String rebuild ( @NonNull List<NoteRevision> chain ) {
+        if (chain.isEmpty() || !TextDelta.isFullText(chain.get(0).getData()))
+            throw new IllegalArgumentException("Revision chain must start with a checkpoint");
+        String text = "";
+        for (NoteRevision revision : chain) text = TextDelta.apply(text, revision.getData());
+        return text;
+    }
+
+    static boolean isCheckpoint ( int number ) {
+        return (number - 1) % CHECKPOINT_INTERVAL == 0;
+    }
+
+    private static String textOf ( Note note ) {
+        return note.getNoteText() != null ? note.getNoteText() : "";
+    }
+}
@@ -0,0 +1,116 @@
+package ht.godlion.quicknote.history;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import ht.godlion.quicknote.utils.NoteCodec;
+
+/**
+ * The TextDelta class encodes a version of a note either in full or as a delta against the
+ * previous version. A delta keeps the prefix and suffix the two versions share and stores only the
+ * text that replaced what lies between them, which is what an edit between two saves usually
+ * looks like. Encodings over {@link #COMPRESS_THRESHOLD} bytes are deflated when that makes them
+ * smaller.
+ * <p>
+ * Layout: a flags byte, then either the UTF-8 text, or the base length, prefix length and suffix
+ * length as variable-length integers followed by the UTF-8 replacement.
+ */
+public final class TextDelta {
+    static final int COMPRESS_THRESHOLD = 128;
+    private static final int FLAG_DELTA = 1;
+    private static final int FLAG_DEFLATED = 2;
+
+    private TextDelta () {}
+
+    /** Encodes {@code text} in full. */
+    @NonNull
+    public static byte[] encodeText ( @NonNull String text ) {
+        return finish(0, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Encodes {@code text} as a delta that turns {@code base} into it. */
+    @NonNull
+    public static byte[] encode ( @NonNull String base, @NonNull String text ) {
+        int max = Math.min(base.length(), text.length());
+        int prefix = 0;
+        while (prefix < max && base.charAt(prefix) == text.charAt(prefix)) prefix++;
+        if (prefix > 0 && Character.isHighSurrogate(text.charAt(prefix - 1))) prefix--;
+        int suffix = 0;
+        while (suffix < max - prefix
+                && base.charAt(base.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) suffix++;
+        if (suffix > 0 && Character.isLowSurrogate(text.charAt(text.length() - suffix))) suffix--;
+
+        byte[] replacement = text.substring(prefix, text.length() - suffix).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(replacement.length + 15);
+        writeVarInt(out, base.length());
+        writeVarInt(out, prefix);
+        writeVarInt(out, suffix);
+        out.write(replacement, 0, replacement.length);
+        return finish(FLAG_DELTA, out.toByteArray());
+    }
+
+    /** Whether {@code data} holds a full text rather than a delta. */
+    public static boolean isFullText ( @NonNull byte[] data ) {
+        return (data[0] & FLAG_DELTA) == 0;
+    }
+
+    /**
+     * Decodes {@code data}: a full text is returned as is, a delta is applied to {@code base}.
+     *
+     * @throws IllegalArgumentException If the delta was not made against a text as long as
+     * {@code base}, or the data is corrupt.
+     */
+    @NonNull
+    public static String apply ( @NonNull String base, @NonNull byte[] data ) {
+        byte[] payload = (data[0] & FLAG_DEFLATED) != 0
+                ? NoteCodec.inflate(data, 1, data.length - 1) : Arrays.copyOfRange(data, 1, data.length);
+        if (isFullText(data)) return new String(payload, StandardCharsets.UTF_8);
+        int[] pos = {0};
+        int baseLength = readVarInt(payload, pos);
+        int prefix = readVarInt(payload, pos);
+        int suffix = readVarInt(payload, pos);
+        if (baseLength != base.length() || prefix + suffix > baseLength)
+            throw new IllegalArgumentException("Delta does not match its base text");
+        return base.substring(0, prefix)
+                + new String(payload, pos[0], payload.length - pos[0], StandardCharsets.UTF_8)
+                + base.substring(baseLength - suffix);
+    }
+
+    private static byte[] finish ( int flags, byte[] payload ) {
+        if (payload.length > COMPRESS_THRESHOLD) {
+            byte[] deflated = NoteCodec.deflate(payload, Deflater.BEST_COMPRESSION);
+            if (deflated.length < payload.length) return prepend(flags | FLAG_DEFLATED, deflated);
+        }
+        return prepend(flags, payload);
+    }
+
+    private static byte[] prepend ( int flags, byte[] payload ) {
+        byte[] data = new byte[payload.length + 1];
+        data[0] = (byte) flags;
+        System.arraycopy(payload, 0, data, 1, payload.length);
+        return data;
+    }
+
+    private static void writeVarInt ( ByteArrayOutputStream out, int value ) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt ( byte[] data, int[] pos ) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (pos[0] >= data.length) throw new IllegalArgumentException("Truncated delta");
+            int b = data[pos[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Corrupt delta");
+    }
+}
@@ -0,0 +1,97 @@
+package ht.godlion.quicknote.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A latency histogram in nanoseconds with HDR-style buckets: values below {@code 2^SUB_BUCKET_BITS}
+ * each get their own bucket, and every power of two above that is split into {@code 2^SUB_BUCKET_BITS}
+ * equal buckets. Any recorded value is known to within about 3%, from nanoseconds up to
+ * {@link #MAX_NANOS}, in a fixed 1024 buckets.
+ * <p>
+ * Recording is lock-free and safe from any thread. Reads walk the buckets without stopping writers,
+ * so a read racing a write may see it in one figure and not yet in another.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Longest latency told apart from longer ones, about 68 s. Longer values are recorded as this. */
+    public static final long MAX_NANOS = (1L << 36) - 1;
+    static final int BUCKETS = index(MAX_NANOS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos The latency; negative values are recorded as 0.
+     */
+    public void record ( long nanos ) {
+        long value = Math.max(0, Math.min(nanos, MAX_NANOS));
+        counts.incrementAndGet(index(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount () {
+        return count.get();
+    }
+
+    public long getMax () {
+        return max.get();
+    }
+
+    public double getMean () {
+        long count = this.count.get();
+        return count == 0 ? 0 : (double) total.get() / count;
+    }
+
+    /**
+     * The smallest value that at least {@code percentile}% of the recorded values are at or below,
+     * rounded up to the top of its bucket, or 0 if nothing was recorded.
+     *
+     * @param percentile From 0 to 100.
+     */
+    public long getValueAtPercentile ( double percentile ) {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("Percentile out of range: " + percentile);
+        long count = this.count.get();
+        if (count == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(highestInBucket(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded while this runs may be partly kept.
+     */
+    public void reset () {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    static int index ( long value ) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * shift + (int) (value >>> shift);
+    }
+
+    static long lowestInBucket ( int index ) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    static long highestInBucket ( int index ) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        return ((long) (index % SUB_BUCKETS + SUB_BUCKETS + 1) << shift) - 1;
+    }
+}
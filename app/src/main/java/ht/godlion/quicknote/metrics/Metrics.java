@@ -0,0 +1,121 @@
+package ht.godlion.quicknote.metrics;
+
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ht.godlion.quicknote.utils.StartupTimer;
+
+/**
+ * Process-wide counters and latency histograms, keyed by name. {@link #begin} and {@link #end}
+ * also mark the timed work as an {@code android.os.Trace} section, so it shows up by the same name
+ * in system traces. {@link #dump()} prints everything as text.
+ * <p>
+ * Names are {@code Class.method} of the code measured. Everything here is safe from any thread.
+ */
+public final class Metrics {
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    private Metrics () {}
+
+    /**
+     * Starts a trace section on this thread. End it on the same thread with {@link #end}.
+     *
+     * @return The start time to pass to {@link #end}.
+     */
+    public static long begin ( @NonNull String section ) {
+        Trace.beginSection(section);
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends the trace section started by {@link #begin} and records its latency.
+     */
+    public static void end ( @NonNull String section, long start ) {
+        Trace.endSection();
+        record(section, start);
+    }
+
+    /**
+     * Records the time since {@code start}, a {@link System#nanoTime()}, without a trace section;
+     * for work that ends on another thread or in a callback.
+     */
+    public static void record ( @NonNull String name, long start ) {
+        histogram(name).record(System.nanoTime() - start);
+    }
+
+    public static void increment ( @NonNull String counter ) {
+        counters.computeIfAbsent(counter, name -> new AtomicLong()).incrementAndGet();
+    }
+
+    public static long getCount ( @NonNull String counter ) {
+        AtomicLong count = counters.get(counter);
+        return count != null ? count.get() : 0;
+    }
+
+    @NonNull
+    public static LatencyHistogram histogram ( @NonNull String name ) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Wraps an interface so that every call through it is a trace section and a latency named
+     * {@code Type.method}. Calls the target makes to itself, such as a DAO's default methods calling
+     * its queries, are not measured separately.
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static <T> T traced ( @NonNull Class<T> type, @NonNull T target ) {
+        String prefix = type.getSimpleName() + ".";
+        Map<String, String> sections = new ConcurrentHashMap<>();
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, ( proxy, method, args ) -> {
+            if (method.getDeclaringClass() == Object.class) return method.invoke(target, args);
+            String section = sections.computeIfAbsent(method.getName(), name -> prefix + name);
+            long start = begin(section);
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                end(section, start);
+            }
+        });
+    }
+
+    /** Forgets every counter and histogram. */
+    public static void reset () {
+        histograms.clear();
+        counters.clear();
+    }
+
+    /**
+     * Startup milestones, counters and latency percentiles, one per line, sorted by name.
+     */
+    @NonNull
+    public static String dump () {
+        StringBuilder out = new StringBuilder();
+        out.append("Startup (ms after process start)\n");
+        for (Map.Entry<String, Long> mark : StartupTimer.getMarks().entrySet())
+            out.append("  ").append(mark.getKey()).append(": ").append(mark.getValue()).append('\n');
+        out.append("\nCounters\n");
+        for (Map.Entry<String, AtomicLong> counter : new TreeMap<>(counters).entrySet())
+            out.append("  ").append(counter.getKey()).append(": ").append(counter.getValue().get()).append('\n');
+        out.append("\nLatency (ms): count p50 p90 p99 max\n");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            out.append(String.format(Locale.ROOT, "  %s: %d %.3f %.3f %.3f %.3f\n", entry.getKey(), histogram.getCount(),
+                    histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(90) / 1e6,
+                    histogram.getValueAtPercentile(99) / 1e6, histogram.getMax() / 1e6));
+        }
+        return out.toString();
+    }
+}
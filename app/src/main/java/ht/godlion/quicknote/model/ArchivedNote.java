@@ -0,0 +1,119 @@
+package ht.godlion.quicknote.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import ht.godlion.quicknote.utils.NoteCodec;
+
+/**
+ * A note moved out of {@code notes} into the archive. It keeps the note's ID, so restoring it puts
+ * it back under the same ID, and the names of its tags. Archived texts are deflated at the best
+ * compression level whenever that makes them smaller, since they are rarely read; as in
+ * {@link Note}, {@code text} then keeps only a prefix, for previews, and {@link ArchivedNoteFts}
+ * indexes the whole text. The note's revisions go to {@link ArchivedNoteRevision}.
+ */
+@Entity(tableName = "archived_notes", indices = {@Index(value = {"date", "id"})})
+public class ArchivedNote {
+    /** Separates tag names in {@link #tags}; names are trimmed, so they never contain it. */
+    private static final String TAG_SEPARATOR = "\n";
+
+    @PrimaryKey
+    private int id;
+    @ColumnInfo(name = "text")
+    private String storedText;
+    @ColumnInfo(name = "body", typeAffinity = ColumnInfo.BLOB)
+    private byte[] body;
+    @ColumnInfo(name = "date")
+    private long noteDate;
+    /** The note's tag names, separated by {@link #TAG_SEPARATOR}, or null. */
+    @ColumnInfo(name = "tags")
+    private String tags;
+    @ColumnInfo(name = "archived_at")
+    private long archivedAt;
+
+    public ArchivedNote () {}
+
+    @Ignore
+    public ArchivedNote ( @NonNull Note note, @NonNull List<String> tagNames, long archivedAt ) {
+        this.id = note.getId();
+        this.noteDate = note.getNoteDate();
+        this.archivedAt = archivedAt;
+        this.tags = tagNames.isEmpty() ? null : String.join(TAG_SEPARATOR, tagNames);
+        String text = note.getNoteText() != null ? note.getNoteText() : "";
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = NoteCodec.deflate(utf8, Deflater.BEST_COMPRESSION);
+        if (deflated.length < utf8.length) {
+            body = deflated;
+            storedText = NoteCodec.searchablePrefix(text);
+        } else storedText = text;
+    }
+
+    /** Decompresses the text if needed; call it off the main thread. */
+    public String getNoteText () {
+        return body != null ? NoteCodec.decompress(body) : storedText;
+    }
+
+    @NonNull
+    public String[] getTagNames () {
+        return tags == null ? new String[0] : tags.split(TAG_SEPARATOR);
+    }
+
+    public int getId () {
+        return id;
+    }
+
+    public void setId ( int id ) {
+        this.id = id;
+    }
+
+    public String getStoredText () {
+        return storedText;
+    }
+
+    public void setStoredText ( String storedText ) {
+        this.storedText = storedText;
+    }
+
+    @Nullable
+    public byte[] getBody () {
+        return body;
+    }
+
+    public void setBody ( @Nullable byte[] body ) {
+        this.body = body;
+    }
+
+    public long getNoteDate () {
+        return noteDate;
+    }
+
+    public void setNoteDate ( long noteDate ) {
+        this.noteDate = noteDate;
+    }
+
+    @Nullable
+    public String getTags () {
+        return tags;
+    }
+
+    public void setTags ( @Nullable String tags ) {
+        this.tags = tags;
+    }
+
+    public long getArchivedAt () {
+        return archivedAt;
+    }
+
+    public void setArchivedAt ( long archivedAt ) {
+        this.archivedAt = archivedAt;
+    }
+}
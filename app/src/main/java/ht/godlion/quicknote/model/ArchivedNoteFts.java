@@ -0,0 +1,49 @@
+package ht.godlion.quicknote.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full-text index over the archived notes, one row per note with the note's ID as its row ID, so
+ * archived notes stay searchable without sitting in {@link NoteFts}, the index the note list's
+ * search uses. Like {@link NoteFts}, it holds its own copy of the whole text, written by
+ * {@code NotesDao} along with the archived note, since a compressed one keeps only a prefix in
+ * {@code archived_notes}.
+ */
+@Fts4
+@Entity(tableName = "archived_notes_fts")
+public class ArchivedNoteFts {
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private int rowId;
+
+    @ColumnInfo(name = "text")
+    private String noteText;
+
+    public ArchivedNoteFts () {}
+
+    @Ignore
+    public ArchivedNoteFts ( int rowId, String noteText ) {
+        this.rowId = rowId;
+        this.noteText = noteText;
+    }
+
+    public int getRowId () {
+        return rowId;
+    }
+
+    public void setRowId ( int rowId ) {
+        this.rowId = rowId;
+    }
+
+    public String getNoteText () {
+        return noteText;
+    }
+
+    public void setNoteText ( String noteText ) {
+        this.noteText = noteText;
+    }
+}
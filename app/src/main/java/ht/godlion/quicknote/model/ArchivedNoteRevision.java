@@ -0,0 +1,14 @@
+package ht.godlion.quicknote.model;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * A revision of an archived note, moved out of {@code note_revisions} with its note and moved back
+ * when the note is restored. It keeps its ID, number and data, so the note's history goes on where
+ * it left off.
+ */
+@Entity(tableName = "archived_note_revisions",
+        indices = {@Index(value = {"note_id", "number"}, unique = true)})
+public class ArchivedNoteRevision extends NoteRevision {
+}
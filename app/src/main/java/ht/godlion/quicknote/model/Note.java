@@ -3,34 +3,98 @@ package ht.godlion.quicknote.model;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import ht.godlion.quicknote.utils.NoteCodec;
 
-@Entity(tableName = "notes")
+/**
+ * A note. Long texts are stored compressed as described in {@link NoteCodec}: the full text is
+ * compressed only when Room reads the columns to write the note, and decompressed only when
+ * {@link #getNoteText()} is first called on a note that was loaded.
+ * <p>
+ * The text of a {@link #isChunked() chunked} note lives in {@link NoteChunk} rows and is edited
+ * through {@link ht.godlion.quicknote.text.ChunkedText}; the note itself only holds a prefix of
+ * it, while {@code notes_fts} indexes all of it.
+ */
+@Entity(tableName = "notes", indices = {@Index(value = {"deleted_at", "date"})})
 public class Note {
     @PrimaryKey(autoGenerate = true)
     private int id;
+    /** The whole text, or only its searchable prefix when {@link #body} is set. */
     @ColumnInfo(name = "text")
-    private String noteText;
+    private String storedText;
+    /** The deflated text of a long note, or null. */
+    @ColumnInfo(name = "body", typeAffinity = ColumnInfo.BLOB)
+    private byte[] body;
     @ColumnInfo(name = "date")
     private long noteDate;
+    /** Whether the text is stored in {@link NoteChunk} rows, with {@link #storedText} its prefix. */
+    @ColumnInfo(name = "chunked", defaultValue = "0")
+    private boolean chunked;
+    /**
+     * When the note was last restored from the archive, or 0. Age-based archiving skips it until
+     * that time is as old as its date has to be.
+     */
+    @ColumnInfo(name = "restored_at", defaultValue = "0")
+    private long restoredAt;
+    /**
+     * When the note was deleted, or 0. A deleted note is only a tombstone, left out of every query
+     * until the delete is undone or the note is purged.
+     */
+    @ColumnInfo(name = "deleted_at", defaultValue = "0")
+    private long deletedAt;
 
     @Ignore
-    private boolean checked = false;
+    private String noteText;
+    /** Whether {@link #storedText} and {@link #body} are up to date with {@link #noteText}. */
+    @Ignore
+    private boolean encoded = true;
 
     public Note () {}
 
     public Note ( String noteText, long noteDate ) {
-        this.noteText = noteText;
+        setNoteText(noteText);
         this.noteDate = noteDate;
     }
 
     public String getNoteText () {
+        if (noteText == null) noteText = body != null ? NoteCodec.decompress(body) : storedText;
         return noteText;
     }
 
     public void setNoteText ( String noteText ) {
         this.noteText = noteText;
+        encoded = false;
+    }
+
+    public String getStoredText () {
+        encode();
+        return storedText;
+    }
+
+    public void setStoredText ( String storedText ) {
+        this.storedText = storedText;
+        noteText = null;
+        encoded = true;
+    }
+
+    public byte[] getBody () {
+        encode();
+        return body;
+    }
+
+    public void setBody ( byte[] body ) {
+        this.body = body;
+        noteText = null;
+        encoded = true;
+    }
+
+    private void encode () {
+        if (encoded) return;
+        body = NoteCodec.compress(noteText);
+        storedText = body != null ? NoteCodec.searchablePrefix(noteText) : noteText;
+        encoded = true;
     }
 
     public long getNoteDate () {
@@ -41,20 +105,36 @@ public class Note {
         this.noteDate = noteDate;
     }
 
-    public int getId () {
-        return id;
+    public boolean isChunked () {
+        return chunked;
     }
 
-    public void setId ( int id ) {
-        this.id = id;
+    public void setChunked ( boolean chunked ) {
+        this.chunked = chunked;
+    }
+
+    public long getRestoredAt () {
+        return restoredAt;
+    }
+
+    public void setRestoredAt ( long restoredAt ) {
+        this.restoredAt = restoredAt;
     }
 
-    public boolean isChecked () {
-        return checked;
+    public long getDeletedAt () {
+        return deletedAt;
     }
 
-    public void setChecked ( boolean checked ) {
-        this.checked = checked;
+    public void setDeletedAt ( long deletedAt ) {
+        this.deletedAt = deletedAt;
+    }
+
+    public int getId () {
+        return id;
+    }
+
+    public void setId ( int id ) {
+        this.id = id;
     }
 
     @Override
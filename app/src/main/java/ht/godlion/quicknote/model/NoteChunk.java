@@ -0,0 +1,71 @@
+package ht.godlion.quicknote.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+
+/**
+ * One chunk of the text of a large note, see {@link ht.godlion.quicknote.text.ChunkedText}.
+ * Chunks are ordered by {@code ord} within their note; {@code length} is the length of the text
+ * in UTF-16 chars, so chunks can be laid out without reading their text. Chunks go away with
+ * their note.
+ */
+@Entity(tableName = "note_chunks",
+        primaryKeys = {"note_id", "ord"},
+        foreignKeys = @ForeignKey(entity = Note.class, parentColumns = "id", childColumns = "note_id",
+                onDelete = ForeignKey.CASCADE))
+public class NoteChunk {
+    @ColumnInfo(name = "note_id")
+    private int noteId;
+    @ColumnInfo(name = "ord")
+    private long ord;
+    @ColumnInfo(name = "length")
+    private int length;
+    @ColumnInfo(name = "text")
+    private String text;
+
+    public NoteChunk () {}
+
+    @Ignore
+    public NoteChunk ( int noteId, long ord, @NonNull String text ) {
+        this.noteId = noteId;
+        this.ord = ord;
+        this.length = text.length();
+        this.text = text;
+    }
+
+    public int getNoteId () {
+        return noteId;
+    }
+
+    public void setNoteId ( int noteId ) {
+        this.noteId = noteId;
+    }
+
+    public long getOrd () {
+        return ord;
+    }
+
+    public void setOrd ( long ord ) {
+        this.ord = ord;
+    }
+
+    public int getLength () {
+        return length;
+    }
+
+    public void setLength ( int length ) {
+        this.length = length;
+    }
+
+    /** Null when only the layout of the chunks was loaded. */
+    public String getText () {
+        return text;
+    }
+
+    public void setText ( String text ) {
+        this.text = text;
+    }
+}
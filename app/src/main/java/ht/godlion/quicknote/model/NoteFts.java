@@ -0,0 +1,48 @@
+package ht.godlion.quicknote.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full-text index over the text of {@link Note}, one row per note with the note's ID as its row ID.
+ * The table holds its own copy of the text, written by {@code NotesDao} along with the note: a
+ * compressed note keeps only a prefix in {@code notes}, and the index needs all of it. A chunked
+ * note is indexed by the joined text of its chunks.
+ */
+@Fts4
+@Entity(tableName = "notes_fts")
+public class NoteFts {
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private int rowId;
+
+    @ColumnInfo(name = "text")
+    private String noteText;
+
+    public NoteFts () {}
+
+    @Ignore
+    public NoteFts ( int rowId, String noteText ) {
+        this.rowId = rowId;
+        this.noteText = noteText;
+    }
+
+    public int getRowId () {
+        return rowId;
+    }
+
+    public void setRowId ( int rowId ) {
+        this.rowId = rowId;
+    }
+
+    public String getNoteText () {
+        return noteText;
+    }
+
+    public void setNoteText ( String noteText ) {
+        this.noteText = noteText;
+    }
+}
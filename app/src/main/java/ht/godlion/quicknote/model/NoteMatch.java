@@ -0,0 +1,30 @@
+package ht.godlion.quicknote.model;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * The ID of a note matched by a full-text search and its raw {@code matchinfo(notes_fts, 'pcnalx')}
+ * blob, used to rank the match.
+ */
+public class NoteMatch {
+    @ColumnInfo(name = "id")
+    private int id;
+    @ColumnInfo(name = "match_info")
+    private byte[] matchInfo;
+
+    public int getId () {
+        return id;
+    }
+
+    public void setId ( int id ) {
+        this.id = id;
+    }
+
+    public byte[] getMatchInfo () {
+        return matchInfo;
+    }
+
+    public void setMatchInfo ( byte[] matchInfo ) {
+        this.matchInfo = matchInfo;
+    }
+}
@@ -0,0 +1,51 @@
+package ht.godlion.quicknote.model;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * What the note list shows of a {@link Note}: its ID, date and the first
+ * {@link #PREVIEW_LENGTH} characters of its text. The full text is only loaded when the note is
+ * opened.
+ */
+public class NotePreview {
+    public static final int PREVIEW_LENGTH = 200;
+
+    @ColumnInfo(name = "id")
+    private int id;
+    @ColumnInfo(name = "date")
+    private long noteDate;
+    @ColumnInfo(name = "preview")
+    private String preview;
+
+    public int getId () {
+        return id;
+    }
+
+    public void setId ( int id ) {
+        this.id = id;
+    }
+
+    public long getNoteDate () {
+        return noteDate;
+    }
+
+    public void setNoteDate ( long noteDate ) {
+        this.noteDate = noteDate;
+    }
+
+    public String getPreview () {
+        return preview;
+    }
+
+    public void setPreview ( String preview ) {
+        this.preview = preview;
+    }
+
+    @Override
+    public String toString() {
+        return "NotePreview {" +
+                "id = " + id +
+                ", noteDate = " + noteDate +
+                '}';
+    }
+}
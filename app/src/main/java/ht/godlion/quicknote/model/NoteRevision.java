@@ -0,0 +1,89 @@
+package ht.godlion.quicknote.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One saved version of a note. Revisions are numbered from 1 per note; {@code data} holds the text
+ * either in full, for checkpoints, or as a delta against the previous revision, as encoded by
+ * {@link ht.godlion.quicknote.history.TextDelta}. Revisions go away with their note.
+ */
+@Entity(tableName = "note_revisions",
+        foreignKeys = @ForeignKey(entity = Note.class, parentColumns = "id", childColumns = "note_id",
+                onDelete = ForeignKey.CASCADE),
+        indices = {@Index(value = {"note_id", "number"}, unique = true)})
+public class NoteRevision {
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+    @ColumnInfo(name = "note_id")
+    private int noteId;
+    @ColumnInfo(name = "number")
+    private int number;
+    @ColumnInfo(name = "date")
+    private long date;
+    @ColumnInfo(name = "checkpoint")
+    private boolean checkpoint;
+    @ColumnInfo(name = "data")
+    private byte[] data;
+
+    public NoteRevision () {}
+
+    public NoteRevision ( int noteId, int number, long date, boolean checkpoint, byte[] data ) {
+        this.noteId = noteId;
+        this.number = number;
+        this.date = date;
+        this.checkpoint = checkpoint;
+        this.data = data;
+    }
+
+    public int getId () {
+        return id;
+    }
+
+    public void setId ( int id ) {
+        this.id = id;
+    }
+
+    public int getNoteId () {
+        return noteId;
+    }
+
+    public void setNoteId ( int noteId ) {
+        this.noteId = noteId;
+    }
+
+    public int getNumber () {
+        return number;
+    }
+
+    public void setNumber ( int number ) {
+        this.number = number;
+    }
+
+    public long getDate () {
+        return date;
+    }
+
+    public void setDate ( long date ) {
+        this.date = date;
+    }
+
+    public boolean isCheckpoint () {
+        return checkpoint;
+    }
+
+    public void setCheckpoint ( boolean checkpoint ) {
+        this.checkpoint = checkpoint;
+    }
+
+    public byte[] getData () {
+        return data;
+    }
+
+    public void setData ( byte[] data ) {
+        this.data = data;
+    }
+}
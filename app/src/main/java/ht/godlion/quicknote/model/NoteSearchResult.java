@@ -0,0 +1,44 @@
+package ht.godlion.quicknote.model;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * A note matched by a full-text search, with a snippet of its text around the matched terms. Matched
+ * terms are wrapped in {@link #HIGHLIGHT_START} and {@link #HIGHLIGHT_END}.
+ */
+public class NoteSearchResult {
+    public static final String HIGHLIGHT_START = "\u0002";
+    public static final String HIGHLIGHT_END = "\u0003";
+    public static final String ELLIPSIS = "…";
+
+    @ColumnInfo(name = "id")
+    private int id;
+    @ColumnInfo(name = "date")
+    private long noteDate;
+    @ColumnInfo(name = "snippet")
+    private String snippet;
+
+    public int getId () {
+        return id;
+    }
+
+    public void setId ( int id ) {
+        this.id = id;
+    }
+
+    public long getNoteDate () {
+        return noteDate;
+    }
+
+    public void setNoteDate ( long noteDate ) {
+        this.noteDate = noteDate;
+    }
+
+    public String getSnippet () {
+        return snippet;
+    }
+
+    public void setSnippet ( String snippet ) {
+        this.snippet = snippet;
+    }
+}
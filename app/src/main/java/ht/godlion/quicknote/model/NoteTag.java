@@ -0,0 +1,39 @@
+package ht.godlion.quicknote.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+/**
+ * Files a note under a tag. The primary key serves the tags of one note, and the
+ * {@code (tag_id, note_id)} index serves the notes of one tag, so filtering by tag never reads
+ * the notes table to find its matches. Rows go away with their note or their tag.
+ */
+@Entity(tableName = "note_tags",
+        primaryKeys = {"note_id", "tag_id"},
+        foreignKeys = {
+                @ForeignKey(entity = Note.class, parentColumns = "id", childColumns = "note_id",
+                        onDelete = ForeignKey.CASCADE),
+                @ForeignKey(entity = Tag.class, parentColumns = "id", childColumns = "tag_id",
+                        onDelete = ForeignKey.CASCADE)},
+        indices = {@Index(value = {"tag_id", "note_id"})})
+public class NoteTag {
+    @ColumnInfo(name = "note_id")
+    private int noteId;
+    @ColumnInfo(name = "tag_id")
+    private int tagId;
+
+    public NoteTag ( int noteId, int tagId ) {
+        this.noteId = noteId;
+        this.tagId = tagId;
+    }
+
+    public int getNoteId () {
+        return noteId;
+    }
+
+    public int getTagId () {
+        return tagId;
+    }
+}
@@ -0,0 +1,64 @@
+package ht.godlion.quicknote.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.util.Locale;
+
+/**
+ * A label notes can be filed under. Each name is stored once, in its {@link #normalize normalized}
+ * form, and notes refer to it by ID through {@link NoteTag}.
+ */
+@Entity(tableName = "tags", indices = {@Index(value = "name", unique = true)})
+public class Tag {
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+    @NonNull
+    @ColumnInfo(name = "name")
+    private String name = "";
+
+    public Tag () {}
+
+    @Ignore
+    public Tag ( @NonNull String name ) {
+        this.name = normalize(name);
+    }
+
+    /**
+     * Trims the name, collapses inner whitespace and lower-cases it, so "Work", " work " and
+     * "WORK" are the same tag.
+     */
+    @NonNull
+    public static String normalize ( @NonNull String name ) {
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public int getId () {
+        return id;
+    }
+
+    public void setId ( int id ) {
+        this.id = id;
+    }
+
+    @NonNull
+    public String getName () {
+        return name;
+    }
+
+    public void setName ( @NonNull String name ) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return "Tag {" +
+                "id = " + id +
+                ", name = '" + name + '\'' +
+                '}';
+    }
+}
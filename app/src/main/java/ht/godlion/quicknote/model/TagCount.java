@@ -0,0 +1,39 @@
+package ht.godlion.quicknote.model;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * A tag with the number of notes filed under it, as counted by SQLite.
+ */
+public class TagCount {
+    @ColumnInfo(name = "id")
+    private int id;
+    @ColumnInfo(name = "name")
+    private String name;
+    @ColumnInfo(name = "note_count")
+    private int noteCount;
+
+    public int getId () {
+        return id;
+    }
+
+    public void setId ( int id ) {
+        this.id = id;
+    }
+
+    public String getName () {
+        return name;
+    }
+
+    public void setName ( String name ) {
+        this.name = name;
+    }
+
+    public int getNoteCount () {
+        return noteCount;
+    }
+
+    public void setNoteCount ( int noteCount ) {
+        this.noteCount = noteCount;
+    }
+}
@@ -0,0 +1,56 @@
+package ht.godlion.quicknote.search;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PositionalDataSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.model.NoteSearchResult;
+
+/**
+ * Pages through the ranked IDs of a search. The ranking is computed once for the query; each page
+ * then loads only the snippets of its own notes. If notes were deleted after the ranking, the data
+ * source invalidates itself so the search is run again.
+ */
+public class SearchDataSource extends PositionalDataSource<NoteSearchResult> {
+    private final NotesDao dao;
+    private final String matchExpression;
+    private final List<Integer> rankedIds;
+
+    public SearchDataSource ( @NonNull NotesDao dao, @NonNull String matchExpression, @NonNull List<Integer> rankedIds ) {
+        this.dao = dao;
+        this.matchExpression = matchExpression;
+        this.rankedIds = rankedIds;
+    }
+
+    @Override
+    public void loadInitial ( @NonNull LoadInitialParams params, @NonNull LoadInitialCallback<NoteSearchResult> callback ) {
+        int total = rankedIds.size();
+        int position = computeInitialLoadPosition(params, total);
+        int size = computeInitialLoadSize(params, position, total);
+        callback.onResult(loadPage(position, size), position, total);
+    }
+
+    @Override
+    public void loadRange ( @NonNull LoadRangeParams params, @NonNull LoadRangeCallback<NoteSearchResult> callback ) {
+        callback.onResult(loadPage(params.startPosition, params.loadSize));
+    }
+
+    private List<NoteSearchResult> loadPage ( int position, int size ) {
+        List<Integer> pageIds = rankedIds.subList(position, Math.min(position + size, rankedIds.size()));
+        List<NoteSearchResult> page = new ArrayList<>(pageIds.size());
+        if (pageIds.isEmpty()) return page;
+        Map<Integer, NoteSearchResult> byId = new HashMap<>();
+        for (NoteSearchResult result : dao.getSearchResults(matchExpression, pageIds)) byId.put(result.getId(), result);
+        for (Integer id : pageIds) {
+            NoteSearchResult result = byId.get(id);
+            if (result != null) page.add(result);
+        }
+        if (page.size() != pageIds.size()) invalidate();
+        return page;
+    }
+}
@@ -0,0 +1,73 @@
+package ht.godlion.quicknote.search;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * The SearchQuery class turns what the user typed into an FTS4 {@code MATCH} expression. Quoted text
+ * becomes a phrase query and every other word becomes a prefix query, so "gro list" matches
+ * "groceries list". All terms must match. Characters with a meaning in the FTS query syntax are
+ * dropped, so user input can never produce a malformed expression.
+ */
+public final class SearchQuery {
+
+    private SearchQuery () {}
+
+    /**
+     * Builds the MATCH expression for the given input.
+     *
+     * @param input The raw text typed by the user.
+     * @return The expression, or null when the input contains nothing to search for.
+     */
+    @Nullable
+    public static String toMatchExpression ( @Nullable String input ) {
+        if (input == null) return null;
+        StringBuilder expression = new StringBuilder();
+        int length = input.length();
+        int i = 0;
+        while (i < length) {
+            char c = input.charAt(i);
+            if (c == '"') {
+                int end = input.indexOf('"', i + 1);
+                if (end < 0) end = length;
+                String phrase = normalizeWords(input.substring(i + 1, end));
+                if (!phrase.isEmpty()) append(expression, '"' + phrase + '"');
+                i = end + 1;
+            } else if (isWordChar(c)) {
+                int end = i;
+                while (end < length && isWordChar(input.charAt(end))) end++;
+                append(expression, input.substring(i, end).toLowerCase(Locale.ROOT) + '*');
+                i = end;
+            } else i++;
+        }
+        return expression.length() == 0 ? null : expression.toString();
+    }
+
+    @NonNull
+    private static String normalizeWords ( String text ) {
+        StringBuilder words = new StringBuilder();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (isWordChar(text.charAt(i))) {
+                int end = i;
+                while (end < length && isWordChar(text.charAt(end))) end++;
+                if (words.length() > 0) words.append(' ');
+                words.append(text.substring(i, end).toLowerCase(Locale.ROOT));
+                i = end;
+            } else i++;
+        }
+        return words.toString();
+    }
+
+    private static void append ( StringBuilder expression, String term ) {
+        if (expression.length() > 0) expression.append(' ');
+        expression.append(term);
+    }
+
+    private static boolean isWordChar ( char c ) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '\'';
+    }
+}
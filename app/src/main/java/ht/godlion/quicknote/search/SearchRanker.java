@@ -0,0 +1,103 @@
+package ht.godlion.quicknote.search;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ht.godlion.quicknote.model.NoteMatch;
+
+/**
+ * The SearchRanker class orders full-text matches by Okapi BM25, computed from the
+ * {@code matchinfo(notes_fts, 'pcnalx')} blob of each match since FTS4 has no built-in ranking.
+ */
+public final class SearchRanker {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private SearchRanker () {}
+
+    /**
+     * Returns the IDs of the given matches, best match first. Ties keep the order of the input.
+     */
+    @NonNull
+    public static List<Integer> rank ( @NonNull List<NoteMatch> matches ) {
+        int size = matches.size();
+        Integer[] order = new Integer[size];
+        double[] scores = new double[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            scores[i] = bm25(matches.get(i).getMatchInfo());
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        List<Integer> ids = new ArrayList<>(size);
+        for (Integer index : order) ids.add(matches.get(index).getId());
+        return ids;
+    }
+
+    /**
+     * Returns the IDs of the matches in a cursor with {@code id} and {@code match_info} columns, best
+     * match first. Ties keep the order of the cursor. Each row is scored as it is read, so only an ID
+     * and a score per match are held in memory however many notes match. Does not close the cursor.
+     */
+    @NonNull
+    public static List<Integer> rank ( @NonNull Cursor matches ) {
+        int idColumn = matches.getColumnIndexOrThrow("id");
+        int infoColumn = matches.getColumnIndexOrThrow("match_info");
+        int[] ids = new int[64];
+        double[] scores = new double[64];
+        int size = 0;
+        while (matches.moveToNext()) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            ids[size] = matches.getInt(idColumn);
+            scores[size] = bm25(matches.getBlob(infoColumn));
+            size++;
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        double[] rankScores = scores;
+        Arrays.sort(order, (a, b) -> Double.compare(rankScores[b], rankScores[a]));
+        List<Integer> ranked = new ArrayList<>(size);
+        for (Integer index : order) ranked.add(ids[index]);
+        return ranked;
+    }
+
+    /**
+     * Computes the BM25 score of one match from its {@code 'pcnalx'} matchinfo blob, an array of
+     * native-order 32-bit integers: phrase count, column count, row count, average tokens per column,
+     * tokens per column for this row, then three hit counts per phrase and column.
+     */
+    public static double bm25 ( byte[] matchInfo ) {
+        if (matchInfo == null || matchInfo.length < 12) return 0;
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int columns = info.get(1);
+        int rows = info.get(2);
+        int hitsOffset = 3 + 2 * columns;
+        double score = 0;
+        for (int column = 0; column < columns; column++) {
+            double averageLength = Math.max(1, info.get(3 + column));
+            double length = info.get(3 + columns + column);
+            for (int phrase = 0; phrase < phrases; phrase++) {
+                int hits = hitsOffset + 3 * (column + phrase * columns);
+                double termFrequency = info.get(hits);
+                double documentFrequency = info.get(hits + 2);
+                if (termFrequency == 0) continue;
+                double idf = Math.log((rows - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                idf = Math.max(idf, 1e-6);
+                score += idf * termFrequency * (K1 + 1)
+                        / (termFrequency + K1 * (1 - B + B * length / averageLength));
+            }
+        }
+        return score;
+    }
+}
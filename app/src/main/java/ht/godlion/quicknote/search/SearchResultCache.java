@@ -0,0 +1,119 @@
+package ht.godlion.quicknote.search;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SearchResultCache class is a small LRU cache of ranked search results, keyed by MATCH
+ * expression. Besides exact hits it can hand out the result of a shorter input that a new input
+ * extends: when the user keeps typing, every match of "garden gi" is also a match of "gard", so the
+ * new query can be narrowed to the IDs already found for "gard". The narrowed query still runs
+ * against SQLite, which scores and filters those IDs; only the full-index search is saved, as no
+ * text or snippets are cached here. Only results small enough to bind as IDs are handed out this
+ * way, and only when the shorter input has no quotes, since a phrase is not a prefix query.
+ * <p>
+ * All writes to the notes table must {@link #clear()} the cache.
+ */
+public class SearchResultCache {
+    private final Map<String, Entry> entries;
+    private int hitCount;
+    private int narrowedCount;
+    private int missCount;
+    private int version;
+
+    private static final class Entry {
+        final String input;
+        final List<Integer> ids;
+        final boolean narrowable;
+
+        Entry ( String input, List<Integer> ids, boolean narrowable ) {
+            this.input = input;
+            this.ids = ids;
+            this.narrowable = narrowable;
+        }
+    }
+
+    public SearchResultCache ( int maxEntries ) {
+        this.entries = new LinkedHashMap<String, Entry>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry ( Map.Entry<String, Entry> eldest ) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the ranked IDs cached for the expression, or null on a miss.
+     */
+    @Nullable
+    public synchronized List<Integer> get ( @NonNull String expression ) {
+        Entry entry = entries.get(expression);
+        if (entry == null) return null;
+        hitCount++;
+        return entry.ids;
+    }
+
+    /**
+     * Returns the IDs of the longest narrowable cached result whose input is a prefix of the given
+     * input, to narrow the query to, or null when it has to run against the whole index.
+     */
+    @Nullable
+    public synchronized List<Integer> getSuperset ( @NonNull String input ) {
+        Entry best = null;
+        for (Entry entry : entries.values()) {
+            if (!entry.narrowable || entry.input.indexOf('"') >= 0 || !input.startsWith(entry.input)) continue;
+            if (best == null || entry.input.length() > best.input.length()) best = entry;
+        }
+        if (best == null) {
+            missCount++;
+            return null;
+        }
+        narrowedCount++;
+        return best.ids;
+    }
+
+    /**
+     * Returns the current version of the cache, which changes on every {@link #clear()}. Read it
+     * before querying and pass it to {@link #put} so that a result computed before a write is not
+     * cached after it.
+     */
+    public synchronized int getVersion () {
+        return version;
+    }
+
+    /**
+     * Caches a ranked result, unless the cache was cleared since {@code version} was read.
+     *
+     * @param narrowable Whether {@code ids} is small enough to narrow the query of a longer input to.
+     */
+    public synchronized void put ( @NonNull String input, @NonNull String expression, @NonNull List<Integer> ids,
+                                   boolean narrowable, int version ) {
+        if (version == this.version) entries.put(expression, new Entry(input, ids, narrowable));
+    }
+
+    public synchronized void clear () {
+        entries.clear();
+        version++;
+    }
+
+    public synchronized int size () {
+        return entries.size();
+    }
+
+    public synchronized int getHitCount () {
+        return hitCount;
+    }
+
+    /** How many queries were narrowed to the IDs of a cached result rather than run on the whole index. */
+    public synchronized int getNarrowedCount () {
+        return narrowedCount;
+    }
+
+    public synchronized int getMissCount () {
+        return missCount;
+    }
+}
@@ -0,0 +1,449 @@
+package ht.godlion.quicknote.text;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ht.godlion.quicknote.utils.NoteCodec;
+
+/**
+ * The text of a large note as a sequence of chunks of about {@link #CHUNK_SIZE} characters, each
+ * stored in its own row. Only the chunks an editor is looking at need to be in memory: the others
+ * are known by their position and length until {@link #fill} loads them. Edits touch only the
+ * chunks they fall in, and {@link #takeChanges} returns just the chunks changed since the last
+ * call, so saving costs the size of the edit rather than the size of the note.
+ * <p>
+ * Chunks drift between {@link #MIN_CHUNK_SIZE} and {@link #MAX_CHUNK_SIZE} as they are edited and
+ * are split or merged outside that range. Each chunk has an order key; new chunks take keys in the
+ * gap between their neighbours, so a split leaves the rows of the other chunks alone.
+ * <p>
+ * Not thread-safe: an editor uses it from the main thread and hands {@link Changes} to the write
+ * lane.
+ */
+public class ChunkedText {
+    public static final int CHUNK_SIZE = 32 * 1024;
+    /** Notes at least this long are stored in chunks and edited a window at a time. */
+    public static final int LARGE_NOTE_LENGTH = 1024 * 1024;
+    static final int MAX_CHUNK_SIZE = CHUNK_SIZE * 2;
+    static final int MIN_CHUNK_SIZE = CHUNK_SIZE / 4;
+    static final long ORD_GAP = 1L << 20;
+    private static final long NOT_STORED = Long.MIN_VALUE;
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final List<Long> deletedOrds = new ArrayList<>();
+    private int[] starts = new int[0];
+    private boolean startsValid;
+    private int length;
+    private boolean replaceAll;
+
+    private static final class Chunk {
+        long ord;
+        /** The key of the row holding this chunk, or {@link #NOT_STORED}. */
+        long storedOrd;
+        int length;
+        /** Null while the chunk is not loaded. */
+        @Nullable
+        StringBuilder text;
+        boolean dirty;
+
+        Chunk ( long ord, long storedOrd, int length ) {
+            this.ord = ord;
+            this.storedOrd = storedOrd;
+            this.length = length;
+        }
+    }
+
+    /**
+     * What changed since the last {@link #takeChanges}: rows to delete, rows whose key changed, and
+     * chunks to write. Apply deletes, then moves, then writes.
+     */
+    public static final class Changes {
+        private final boolean replaceAll;
+        private final long[] deletedOrds;
+        private final long[] movedFrom;
+        private final long[] movedTo;
+        private final long[] writtenOrds;
+        private final String[] writtenTexts;
+        @Nullable
+        private final String prefix;
+        private final long date;
+
+        Changes ( boolean replaceAll, long[] deletedOrds, long[] movedFrom, long[] movedTo,
+                  long[] writtenOrds, String[] writtenTexts, @Nullable String prefix, long date ) {
+            this.replaceAll = replaceAll;
+            this.deletedOrds = deletedOrds;
+            this.movedFrom = movedFrom;
+            this.movedTo = movedTo;
+            this.writtenOrds = writtenOrds;
+            this.writtenTexts = writtenTexts;
+            this.prefix = prefix;
+            this.date = date;
+        }
+
+        /** Whether every stored chunk of the note must be deleted before the writes. */
+        public boolean replacesAll () {
+            return replaceAll;
+        }
+
+        @NonNull
+        public long[] getDeletedOrds () {
+            return deletedOrds;
+        }
+
+        /** Keys of the rows to move; {@link #getMovedTo()} holds their new keys. */
+        @NonNull
+        public long[] getMovedFrom () {
+            return movedFrom;
+        }
+
+        @NonNull
+        public long[] getMovedTo () {
+            return movedTo;
+        }
+
+        @NonNull
+        public long[] getWrittenOrds () {
+            return writtenOrds;
+        }
+
+        /** The full text of each written chunk, in the order of {@link #getWrittenOrds()}. */
+        @NonNull
+        public String[] getWrittenTexts () {
+            return writtenTexts;
+        }
+
+        /**
+         * The new searchable prefix of the note, or null if its start is not loaded and so did
+         * not change.
+         */
+        @Nullable
+        public String getPrefix () {
+            return prefix;
+        }
+
+        public long getDate () {
+            return date;
+        }
+
+        public boolean isEmpty () {
+            return !replaceAll && deletedOrds.length == 0 && movedFrom.length == 0 && writtenOrds.length == 0;
+        }
+    }
+
+    private ChunkedText () {}
+
+    public static boolean isLarge ( @Nullable CharSequence text ) {
+        return text != null && text.length() >= LARGE_NOTE_LENGTH;
+    }
+
+    /**
+     * Splits a whole text into chunks. Its first {@link Changes} replace every stored chunk.
+     */
+    @NonNull
+    public static ChunkedText fromText ( @NonNull CharSequence text ) {
+        ChunkedText result = new ChunkedText();
+        result.replaceAll = true;
+        long ord = ORD_GAP;
+        for (int start = 0; start < text.length(); ord += ORD_GAP) {
+            int end = cut(text, start, CHUNK_SIZE);
+            Chunk chunk = new Chunk(ord, NOT_STORED, end - start);
+            chunk.text = new StringBuilder(end - start).append(text, start, end);
+            chunk.dirty = true;
+            result.chunks.add(chunk);
+            start = end;
+        }
+        result.length = text.length();
+        return result;
+    }
+
+    /**
+     * Describes stored chunks without loading them.
+     *
+     * @param ords The order keys of the chunks, ascending.
+     * @param lengths The length of each chunk.
+     */
+    @NonNull
+    public static ChunkedText fromChunks ( @NonNull long[] ords, @NonNull int[] lengths ) {
+        ChunkedText result = new ChunkedText();
+        for (int i = 0; i < ords.length; i++) {
+            result.chunks.add(new Chunk(ords[i], ords[i], lengths[i]));
+            result.length += lengths[i];
+        }
+        return result;
+    }
+
+    public int length () {
+        return length;
+    }
+
+    public int getChunkCount () {
+        return chunks.size();
+    }
+
+    public int getLoadedChunkCount () {
+        int loaded = 0;
+        for (Chunk chunk : chunks) if (chunk.text != null) loaded++;
+        return loaded;
+    }
+
+    /**
+     * The stored keys of the chunks that must be loaded before reading or editing
+     * {@code [start, end)}, or inserting at {@code start} when the range is empty.
+     */
+    @NonNull
+    public long[] getMissingOrds ( int start, int end ) {
+        checkRange(start, end);
+        if (chunks.isEmpty()) return new long[0];
+        int first = index(start);
+        int last = end > start ? index(end - 1) : first;
+        List<Long> missing = new ArrayList<>();
+        for (int i = first; i <= last; i++) if (chunks.get(i).text == null) missing.add(chunks.get(i).storedOrd);
+        long[] ords = new long[missing.size()];
+        for (int i = 0; i < ords.length; i++) ords[i] = missing.get(i);
+        return ords;
+    }
+
+    /**
+     * Supplies the text of a chunk that was not loaded. Ignored if the chunk is loaded already.
+     *
+     * @param storedOrd The key the chunk was stored under, as returned by {@link #getMissingOrds}.
+     * @throws IllegalStateException If the text does not have the length the chunk was stored with.
+     */
+    public void fill ( long storedOrd, @NonNull String text ) {
+        for (Chunk chunk : chunks) {
+            if (chunk.storedOrd != storedOrd || chunk.text != null) continue;
+            if (chunk.length != text.length())
+                throw new IllegalStateException("Chunk " + storedOrd + " has " + text.length() + " chars, expected " + chunk.length);
+            chunk.text = new StringBuilder(text);
+            return;
+        }
+    }
+
+    /**
+     * Drops the loaded text of the unchanged chunks outside {@code [start, end)}.
+     */
+    public void evictOutside ( int start, int end ) {
+        checkRange(start, end);
+        ensureStarts();
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            boolean overlaps = starts[i] < Math.max(end, start + 1) && starts[i] + chunk.length > start;
+            if (!overlaps && !chunk.dirty) chunk.text = null;
+        }
+    }
+
+    /**
+     * @throws IllegalStateException If a chunk in the range is not loaded.
+     */
+    @NonNull
+    public String substring ( int start, int end ) {
+        checkRange(start, end);
+        StringBuilder text = new StringBuilder(end - start);
+        if (start == end) return "";
+        ensureStarts();
+        for (int i = index(start), last = index(end - 1); i <= last; i++) {
+            StringBuilder chunk = loaded(i);
+            text.append(chunk, Math.max(0, start - starts[i]), Math.min(chunk.length(), end - starts[i]));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Replaces {@code [start, end)} with {@code replacement}, changing only the chunks the range
+     * falls in.
+     *
+     * @throws IllegalStateException If a chunk in the range is not loaded.
+     */
+    public void replace ( int start, int end, @NonNull CharSequence replacement ) {
+        checkRange(start, end);
+        if (start == end && replacement.length() == 0) return;
+        if (chunks.isEmpty()) {
+            Chunk chunk = new Chunk(ORD_GAP, NOT_STORED, 0);
+            chunk.text = new StringBuilder();
+            chunks.add(chunk);
+            startsValid = false;
+        }
+        ensureStarts();
+        int first = index(start);
+        // Appending at the end of a loaded chunk, when the next one is not loaded.
+        if (start == end && first > 0 && start == starts[first] && chunks.get(first).text == null) first--;
+        int last = end > start ? index(end - 1) : first;
+        for (int i = first; i <= last; i++) loaded(i);
+
+        Chunk firstChunk = chunks.get(first);
+        int offset = start - starts[first];
+        if (first == last) {
+            firstChunk.text.replace(offset, end - starts[first], replacement.toString());
+        } else {
+            Chunk lastChunk = chunks.get(last);
+            firstChunk.text.setLength(offset);
+            firstChunk.text.append(replacement).append(lastChunk.text, end - starts[last], lastChunk.length);
+            for (int i = last; i > first; i--) remove(i);
+        }
+        firstChunk.length = firstChunk.text.length();
+        firstChunk.dirty = true;
+        length += replacement.length() - (end - start);
+        startsValid = false;
+        rebalance(first);
+    }
+
+    /**
+     * Returns what changed since the last call and marks everything saved. The written chunks
+     * are copied, so later edits do not affect the returned changes.
+     */
+    @NonNull
+    public Changes takeChanges ( long date ) {
+        List<Long> deletes = new ArrayList<>(deletedOrds);
+        List<Chunk> moved = new ArrayList<>();
+        List<Chunk> written = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            if (chunk.dirty) {
+                written.add(chunk);
+                if (chunk.storedOrd != NOT_STORED && chunk.storedOrd != chunk.ord) deletes.add(chunk.storedOrd);
+            } else if (chunk.storedOrd != chunk.ord) moved.add(chunk);
+        }
+        long[] deletedOrds = new long[replaceAll ? 0 : deletes.size()];
+        for (int i = 0; i < deletedOrds.length; i++) deletedOrds[i] = deletes.get(i);
+        long[] movedFrom = new long[moved.size()];
+        long[] movedTo = new long[moved.size()];
+        for (int i = 0; i < movedFrom.length; i++) {
+            movedFrom[i] = moved.get(i).storedOrd;
+            movedTo[i] = moved.get(i).ord;
+        }
+        long[] writtenOrds = new long[written.size()];
+        String[] writtenTexts = new String[written.size()];
+        for (int i = 0; i < writtenOrds.length; i++) {
+            writtenOrds[i] = written.get(i).ord;
+            writtenTexts[i] = written.get(i).text.toString();
+        }
+        Changes changes = new Changes(replaceAll, deletedOrds, movedFrom, movedTo, writtenOrds, writtenTexts, prefix(), date);
+
+        for (Chunk chunk : chunks) {
+            chunk.storedOrd = chunk.ord;
+            chunk.dirty = false;
+        }
+        this.deletedOrds.clear();
+        replaceAll = false;
+        return changes;
+    }
+
+    /**
+     * @throws IllegalStateException If a chunk is not loaded.
+     */
+    @NonNull
+    @Override
+    public String toString () {
+        return substring(0, length);
+    }
+
+    /** The searchable prefix, or null if the chunks it spans are not all loaded. */
+    @Nullable
+    private String prefix () {
+        StringBuilder prefix = new StringBuilder();
+        for (Chunk chunk : chunks) {
+            if (prefix.length() > NoteCodec.SEARCHABLE_PREFIX) break;
+            if (chunk.text == null) return null;
+            prefix.append(chunk.text, 0, Math.min(chunk.length, NoteCodec.SEARCHABLE_PREFIX + 1 - prefix.length()));
+        }
+        return NoteCodec.searchablePrefix(prefix.toString());
+    }
+
+    private void rebalance ( int index ) {
+        Chunk chunk = chunks.get(index);
+        if (chunk.length > MAX_CHUNK_SIZE) split(index);
+        else if (chunk.length == 0) remove(index);
+        else if (chunk.length < MIN_CHUNK_SIZE && chunks.size() > 1) merge(index);
+    }
+
+    private void split ( int index ) {
+        Chunk chunk = chunks.get(index);
+        StringBuilder text = chunk.text;
+        List<Integer> cuts = new ArrayList<>();
+        for (int start = 0; start < text.length(); ) {
+            start = cut(text, start, CHUNK_SIZE);
+            cuts.add(start);
+        }
+        int pieces = cuts.size();
+        long nextOrd = index + 1 < chunks.size() ? chunks.get(index + 1).ord : chunk.ord + (pieces + 1) * ORD_GAP;
+        long step = (nextOrd - chunk.ord) / pieces;
+        for (int piece = pieces - 1; piece >= 1; piece--) {
+            int from = cuts.get(piece - 1), to = cuts.get(piece);
+            Chunk added = new Chunk(chunk.ord + piece * step, NOT_STORED, to - from);
+            added.text = new StringBuilder(to - from).append(text, from, to);
+            added.dirty = true;
+            chunks.add(index + 1, added);
+        }
+        text.setLength(cuts.get(0));
+        chunk.length = text.length();
+        if (step == 0) renumber();
+        startsValid = false;
+    }
+
+    private void merge ( int index ) {
+        int other = index + 1 < chunks.size() && chunks.get(index + 1).text != null ? index + 1
+                : index > 0 && chunks.get(index - 1).text != null ? index - 1 : -1;
+        if (other < 0) return;
+        int into = Math.min(index, other);
+        Chunk kept = chunks.get(into);
+        kept.text.append(chunks.get(into + 1).text);
+        kept.length = kept.text.length();
+        kept.dirty = true;
+        remove(into + 1);
+        if (kept.length > MAX_CHUNK_SIZE) split(into);
+    }
+
+    private void remove ( int index ) {
+        Chunk removed = chunks.remove(index);
+        if (removed.storedOrd != NOT_STORED) deletedOrds.add(removed.storedOrd);
+        startsValid = false;
+    }
+
+    /** Spreads the keys evenly again once a gap ran out; moved chunks are saved as key updates. */
+    private void renumber () {
+        for (int i = 0; i < chunks.size(); i++) chunks.get(i).ord = (i + 1) * ORD_GAP;
+    }
+
+    private StringBuilder loaded ( int index ) {
+        StringBuilder text = chunks.get(index).text;
+        if (text == null) throw new IllegalStateException("Chunk " + chunks.get(index).storedOrd + " is not loaded");
+        return text;
+    }
+
+    /** The chunk holding {@code offset}, or the last chunk for the end of the text. */
+    private int index ( int offset ) {
+        ensureStarts();
+        if (offset >= length) return chunks.size() - 1;
+        int low = 0, high = chunks.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= offset) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    private void ensureStarts () {
+        if (startsValid) return;
+        if (starts.length < chunks.size()) starts = new int[chunks.size() * 2];
+        int start = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            starts[i] = start;
+            start += chunks.get(i).length;
+        }
+        startsValid = true;
+    }
+
+    private void checkRange ( int start, int end ) {
+        if (start < 0 || end < start || end > length)
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of [0, " + length + ")");
+    }
+
+    /** The end of a piece of at most {@code size} chars from {@code start}, not inside a surrogate pair. */
+    private static int cut ( CharSequence text, int start, int size ) {
+        int end = Math.min(text.length(), start + size);
+        if (end < text.length() && end > start + 1 && Character.isHighSurrogate(text.charAt(end - 1))) end--;
+        return end;
+    }
+}
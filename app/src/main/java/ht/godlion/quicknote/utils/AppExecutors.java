@@ -0,0 +1,86 @@
+package ht.godlion.quicknote.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The AppExecutors class groups the executors used by the app: a bounded pool of reader threads
+ * for database queries, a single writer thread so that writes are applied in order, and an executor
+ * that posts back to the main thread.
+ */
+public class AppExecutors {
+    private static final int DISK_READ_THREADS = 2;
+    private static volatile AppExecutors instance;
+
+    private final Executor diskRead;
+    private final Executor diskWrite;
+    private final Executor mainThread;
+
+    public AppExecutors ( @NonNull Executor diskRead, @NonNull Executor diskWrite, @NonNull Executor mainThread ) {
+        this.diskRead = diskRead;
+        this.diskWrite = diskWrite;
+        this.mainThread = mainThread;
+    }
+
+    public AppExecutors ( @NonNull Executor diskRead, @NonNull Executor diskWrite ) {
+        this(diskRead, diskWrite, new MainThreadExecutor());
+    }
+
+    public static AppExecutors getInstance () {
+        if (instance == null) {
+            synchronized (AppExecutors.class) {
+                if (instance == null)
+                    instance = new AppExecutors(
+                            Executors.newFixedThreadPool(DISK_READ_THREADS, new NamedThreadFactory("notes-db-read")),
+                            Executors.newSingleThreadExecutor(new NamedThreadFactory("notes-db-write")));
+            }
+        }
+        return instance;
+    }
+
+    /** The read lane: every query runs here, never on the main thread. */
+    public Executor diskRead () { return diskRead; }
+
+    /** The write lane: inserts, updates and deletes run here one at a time. */
+    public Executor diskWrite () { return diskWrite; }
+
+    public Executor mainThread () { return mainThread; }
+
+    /**
+     * Shuts the background lanes down when they are owned executor services. Only used by tests
+     * that build their own instance.
+     */
+    public void shutdown () {
+        if (diskRead instanceof ExecutorService) ((ExecutorService) diskRead).shutdown();
+        if (diskWrite instanceof ExecutorService) ((ExecutorService) diskWrite).shutdown();
+    }
+
+    private static class MainThreadExecutor implements Executor {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute ( @NonNull Runnable command ) { handler.post(command); }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory ( String prefix ) { this.prefix = prefix; }
+
+        @Override
+        public Thread newThread ( @NonNull Runnable runnable ) {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
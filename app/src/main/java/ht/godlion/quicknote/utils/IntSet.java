@@ -0,0 +1,112 @@
+package ht.godlion.quicknote.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * A set of positive ints backed by a single open-addressed array, so adding and looking up an ID
+ * never boxes it. Zero marks a free slot, which is why only positive values can be stored; row IDs
+ * handed out by SQLite start at 1.
+ */
+public class IntSet {
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] slots = new int[MIN_CAPACITY];
+    private int size;
+
+    public int size () {
+        return size;
+    }
+
+    public boolean isEmpty () {
+        return size == 0;
+    }
+
+    public boolean contains ( int value ) {
+        if (value <= 0) return false;
+        int mask = slots.length - 1;
+        for (int slot = hash(value) & mask; slots[slot] != 0; slot = (slot + 1) & mask)
+            if (slots[slot] == value) return true;
+        return false;
+    }
+
+    /**
+     * @return Whether the value was not in the set yet.
+     */
+    public boolean add ( int value ) {
+        if (value <= 0) throw new IllegalArgumentException("Only positive values can be stored: " + value);
+        int mask = slots.length - 1;
+        int slot = hash(value) & mask;
+        for (; slots[slot] != 0; slot = (slot + 1) & mask)
+            if (slots[slot] == value) return false;
+        slots[slot] = value;
+        // Keep the load factor at or below 1/2 so probe runs stay short.
+        if (++size * 2 > slots.length) resize(slots.length * 2);
+        return true;
+    }
+
+    /**
+     * Removes the value and shifts the rest of its probe run back, so lookups never need tombstones.
+     *
+     * @return Whether the value was in the set.
+     */
+    public boolean remove ( int value ) {
+        if (value <= 0) return false;
+        int mask = slots.length - 1;
+        int slot = hash(value) & mask;
+        for (; slots[slot] != value; slot = (slot + 1) & mask)
+            if (slots[slot] == 0) return false;
+        int free = slot;
+        for (int next = (free + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+            int home = hash(slots[next]) & mask;
+            // Move the entry into the hole unless its home lies cyclically in (free, next].
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                slots[free] = slots[next];
+                free = next;
+            }
+        }
+        slots[free] = 0;
+        size--;
+        return true;
+    }
+
+    /**
+     * Empties the set. The array shrinks back to its minimum size, so clearing costs nothing once
+     * a large selection was released.
+     */
+    public void clear () {
+        if (slots.length == MIN_CAPACITY) Arrays.fill(slots, 0);
+        else slots = new int[MIN_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Returns the values in no particular order.
+     */
+    @NonNull
+    public int[] toArray () {
+        int[] values = new int[size];
+        int count = 0;
+        for (int value : slots) if (value != 0) values[count++] = value;
+        return values;
+    }
+
+    private void resize ( int capacity ) {
+        int[] old = slots;
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int value : old) {
+            if (value == 0) continue;
+            int slot = hash(value) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = value;
+        }
+    }
+
+    private static int hash ( int value ) {
+        // Row IDs are sequential; the multiplier spreads neighbours across the table.
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
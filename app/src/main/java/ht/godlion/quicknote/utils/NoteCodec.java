@@ -0,0 +1,88 @@
+package ht.godlion.quicknote.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The NoteCodec class decides how a note body is stored. Bodies up to
+ * {@link #COMPRESS_THRESHOLD} characters are stored as plain text. Longer ones are deflated into
+ * the {@code body} column, and the {@code text} column keeps only their first
+ * {@link #SEARCHABLE_PREFIX} characters, which is what the list preview and the full-text index
+ * see. It also holds the deflate helpers shared with the revision history.
+ */
+public final class NoteCodec {
+    public static final int COMPRESS_THRESHOLD = 16 * 1024;
+    public static final int SEARCHABLE_PREFIX = 8 * 1024;
+
+    private NoteCodec () {}
+
+    /**
+     * Returns the deflated UTF-8 text when the text is over the threshold and compresses, otherwise
+     * null, meaning the text is stored as it is.
+     */
+    @Nullable
+    public static byte[] compress ( @Nullable String text ) {
+        if (text == null || text.length() <= COMPRESS_THRESHOLD) return null;
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = deflate(utf8, Deflater.DEFAULT_COMPRESSION);
+        return deflated.length < utf8.length ? deflated : null;
+    }
+
+    @NonNull
+    public static String decompress ( @NonNull byte[] body ) {
+        return new String(inflate(body, 0, body.length), StandardCharsets.UTF_8);
+    }
+
+    /** The start of a compressed text that stays in the {@code text} column. */
+    @NonNull
+    public static String searchablePrefix ( @NonNull String text ) {
+        int end = Math.min(text.length(), SEARCHABLE_PREFIX);
+        if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) end--;
+        return text.substring(0, end);
+    }
+
+    @NonNull
+    public static byte[] deflate ( @NonNull byte[] data, int level ) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) out.write(buffer, 0, deflater.deflate(buffer));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException If the data is not a complete deflate stream.
+     */
+    @NonNull
+    public static byte[] inflate ( @NonNull byte[] data, int offset, int length ) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IllegalArgumentException("Truncated compressed data");
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -2,9 +2,9 @@ package ht.godlion.quicknote.utils;
 
 import androidx.annotation.NonNull;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 
 /**
@@ -13,18 +13,76 @@ import java.util.Locale;
  */
 
 public class NoteUtils {
+    private static final String DATE_PATTERN = "EEE, dd MMM yyyy 'at' hh:mm a";
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    // The cache holds 2 << CACHE_SET_BITS formatted minutes.
+    private static final int CACHE_SET_BITS = 9;
+
+    private static volatile DateCache dateCache = new DateCache(ZoneId.systemDefault());
 
   /**
    * The function takes a long value representing a time and returns a formatted string representing
-   * the date and time.
-   * 
+   * the date and time. The format has minute precision, so strings are cached by minute: binding a
+   * row whose minute was already formatted allocates nothing.
+   *
    * @param time The "time" parameter is a long value representing a specific point in time, typically
    * measured in milliseconds since January 1, 1970, 00:00:00 GMT.
    * @return The method is returning a formatted date string.
    */
     @NonNull
     public static String dateFromLong (long time ) {
-        DateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy 'at' hh:mm aaa", Locale.US);
-        return format.format(new Date(time));
+        return dateCache.format(time);
+    }
+
+    /**
+     * Drops the cached strings and formats with the new default time zone from now on. Call it when
+     * the device time zone changes.
+     */
+    public static void onTimeZoneChanged () {
+        dateCache = new DateCache(ZoneId.systemDefault());
+    }
+
+    /**
+     * A two-way set-associative cache of formatted minutes. Minutes are spread over the sets with a
+     * multiplicative hash, so notes written at regular intervals do not pile up in the same sets, and
+     * each set evicts its least recently used way. Entries are immutable, so threads can race on a
+     * slot without locking: the worst case is formatting the same minute twice.
+     */
+    private static final class DateCache {
+        private final DateTimeFormatter formatter;
+        private final Entry[] entries = new Entry[2 << CACHE_SET_BITS];
+        private final byte[] recentWays = new byte[1 << CACHE_SET_BITS];
+
+        DateCache ( ZoneId zone ) {
+            this.formatter = DateTimeFormatter.ofPattern(DATE_PATTERN, Locale.US).withZone(zone);
+        }
+
+        String format ( long time ) {
+            long minute = Math.floorDiv(time, MILLIS_PER_MINUTE);
+            int set = (int) ((minute * 0x9E3779B97F4A7C15L) >>> (64 - CACHE_SET_BITS));
+            int base = set << 1;
+            for (int way = 0; way < 2; way++) {
+                Entry entry = entries[base + way];
+                if (entry != null && entry.minute == minute) {
+                    recentWays[set] = (byte) way;
+                    return entry.text;
+                }
+            }
+            int way = recentWays[set] ^ 1;
+            Entry entry = new Entry(minute, formatter.format(Instant.ofEpochMilli(minute * MILLIS_PER_MINUTE)));
+            entries[base + way] = entry;
+            recentWays[set] = (byte) way;
+            return entry.text;
+        }
+    }
+
+    private static final class Entry {
+        final long minute;
+        final String text;
+
+        Entry ( long minute, String text ) {
+            this.minute = minute;
+            this.text = text;
+        }
     }
 }
@@ -0,0 +1,49 @@
+package ht.godlion.quicknote.utils;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The StartupTimer class records how long after process start each startup milestone is reached,
+ * and logs it under the {@value #TAG} tag. Each milestone is recorded once per process.
+ */
+public final class StartupTimer {
+    public static final String TAG = "StartupTimer";
+    public static final String APPLICATION_CREATED = "application_created";
+    public static final String DATABASE_WARM = "database_warm";
+    public static final String MAIN_ACTIVITY_CREATED = "main_activity_created";
+    public static final String FIRST_LIST_RENDERED = "first_list_rendered";
+
+    private static final Map<String, Long> marks = new LinkedHashMap<>();
+
+    private StartupTimer () {}
+
+    /**
+     * Records the milestone, unless it was already recorded in this process.
+     */
+    public static void mark ( @NonNull String milestone ) {
+        long sinceStart = SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+        synchronized (marks) {
+            if (marks.containsKey(milestone)) return;
+            marks.put(milestone, sinceStart);
+        }
+        Log.i(TAG, milestone + ": " + sinceStart + " ms after process start");
+    }
+
+    /**
+     * Returns the milestones recorded so far, in order, with their time in milliseconds after
+     * process start.
+     */
+    @NonNull
+    public static Map<String, Long> getMarks () {
+        synchronized (marks) {
+            return new LinkedHashMap<>(marks);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ht.godlion.quicknote.adapters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NoteSelectionTest {
+
+    @Test
+    public void togglesTrackSelectedIds () {
+        NoteSelection selection = new NoteSelection();
+        assertTrue(selection.toggle(3));
+        assertTrue(selection.toggle(5));
+        assertFalse(selection.toggle(3));
+
+        assertFalse(selection.isSelected(3));
+        assertTrue(selection.isSelected(5));
+        assertEquals(1, selection.getCount(100));
+        assertArrayEquals(new int[]{5}, selection.getIds());
+    }
+
+    @Test
+    public void selectAllKeepsOnlyExclusions () {
+        NoteSelection selection = new NoteSelection();
+        selection.select(1);
+        selection.selectAll();
+        assertEquals(0, selection.getIds().length);
+        assertTrue(selection.isSelected(1_000_000));
+
+        selection.toggle(42);
+        assertFalse(selection.isSelected(42));
+        assertEquals(99, selection.getCount(100));
+        assertArrayEquals(new int[]{42}, selection.getIds());
+
+        selection.select(42);
+        assertEquals(100, selection.getCount(100));
+    }
+
+    @Test
+    public void clearLeavesSelectAllMode () {
+        NoteSelection selection = new NoteSelection();
+        selection.selectAll();
+        selection.clear();
+        assertFalse(selection.isAllSelected());
+        assertFalse(selection.isSelected(1));
+        assertEquals(0, selection.getCount(100));
+    }
+}
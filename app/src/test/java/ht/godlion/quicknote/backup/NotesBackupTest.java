@@ -0,0 +1,167 @@
+package ht.godlion.quicknote.backup;
+
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.model.ArchivedNote;
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.Tag;
+import ht.godlion.quicknote.text.ChunkedText;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round-trips notes through {@link NotesBackup} between two in-memory databases, plain and gzipped,
+ * across several export and import batches.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NotesBackupTest {
+    private static final int NOTES = NotesBackup.BATCH_SIZE * 2 + 7;
+
+    private NotesDB source;
+    private NotesDB target;
+
+    @Before
+    public void setUp () {
+        source = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class).allowMainThreadQueries().build();
+        target = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class).allowMainThreadQueries().build();
+        List<Note> notes = new ArrayList<>();
+        for (int i = 1; i <= NOTES; i++) notes.add(new Note("note " + i + "\n\"quoted\" \\ tab\t é", i * 1000L));
+        notes.add(new Note(null, 0L));
+        source.notesDao().insertNotes(notes);
+    }
+
+    @After
+    public void tearDown () {
+        source.close();
+        target.close();
+    }
+
+    @Test
+    public void plainRoundTrip () throws IOException {
+        roundTrip(false);
+    }
+
+    @Test
+    public void gzipRoundTrip () throws IOException {
+        roundTrip(true);
+    }
+
+    @Test
+    public void exportIsOneNotePerLine () throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NotesBackup.exportNotes(source.notesDao(), out, false);
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(NOTES + 1, lines.length);
+        assertEquals("{\"id\":1,\"date\":1000,\"text\":\"note 1\\n\\\"quoted\\\" \\\\ tab\\t é\"}", lines[0]);
+    }
+
+    @Test
+    public void importKeepsExistingNotesAndAssignsNewIds () throws IOException {
+        target.notesDao().insertNote(new Note("already here", 1L));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NotesBackup.exportNotes(source.notesDao(), out, false);
+        NotesBackup.importNotes(target.notesDao(), new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(NOTES + 2, target.notesDao().countNotes());
+        assertEquals("already here", target.notesDao().getNoteById(1).getNoteText());
+    }
+
+    @Test
+    public void largeNoteIsImportedInChunks () throws IOException {
+        StringBuilder text = new StringBuilder();
+        while (text.length() <= ChunkedText.LARGE_NOTE_LENGTH) text.append("large imported line\n");
+        NotesDao dao = source.notesDao();
+        int id = dao.insertLargeNote(new Note(text.toString(), 5L));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NotesBackup.exportNotes(dao, out, true);
+        NotesBackup.importNotes(target.notesDao(), new ByteArrayInputStream(out.toByteArray()));
+
+        Note imported = target.notesDao().getNoteById(NOTES + 2);
+        assertTrue(imported.isChunked());
+        assertEquals(NOTES + 2, id);
+        assertEquals(text.toString(), String.join("", target.notesDao().getChunkTexts(NOTES + 2)));
+        assertEquals(5L, imported.getNoteDate());
+    }
+
+    @Test
+    public void archivedNotesAreExportedAndGoBackToTheArchive () throws IOException {
+        assertEquals(Arrays.asList(1, 2), source.notesDao().archiveNotes(Arrays.asList(1, 2), 5L));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(NOTES + 1, NotesBackup.exportNotes(source.notesDao(), out, false));
+        assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8).endsWith(",\"archived\":true}\n"));
+        assertEquals(NOTES + 1, NotesBackup.importNotes(target.notesDao(), new ByteArrayInputStream(out.toByteArray())));
+
+        NotesDao dao = target.notesDao();
+        assertEquals(NOTES - 1, dao.countNotes());
+        assertEquals(2, dao.countArchivedNotes());
+        assertEquals(2, dao.searchArchivedNotes("quoted", 10).size());
+        List<Integer> archivedIds = new ArrayList<>();
+        for (ArchivedNote note : dao.getArchivedNotesAfter(0, 10)) archivedIds.add(note.getId());
+        assertEquals(1, dao.restoreArchivedNotes(archivedIds.subList(0, 1), 1L));
+        assertEquals("note 1\n\"quoted\" \\ tab\t é", dao.getNoteById(archivedIds.get(0)).getNoteText());
+    }
+
+    @Test
+    public void tagsSurviveTheRoundTrip () throws IOException {
+        NotesDao dao = source.notesDao();
+        dao.tagNote(1, Arrays.asList("work", "to \"do\""));
+        dao.tagNote(NOTES, Collections.singletonList("work"));
+        dao.tagNote(2, Collections.singletonList("old"));
+        dao.archiveNotes(Collections.singletonList(2), 5L);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NotesBackup.exportNotes(dao, out, true);
+        NotesBackup.importNotes(target.notesDao(), new ByteArrayInputStream(out.toByteArray()));
+
+        NotesDao imported = target.notesDao();
+        List<String> names = new ArrayList<>();
+        for (Tag tag : imported.getTagsForNote(1)) names.add(tag.getName());
+        assertEquals(Arrays.asList("to \"do\"", "work"), names);
+        assertEquals(2, imported.countNotesWithTags(Collections.singletonList(imported.getTagByName("work").getId()), false));
+        assertArrayEquals(new String[]{"old"}, imported.getArchivedNotesAfter(0, 10).get(0).getTagNames());
+    }
+
+    @Test
+    public void malformedLineReportsItsNumber () {
+        byte[] file = "{\"id\":1,\"date\":1,\"text\":\"ok\"}\n\n{\"id\":2,\"date\":\n".getBytes(StandardCharsets.UTF_8);
+        try {
+            NotesBackup.importNotes(target.notesDao(), new ByteArrayInputStream(file));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 3:"));
+        }
+    }
+
+    private void roundTrip ( boolean gzip ) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(NOTES + 1, NotesBackup.exportNotes(source.notesDao(), out, gzip));
+        assertEquals(NOTES + 1, NotesBackup.importNotes(target.notesDao(), new ByteArrayInputStream(out.toByteArray())));
+
+        NotesDao dao = target.notesDao();
+        assertEquals(NOTES + 1, dao.countNotes());
+        for (int id : new int[]{1, NotesBackup.BATCH_SIZE, NotesBackup.BATCH_SIZE + 1, NOTES}) {
+            Note expected = source.notesDao().getNoteById(id);
+            Note actual = dao.getNoteById(id);
+            assertEquals(expected.getNoteText(), actual.getNoteText());
+            assertEquals(expected.getNoteDate(), actual.getNoteDate());
+        }
+        assertNull(dao.getNoteById(NOTES + 1).getNoteText());
+    }
+}
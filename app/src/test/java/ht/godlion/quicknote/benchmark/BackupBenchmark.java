@@ -0,0 +1,155 @@
+package ht.godlion.quicknote.benchmark;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ht.godlion.quicknote.backup.NotesBackup;
+import ht.godlion.quicknote.db.NotesDB;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Exports 1M notes to a file and imports them into an empty database, plain and gzipped, and prints
+ * throughput and the peak heap sampled while each step runs, to compare with the ~70 MB the note
+ * texts alone would take if they were held in memory at once.
+ * <p>
+ * Run it with {@code ./gradlew testDebugUnitTest -Pbenchmark=backup}, which gives it a 128 MB heap:
+ * less than the notes take as objects, so an export or import that buffers them fails with an
+ * {@link OutOfMemoryError} instead of only printing a larger peak.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BackupBenchmark {
+    private static final String SOURCE_DB = "backup-benchmark-source";
+    private static final String TARGET_DB = "backup-benchmark-target";
+    private static final int NOTES = 1_000_000;
+
+    private Context context;
+    private NotesDB source;
+    private NotesDB target;
+    private File file;
+
+    @Before
+    public void setUp () {
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(SOURCE_DB);
+        context.deleteDatabase(TARGET_DB);
+        source = Room.databaseBuilder(context, NotesDB.class, SOURCE_DB).allowMainThreadQueries().build();
+        file = new File(context.getCacheDir(), "backup-benchmark.jsonl");
+        // Generated in SQL: building 1M Note objects in Java would itself dominate the heap.
+        SupportSQLiteDatabase db = source.getOpenHelper().getWritableDatabase();
+        db.execSQL("INSERT INTO notes (text, date) WITH RECURSIVE n(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM n WHERE x < " + NOTES + ") "
+                + "SELECT 'note ' || x || ': call about the garden project, review the budget draft ' || (x % 97), 1600000000000 + x * 60000 FROM n");
+    }
+
+    @After
+    public void tearDown () {
+        source.close();
+        if (target != null) target.close();
+        context.deleteDatabase(SOURCE_DB);
+        context.deleteDatabase(TARGET_DB);
+        file.delete();
+    }
+
+    @Test
+    public void plainExportAndImport () throws IOException {
+        run(false);
+    }
+
+    @Test
+    public void gzipExportAndImport () throws IOException {
+        run(true);
+    }
+
+    private void run ( boolean gzip ) throws IOException {
+        String label = gzip ? "gzip" : "plain";
+        HeapSampler sampler = new HeapSampler();
+        long start = System.nanoTime();
+        int exported;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            exported = NotesBackup.exportNotes(source.notesDao(), out, gzip);
+        }
+        long exportNanos = System.nanoTime() - start;
+        long exportPeak = sampler.stop();
+
+        target = Room.databaseBuilder(context, NotesDB.class, TARGET_DB).allowMainThreadQueries().build();
+        target.notesDao().countNotes();
+        sampler = new HeapSampler();
+        start = System.nanoTime();
+        int imported;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            imported = NotesBackup.importNotes(target.notesDao(), in);
+        }
+        long importNanos = System.nanoTime() - start;
+        long importPeak = sampler.stop();
+
+        assertEquals(NOTES, exported);
+        assertEquals(NOTES, imported);
+        assertEquals(NOTES, target.notesDao().countNotes());
+        System.out.println(String.format("%s: %d notes, %.1f MB file; export %.0f notes/s, peak heap +%d MB;"
+                        + " import %.0f notes/s, peak heap +%d MB", label, NOTES, file.length() / 1e6,
+                NOTES / (exportNanos / 1e9), exportPeak >> 20, NOTES / (importNanos / 1e9), importPeak >> 20));
+    }
+
+    /**
+     * Samples heap use every few milliseconds on a daemon thread and reports the peak above the
+     * heap in use, after a full collection, when sampling started. Garbage that is not collected yet
+     * counts too, so this overestimates what the code under test retains.
+     */
+    private static final class HeapSampler {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final AtomicLong peak = new AtomicLong();
+        private final long baseline;
+        private final Thread thread;
+
+        HeapSampler () {
+            System.gc();
+            baseline = memory.getHeapMemoryUsage().getUsed();
+            thread = new Thread(() -> {
+                while (running.get()) {
+                    long used = memory.getHeapMemoryUsage().getUsed();
+                    peak.accumulateAndGet(used, Math::max);
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long stop () {
+            running.set(false);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Math.max(0, peak.get() - baseline);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ht.godlion.quicknote.benchmark;
+
+import android.content.Context;
+
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.model.Note;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares deleting notes one row and one transaction at a time, as the multi-select delete used to,
+ * with {@link NotesDao#deleteNotesById} deleting them all in one transaction. Runs against a
+ * database file so that every commit pays for its journal writes.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BatchDeleteBenchmark {
+    private static final String DB_NAME = "batch-delete-benchmark";
+    private static final int[] SIZES = {10, 100, 1_000, 10_000};
+
+    private Context context;
+    private NotesDB db;
+
+    @Before
+    public void setUp () {
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(DB_NAME);
+        db = Room.databaseBuilder(context, NotesDB.class, DB_NAME)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void batchedDeleteVersusPerRow () {
+        NotesDao dao = db.notesDao();
+        for (int size : SIZES) {
+            long start = System.nanoTime();
+            for (int id : seed(size)) dao.deleteNoteById(id);
+            long perRowNanos = System.nanoTime() - start;
+            assertEquals(0, dao.getNotes().size());
+
+            List<Integer> ids = seed(size);
+            start = System.nanoTime();
+            dao.deleteNotesById(ids);
+            long batchedNanos = System.nanoTime() - start;
+            assertEquals(0, dao.getNotes().size());
+
+            System.out.printf("rows=%d per-row: %.2f ms | batched: %.2f ms (%.1fx)%n",
+                    size, perRowNanos / 1e6, batchedNanos / 1e6, (double) perRowNanos / batchedNanos);
+        }
+    }
+
+    /**
+     * Deleting after a select-all with a few notes left out: {@link NotesDao#deleteNotesExcept}
+     * never reads the IDs of the deleted notes, while listing them costs a full scan first.
+     */
+    @Test
+    public void selectAllDeleteVersusListedIds () {
+        NotesDao dao = db.notesDao();
+        for (int size : SIZES) {
+            List<Integer> ids = seed(size);
+            int[] kept = {ids.get(0), ids.get(size / 2), ids.get(size - 1)};
+            long start = System.nanoTime();
+            List<Integer> deleted = new ArrayList<>(size);
+            for (Note note : dao.getNotes()) if (note.getId() != kept[0] && note.getId() != kept[1] && note.getId() != kept[2]) deleted.add(note.getId());
+            dao.deleteNotesById(deleted);
+            long listedNanos = System.nanoTime() - start;
+            assertEquals(3, dao.getNotes().size());
+            dao.deleteNotesById(ids);
+
+            ids = seed(size);
+            kept = new int[]{ids.get(0), ids.get(size / 2), ids.get(size - 1)};
+            start = System.nanoTime();
+            dao.deleteNotesExcept(kept);
+            long exceptNanos = System.nanoTime() - start;
+            List<Note> left = dao.getNotes();
+            assertEquals(3, left.size());
+            for (Note note : left) assertTrue(note.getId() == kept[0] || note.getId() == kept[1] || note.getId() == kept[2]);
+            dao.deleteNotesById(ids);
+
+            System.out.printf("rows=%d listed ids: %.2f ms | delete except: %.2f ms (%.1fx)%n",
+                    size, listedNanos / 1e6, exceptNanos / 1e6, (double) listedNanos / exceptNanos);
+        }
+    }
+
+    private List<Integer> seed ( int size ) {
+        NoteFixtures.seed(db, size, size);
+        List<Integer> ids = new ArrayList<>(size);
+        for (Note note : db.notesDao().getNotes()) ids.add(note.getId());
+        return ids;
+    }
+}
@@ -0,0 +1,53 @@
+package ht.godlion.quicknote.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collects benchmark results and writes them as JSON Lines, one result per line, to
+ * {@code <benchmark.report.dir>/<benchmark>.jsonl}, so runs can be diffed or loaded into a script.
+ * Every line carries the run's start time and JVM version; a new run replaces the file.
+ */
+final class BenchmarkReport {
+    static final String DIR_PROPERTY = "benchmark.report.dir";
+    private static final String DEFAULT_DIR = "build/reports/benchmark";
+
+    private final String benchmark;
+    private final String run = Instant.now().toString();
+    private final List<String> lines = new ArrayList<>();
+
+    BenchmarkReport ( String benchmark ) {
+        this.benchmark = benchmark;
+    }
+
+    /**
+     * @param notes The dataset size the result was measured on, or 0 if it does not depend on one.
+     */
+    void add ( int notes, String metric, String unit, double value ) {
+        String line = String.format(Locale.ROOT,
+                "{\"benchmark\":\"%s\",\"notes\":%d,\"metric\":\"%s\",\"unit\":\"%s\",\"value\":%.3f,\"run\":\"%s\",\"jvm\":\"%s\"}",
+                benchmark, notes, metric, unit, value, run, System.getProperty("java.version"));
+        lines.add(line);
+        System.out.println(line);
+    }
+
+    /**
+     * @return The file written.
+     */
+    File write () throws IOException {
+        File dir = new File(System.getProperty(DIR_PROPERTY, DEFAULT_DIR));
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        File file = new File(dir, benchmark + ".jsonl");
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (String line : lines) writer.write(line + "\n");
+        }
+        return file;
+    }
+}
@@ -0,0 +1,194 @@
+package ht.godlion.quicknote.benchmark;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ht.godlion.quicknote.adapters.NoteRowInflater;
+import ht.godlion.quicknote.adapters.NotesAdapter;
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.db.NotesKeyedDataSource;
+import ht.godlion.quicknote.db.NotesRepository;
+import ht.godlion.quicknote.metrics.LatencyHistogram;
+import ht.godlion.quicknote.metrics.Metrics;
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NotePreview;
+import ht.godlion.quicknote.utils.NoteUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Seeds databases of increasing size with {@link NoteFixtures} text and measures, at each size, how
+ * fast notes are inserted, listed page by page, fetched by ID and deleted, how fast the list's
+ * dates are formatted and what a row bind costs. Results go to a {@link BenchmarkReport}.
+ * <p>
+ * Sizes come from the {@value #SIZES_PROPERTY} system property, a comma-separated list of note
+ * counts. The build passes {@code 1000,10000} by default so a benchmark run stays quick; run
+ * {@code ./gradlew testDebugUnitTest -Pbenchmark --tests '*DataSizeBenchmark' -Pbenchmark.sizes=1000,10000,100000,1000000}
+ * for the full scaling curve. Databases are files, so the larger sizes do not need the notes on the
+ * JVM heap.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DataSizeBenchmark {
+    static final String SIZES_PROPERTY = "benchmark.sizes";
+    private static final String DB_NAME = "data-size-benchmark";
+    private static final int INSERT_BATCH = 10_000;
+    private static final int LOOKUPS = 5_000;
+    private static final int BINDS = 5_000;
+    /** Share of the notes deleted at the end, in batches of IDs. */
+    private static final double DELETED_SHARE = 0.01;
+    private static final int MAX_FORMATTED_DATES = 200_000;
+    private static final PagedList.Config CONFIG = new PagedList.Config.Builder()
+            .setPageSize(NotesRepository.PAGE_SIZE)
+            .setInitialLoadSizeHint(NotesRepository.PAGE_SIZE * 2)
+            .setEnablePlaceholders(false)
+            .build();
+
+    private Context context;
+    private NotesDB db;
+    private Activity activity;
+    private final BenchmarkReport report = new BenchmarkReport("DataSizeBenchmark");
+
+    @Before
+    public void setUp () {
+        context = RuntimeEnvironment.getApplication();
+        activity = Robolectric.buildActivity(Activity.class).setup().get();
+    }
+
+    @After
+    public void tearDown () {
+        if (db != null) db.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void scaling () throws IOException {
+        for (String size : System.getProperty(SIZES_PROPERTY, "1000,10000").split(","))
+            run(Integer.parseInt(size.trim()));
+        System.out.println("Report written to " + report.write().getAbsolutePath());
+    }
+
+    private void run ( int notes ) {
+        if (db != null) db.close();
+        context.deleteDatabase(DB_NAME);
+        db = Room.databaseBuilder(context, NotesDB.class, DB_NAME).allowMainThreadQueries().build();
+        NotesDao dao = db.notesDao();
+        Random random = new Random(notes);
+
+        long start = System.nanoTime();
+        for (int inserted = 0; inserted < notes; inserted += INSERT_BATCH) {
+            List<Note> batch = new ArrayList<>(Math.min(INSERT_BATCH, notes - inserted));
+            for (int i = inserted; i < inserted + INSERT_BATCH && i < notes; i++)
+                batch.add(new Note(NoteFixtures.randomText(random), NoteFixtures.START_DATE + i * 60_000L));
+            dao.insertNotes(batch);
+        }
+        report.add(notes, "insert", "notes/s", perSecond(notes, System.nanoTime() - start));
+        assertEquals(notes, dao.countNotes());
+
+        start = System.nanoTime();
+        List<NotePreview> firstPage = dao.getNotesBefore(0, Long.MAX_VALUE, Integer.MAX_VALUE, NotesRepository.PAGE_SIZE);
+        report.add(notes, "list.firstPage", "ms", (System.nanoTime() - start) / 1e6);
+
+        long[] dates = new long[Math.min(notes, MAX_FORMATTED_DATES)];
+        int listed = 0;
+        start = System.nanoTime();
+        for (List<NotePreview> page = firstPage; !page.isEmpty(); ) {
+            for (NotePreview note : page) {
+                if (listed < dates.length) dates[listed] = note.getNoteDate();
+                listed++;
+            }
+            NotePreview last = page.get(page.size() - 1);
+            page = dao.getNotesBefore(0, last.getNoteDate(), last.getId(), NotesRepository.PAGE_SIZE);
+        }
+        report.add(notes, "list.scan", "notes/s", perSecond(listed, System.nanoTime() - start));
+        assertEquals(notes, listed);
+
+        LatencyHistogram lookups = new LatencyHistogram();
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            int id = 1 + random.nextInt(notes);
+            long lookup = System.nanoTime();
+            dao.getNoteById(id).getNoteText();
+            lookups.record(System.nanoTime() - lookup);
+        }
+        report.add(notes, "getById", "ops/s", perSecond(LOOKUPS, System.nanoTime() - start));
+        report.add(notes, "getById.p50", "us", lookups.getValueAtPercentile(50) / 1e3);
+        report.add(notes, "getById.p99", "us", lookups.getValueAtPercentile(99) / 1e3);
+
+        // Scrolling down the list and back up again, as the adapter would.
+        int sink = 0;
+        start = System.nanoTime();
+        for (long date : dates) sink += NoteUtils.dateFromLong(date).length();
+        for (int i = dates.length - 1; i >= 0; i--) sink += NoteUtils.dateFromLong(dates[i]).length();
+        report.add(notes, "dateFromLong", "calls/s", perSecond(dates.length * 2L, System.nanoTime() - start));
+
+        LatencyHistogram binds = bind();
+        report.add(notes, "bind.p50", "us", binds.getValueAtPercentile(50) / 1e3);
+        report.add(notes, "bind.p99", "us", binds.getValueAtPercentile(99) / 1e3);
+
+        int deleted = Math.max(1, (int) (notes * DELETED_SHARE));
+        List<Integer> ids = new ArrayList<>(deleted);
+        for (int i = 0; i < deleted; i++) ids.add(1 + (int) ((long) i * notes / deleted));
+        start = System.nanoTime();
+        dao.deleteNotesById(ids);
+        report.add(notes, "deleteById", "notes/s", perSecond(deleted, System.nanoTime() - start));
+        assertEquals(notes - deleted, dao.countNotes());
+        System.out.println(notes + " notes done (" + sink + ")");
+    }
+
+    /**
+     * Binds the rows of the first loaded pages into one holder, over and over, and returns the bind
+     * latencies {@link NotesAdapter} recorded.
+     */
+    private LatencyHistogram bind () {
+        NoteRowInflater rows = new NoteRowInflater(activity);
+        RecyclerView list = new RecyclerView(activity);
+        list.setLayoutManager(new LinearLayoutManager(activity));
+        NotesAdapter adapter = new NotesAdapter(rows);
+        adapter.submitList(pagedList());
+        shadowOf(Looper.getMainLooper()).idle();
+        // The holder type is internal to the adapters, so bind through the raw type.
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        RecyclerView.Adapter<RecyclerView.ViewHolder> rowAdapter = (RecyclerView.Adapter) adapter;
+        RecyclerView.ViewHolder holder = rowAdapter.createViewHolder(list, NoteRowInflater.VIEW_TYPE_NOTE);
+
+        for (int i = 0; i < BINDS; i++) rowAdapter.bindViewHolder(holder, i % adapter.getItemCount());
+        Metrics.histogram("NotesAdapter.bind").reset();
+        for (int i = 0; i < BINDS; i++) rowAdapter.bindViewHolder(holder, i % adapter.getItemCount());
+        return Metrics.histogram("NotesAdapter.bind");
+    }
+
+    private PagedList<NotePreview> pagedList () {
+        Handler main = new Handler(Looper.getMainLooper());
+        return new PagedList.Builder<>(
+                new NotesKeyedDataSource.Factory(db.notesDao(), db.getInvalidationTracker()).create(), CONFIG)
+                .setFetchExecutor(Runnable::run)
+                .setNotifyExecutor(main::post)
+                .build();
+    }
+
+    private static double perSecond ( long count, long nanos ) {
+        return count * 1e9 / nanos;
+    }
+}
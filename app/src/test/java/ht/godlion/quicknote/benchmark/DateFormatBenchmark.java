@@ -0,0 +1,63 @@
+package ht.godlion.quicknote.benchmark;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.function.LongFunction;
+
+import ht.godlion.quicknote.utils.NoteUtils;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures throughput and bytes allocated per call of {@link NoteUtils#dateFromLong} against the
+ * previous implementation, which built a new {@link SimpleDateFormat} on every call. The input
+ * cycles through the dates of a few hundred notes, as when a list is scrolled back and forth.
+ */
+public class DateFormatBenchmark {
+    private static final int NOTES = 300;
+    private static final int WARMUP = 200_000;
+    private static final int CALLS = 1_000_000;
+
+    @Test
+    public void cachedFormatterAllocatesNothingOnHits () {
+        long[] dates = new long[NOTES];
+        for (int i = 0; i < NOTES; i++) dates[i] = 1_700_000_000_000L + i * 3_600_000L;
+
+        Result legacy = run("legacy SimpleDateFormat", dates,
+                time -> new SimpleDateFormat("EEE, dd MMM yyyy 'at' hh:mm aaa", Locale.US).format(new Date(time)));
+        Result cached = run("NoteUtils.dateFromLong", dates, NoteUtils::dateFromLong);
+
+        assertTrue(cached.bytesPerCall * 100 < legacy.bytesPerCall);
+        assertTrue(cached.callsPerSecond > legacy.callsPerSecond);
+    }
+
+    private static Result run ( String name, long[] dates, LongFunction<String> format ) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP; i++) sink += format.apply(dates[i % dates.length]).length();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) sink += format.apply(dates[i % dates.length]).length();
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+
+        Result result = new Result((double) bytes / CALLS, CALLS * 1e9 / nanos);
+        System.out.printf("%s: %.0f calls/s, %.1f bytes/call (%d)%n", name, result.callsPerSecond, result.bytesPerCall, sink);
+        return result;
+    }
+
+    private static final class Result {
+        final double bytesPerCall;
+        final double callsPerSecond;
+
+        Result ( double bytesPerCall, double callsPerSecond ) {
+            this.bytesPerCall = bytesPerCall;
+            this.callsPerSecond = callsPerSecond;
+        }
+    }
+}
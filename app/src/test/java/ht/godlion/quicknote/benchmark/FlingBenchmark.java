@@ -0,0 +1,202 @@
+package ht.godlion.quicknote.benchmark;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import ht.godlion.quicknote.adapters.NoteRowInflater;
+import ht.godlion.quicknote.adapters.NotesAdapter;
+import ht.godlion.quicknote.adapters.SearchResultsAdapter;
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesKeyedDataSource;
+import ht.godlion.quicknote.db.NotesRepository;
+import ht.godlion.quicknote.model.NotePreview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Flings through 10k notes one frame at a time, scrolling the list by a fixed distance per frame,
+ * and reports how many rows were inflated on the main thread and how many frames took longer than
+ * a 60 Hz frame. Compares the default pool of 5 rows per view type with the shared
+ * {@link NoteRowInflater} pool and pre-inflated rows, then counts the rows inflated when the list
+ * switches to search results and back.
+ * <p>
+ * Frame times are host JVM times, not device times: compare the setups with each other rather
+ * than reading them as real frame durations.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FlingBenchmark {
+    private static final int NOTES = 10_000;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 2340;
+    private static final int FRAME_SCROLL_PX = HEIGHT / 2;
+    private static final long FRAME_BUDGET_NANOS = TimeUnit.MICROSECONDS.toNanos(16_667);
+    private static final PagedList.Config CONFIG = new PagedList.Config.Builder()
+            .setPageSize(NotesRepository.PAGE_SIZE)
+            .setInitialLoadSizeHint(NotesRepository.PAGE_SIZE * 2)
+            .setPrefetchDistance(NotesRepository.PAGE_SIZE)
+            .setEnablePlaceholders(false)
+            .build();
+
+    private NotesDB db;
+    private Activity activity;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class)
+                .allowMainThreadQueries()
+                .build();
+        NoteFixtures.seed(db, NOTES, NOTES);
+        activity = Robolectric.buildActivity(Activity.class).setup().get();
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void flingInflationsAndJank () {
+        Result defaultPool = fling(false, false);
+        Result sharedPool = fling(true, false);
+        Result prepared = fling(true, true);
+
+        print("default pool", defaultPool);
+        print("shared pool", sharedPool);
+        print("shared pool + prepared", prepared);
+        assertTrue(prepared.preparedUsed > 0);
+        assertTrue(prepared.inflated < defaultPool.inflated);
+    }
+
+    @Test
+    public void switchingToSearchKeepsRows () {
+        NoteRowInflater rows = new NoteRowInflater(activity);
+        RecyclerView list = newList(rows, true);
+        NotesAdapter adapter = new NotesAdapter(rows);
+        list.setAdapter(adapter);
+        adapter.submitList(pagedList());
+        layout(list);
+
+        SearchResultsAdapter search = new SearchResultsAdapter(rows);
+        int before = rows.getInflateCount();
+        list.swapAdapter(search, true);
+        layout(list);
+        list.swapAdapter(adapter, true);
+        layout(list);
+        int swapped = rows.getInflateCount() - before;
+
+        before = rows.getInflateCount();
+        list.setAdapter(search);
+        layout(list);
+        list.setAdapter(adapter);
+        layout(list);
+        int reset = rows.getInflateCount() - before;
+
+        System.out.printf("search and back: swapAdapter inflated %d rows | setAdapter inflated %d rows%n", swapped, reset);
+        assertEquals(0, swapped);
+    }
+
+    private Result fling ( boolean sharedPool, boolean prepare ) {
+        NoteRowInflater rows = new NoteRowInflater(activity);
+        RecyclerView list = newList(rows, sharedPool);
+        if (prepare) {
+            int count = NoteRowInflater.POOL_SIZE;
+            rows.prepare(list, count);
+            awaitPrepared(rows, count);
+        }
+        NotesAdapter adapter = new NotesAdapter(rows);
+        list.setAdapter(adapter);
+        adapter.submitList(pagedList());
+        layout(list);
+
+        long[] frames = new long[NOTES];
+        int frameCount = 0;
+        while (list.canScrollVertically(1) && frameCount < frames.length) {
+            long start = System.nanoTime();
+            list.scrollBy(0, FRAME_SCROLL_PX);
+            frames[frameCount++] = System.nanoTime() - start;
+            // Lets the paged list publish the pages loaded while binding.
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+        assertEquals(NOTES, adapter.getItemCount());
+
+        Result result = new Result();
+        result.inflated = rows.getInflateCount();
+        result.preparedUsed = rows.getPreparedUseCount();
+        result.frames = Arrays.copyOf(frames, frameCount);
+        return result;
+    }
+
+    private RecyclerView newList ( NoteRowInflater rows, boolean sharedPool ) {
+        RecyclerView list = new RecyclerView(activity);
+        list.setLayoutManager(new LinearLayoutManager(activity));
+        if (sharedPool) rows.attach(list);
+        activity.setContentView(list);
+        return list;
+    }
+
+    private PagedList<NotePreview> pagedList () {
+        Handler main = new Handler(Looper.getMainLooper());
+        return new PagedList.Builder<>(
+                new NotesKeyedDataSource.Factory(db.notesDao(), db.getInvalidationTracker()).create(), CONFIG)
+                .setFetchExecutor(Runnable::run)
+                .setNotifyExecutor(main::post)
+                .build();
+    }
+
+    private static void layout ( View list ) {
+        shadowOf(Looper.getMainLooper()).idle();
+        list.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        list.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static void awaitPrepared ( NoteRowInflater rows, int count ) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (rows.getPreparedCount() < count && System.nanoTime() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.yield();
+        }
+        assertEquals(count, rows.getPreparedCount());
+    }
+
+    private static void print ( String name, Result result ) {
+        long[] sorted = result.frames.clone();
+        Arrays.sort(sorted);
+        int janky = 0;
+        for (long frame : sorted) if (frame > FRAME_BUDGET_NANOS) janky++;
+        System.out.printf("%s: %d frames, %d janky | inflated %d, prepared used %d | frame p50 %.2f ms, p99 %.2f ms%n",
+                name, sorted.length, janky, result.inflated, result.preparedUsed,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6);
+    }
+
+    private static long percentile ( long[] sorted, double quantile ) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) (quantile * sorted.length))];
+    }
+
+    private static final class Result {
+        int inflated;
+        int preparedUsed;
+        long[] frames;
+    }
+}
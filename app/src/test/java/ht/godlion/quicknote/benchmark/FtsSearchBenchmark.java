@@ -0,0 +1,87 @@
+package ht.godlion.quicknote.benchmark;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.db.NotesRepository;
+import ht.godlion.quicknote.model.NoteSearchResult;
+import ht.godlion.quicknote.search.SearchQuery;
+import ht.godlion.quicknote.search.SearchRanker;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times a ranked, paged full-text search over 100k notes against a {@code LIKE '%term%'} scan of
+ * the same table.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FtsSearchBenchmark {
+    private static final int NOTES = 100_000;
+    private static final int RUNS = 20;
+
+    private NotesDB db;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class)
+                .allowMainThreadQueries()
+                .build();
+        NoteFixtures.seed(db, NOTES, 42);
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void ftsBeatsLikeScan () {
+        NotesDao dao = db.notesDao();
+        String expression = SearchQuery.toMatchExpression("gard");
+        assertEquals(count("SELECT count(*) FROM notes WHERE text LIKE '%garden%'"),
+                count("SELECT count(*) FROM notes_fts WHERE notes_fts MATCH 'garden'"));
+
+        long ftsNanos = 0, likeNanos = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            List<Integer> ranked;
+            try (Cursor matches = dao.matchAllNotes(expression)) {
+                ranked = SearchRanker.rank(matches);
+            }
+            List<NoteSearchResult> page = dao.getSearchResults(expression, ranked.subList(0, NotesRepository.PAGE_SIZE));
+            ftsNanos += System.nanoTime() - start;
+            assertEquals(NotesRepository.PAGE_SIZE, page.size());
+            assertTrue(page.get(0).getSnippet().contains(NoteSearchResult.HIGHLIGHT_START));
+
+            start = System.nanoTime();
+            count("SELECT count(*) FROM notes WHERE text LIKE '%gard%'");
+            likeNanos += System.nanoTime() - start;
+        }
+        System.out.printf("notes=%d fts ranked page: %.2f ms | LIKE scan: %.2f ms%n",
+                NOTES, ftsNanos / 1e6 / RUNS, likeNanos / 1e6 / RUNS);
+
+        long phrase = count("SELECT count(*) FROM notes_fts WHERE notes_fts MATCH '" + SearchQuery.toMatchExpression("\"garden gift\"") + "'");
+        // The phrase also matches across line breaks, which LIKE does not.
+        assertTrue(phrase >= count("SELECT count(*) FROM notes WHERE text LIKE '%garden gift%'"));
+    }
+
+    private long count ( String sql ) {
+        try (Cursor cursor = db.query(new SimpleSQLiteQuery(sql))) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+}
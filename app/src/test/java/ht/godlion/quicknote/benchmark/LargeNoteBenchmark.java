@@ -0,0 +1,151 @@
+package ht.godlion.quicknote.benchmark;
+
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NoteChunk;
+import ht.godlion.quicknote.text.ChunkedText;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Opens a 10M-character note, types into the middle of it and saves it, {@link #EDITS} times, once
+ * the way every note is stored (one compressed row, read and rewritten whole) and once in chunks
+ * (one window loaded, only the touched chunk rewritten). Prints open, edit and save latency and the
+ * heap the open note holds.
+ * <p>
+ * Heap figures come from {@link Runtime} after a GC request, so they are estimates; compare the two
+ * paths with each other. On a device the whole-note read may not even fit in a cursor window.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LargeNoteBenchmark {
+    private static final int LENGTH = 10 * 1024 * 1024;
+    private static final int EDITS = 5;
+    private static final int WINDOW_LENGTH = ChunkedText.CHUNK_SIZE;
+
+    private NotesDB db;
+    private NotesDao dao;
+    private String text;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = db.notesDao();
+        Random random = new Random(LENGTH);
+        StringBuilder builder = new StringBuilder(LENGTH + 200);
+        while (builder.length() < LENGTH) builder.append(NoteFixtures.randomText(random)).append('\n');
+        text = builder.substring(0, LENGTH);
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void wholeVersusChunked () {
+        int wholeId = (int) dao.insertNote(new Note(text, 1));
+        int chunkedId = (int) dao.insertNote(new Note("", 1));
+        Note large = new Note(text, 1);
+        large.setId(chunkedId);
+        dao.updateNoteWithHistory(large);
+
+        Result whole = whole(wholeId);
+        Result chunked = chunked(chunkedId);
+        print("whole", whole);
+        print("chunked", chunked);
+        assertEquals(whole.checksum, chunked.checksum);
+        assertTrue(chunked.heapBytes < whole.heapBytes);
+    }
+
+    private Result whole ( int id ) {
+        Result result = new Result();
+        long heap = usedHeap();
+        long start = System.nanoTime();
+        Note note = dao.getNoteById(id);
+        String current = note.getNoteText();
+        result.openNanos = System.nanoTime() - start;
+        result.heapBytes = usedHeap() - heap;
+
+        int at = current.length() / 2;
+        for (int i = 0; i < EDITS; i++) {
+            start = System.nanoTime();
+            current = current.substring(0, at) + "edit " + i + current.substring(at);
+            result.editNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Note edited = new Note(current, 2 + i);
+            edited.setId(id);
+            dao.updateNote(edited);
+            result.saveNanos += System.nanoTime() - start;
+        }
+        result.checksum = dao.getNoteById(id).getNoteText().hashCode();
+        return result;
+    }
+
+    private Result chunked ( int id ) {
+        Result result = new Result();
+        long heap = usedHeap();
+        long start = System.nanoTime();
+        ChunkedText current = dao.openChunkedText(id);
+        int at = current.length() / 2;
+        load(id, current, at, at + WINDOW_LENGTH);
+        current.evictOutside(at, at + WINDOW_LENGTH);
+        result.openNanos = System.nanoTime() - start;
+        result.heapBytes = usedHeap() - heap;
+
+        for (int i = 0; i < EDITS; i++) {
+            start = System.nanoTime();
+            current.replace(at, at, "edit " + i);
+            result.editNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            dao.saveChunks(id, current.takeChanges(2 + i));
+            result.saveNanos += System.nanoTime() - start;
+        }
+        result.checksum = String.join("", dao.getChunkTexts(id)).hashCode();
+        return result;
+    }
+
+    private void load ( int id, ChunkedText text, int start, int end ) {
+        List<Long> ords = new ArrayList<>();
+        for (long ord : text.getMissingOrds(start, end)) ords.add(ord);
+        for (NoteChunk chunk : dao.getChunks(id, ords)) text.fill(chunk.getOrd(), chunk.getText());
+    }
+
+    private static long usedHeap () {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void print ( String name, Result result ) {
+        System.out.printf("%s: open %.1f ms, edit %.3f ms, save %.1f ms per edit | open note holds ~%,d KB%n",
+                name, result.openNanos / 1e6, result.editNanos / 1e6 / EDITS, result.saveNanos / 1e6 / EDITS,
+                result.heapBytes >> 10);
+    }
+
+    private static final class Result {
+        long openNanos;
+        long editNanos;
+        long saveNanos;
+        long heapBytes;
+        int checksum;
+    }
+}
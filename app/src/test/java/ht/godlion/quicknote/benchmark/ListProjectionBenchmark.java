@@ -0,0 +1,89 @@
+package ht.godlion.quicknote.benchmark;
+
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NotePreview;
+
+import static org.junit.Assert.*;
+
+/**
+ * Loads the same rows of multi-kilobyte notes as full {@link Note} objects and as the
+ * {@link NotePreview} projection used by the list, and compares the characters moved through the
+ * cursor, the retained heap and the load time.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ListProjectionBenchmark {
+    private static final int NOTES = 2_000;
+    private static final int NOTE_LENGTH = 8 * 1024;
+
+    private NotesDB db;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class)
+                .allowMainThreadQueries()
+                .build();
+        Random random = new Random(8);
+        List<Note> notes = new ArrayList<>(NOTES);
+        for (int i = 0; i < NOTES; i++) {
+            StringBuilder text = new StringBuilder(NOTE_LENGTH);
+            while (text.length() < NOTE_LENGTH) text.append(NoteFixtures.randomText(random)).append('\n');
+            notes.add(new Note(text.toString(), i));
+        }
+        db.notesDao().insertNotes(notes);
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void previewsMoveAFractionOfTheText () {
+        NotesDao dao = db.notesDao();
+
+        long before = usedHeap();
+        long start = System.nanoTime();
+        List<Note> full = dao.getNotes();
+        long fullNanos = System.nanoTime() - start;
+        long fullHeap = usedHeap() - before;
+        long fullChars = 0;
+        for (Note note : full) fullChars += note.getNoteText().length();
+
+        before = usedHeap();
+        start = System.nanoTime();
+        List<NotePreview> previews = dao.getNotesBefore(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, NOTES);
+        long previewNanos = System.nanoTime() - start;
+        long previewHeap = usedHeap() - before;
+        long previewChars = 0;
+        for (NotePreview preview : previews) {
+            assertTrue(preview.getPreview().length() <= NotePreview.PREVIEW_LENGTH);
+            previewChars += preview.getPreview().length();
+        }
+
+        System.out.printf("notes=%d full: %d chars, heap %d KB, %.2f ms | preview: %d chars, heap %d KB, %.2f ms%n",
+                NOTES, fullChars, fullHeap / 1024, fullNanos / 1e6, previewChars, previewHeap / 1024, previewNanos / 1e6);
+        assertEquals(full.size(), previews.size());
+        assertTrue(previewChars * 10 < fullChars);
+    }
+
+    private static long usedHeap () {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
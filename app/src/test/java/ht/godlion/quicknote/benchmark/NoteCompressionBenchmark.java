@@ -0,0 +1,129 @@
+package ht.godlion.quicknote.benchmark;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.model.Note;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Stores the same notes as plain text, the way every note was stored before, and through the
+ * entity, which compresses long ones, for several note-size mixes. Prints database size, write
+ * latency per note and full-note read latency for each.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NoteCompressionBenchmark {
+    private static final String DB_NAME = "compression-benchmark";
+    private static final int NOTES = 300;
+    /** Note sizes in characters, each mix drawn uniformly from its list. */
+    private static final int[][] MIXES = {
+            {200, 1_000},
+            {1_000, 8_000, 32_000},
+            {32_000, 128_000, 512_000},
+    };
+    private static final String[] MIX_NAMES = {"small", "mixed", "large logs"};
+
+    private Context context;
+    private NotesDB db;
+
+    @Before
+    public void setUp () {
+        context = RuntimeEnvironment.getApplication();
+    }
+
+    @After
+    public void tearDown () {
+        if (db != null) db.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void plainVersusCompressed () {
+        for (int m = 0; m < MIXES.length; m++) {
+            List<String> texts = texts(MIXES[m], new Random(m));
+            Result plain = run(texts, false);
+            Result compressed = run(texts, true);
+            System.out.println(String.format("%s: db %,d KB plain vs %,d KB compressed; write %.2f vs %.2f ms/note;"
+                            + " read %.2f vs %.2f ms/note", MIX_NAMES[m], plain.sizeBytes >> 10, compressed.sizeBytes >> 10,
+                    plain.writeNanos / 1e6, compressed.writeNanos / 1e6, plain.readNanos / 1e6, compressed.readNanos / 1e6));
+        }
+    }
+
+    private Result run ( List<String> texts, boolean compressed ) {
+        if (db != null) db.close();
+        context.deleteDatabase(DB_NAME);
+        db = Room.databaseBuilder(context, NotesDB.class, DB_NAME).allowMainThreadQueries().build();
+        NotesDao dao = db.notesDao();
+        SupportSQLiteDatabase sql = db.getOpenHelper().getWritableDatabase();
+        SupportSQLiteStatement insertPlain = sql.compileStatement("INSERT INTO notes (text, date, body) VALUES (?, ?, NULL)");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < texts.size(); i++) {
+            if (compressed) dao.insertNote(new Note(texts.get(i), i));
+            else {
+                insertPlain.bindString(1, texts.get(i));
+                insertPlain.bindLong(2, i);
+                insertPlain.executeInsert();
+            }
+        }
+        Result result = new Result();
+        result.writeNanos = (System.nanoTime() - start) / texts.size();
+
+        start = System.nanoTime();
+        for (int id = 1; id <= texts.size(); id++) assertEquals(texts.get(id - 1).length(), dao.getNoteById(id).getNoteText().length());
+        result.readNanos = (System.nanoTime() - start) / texts.size();
+
+        sql.execSQL("VACUUM");
+        result.sizeBytes = pragma("page_count") * pragma("page_size");
+        return result;
+    }
+
+    private long pragma ( String name ) {
+        try (Cursor cursor = db.query(new SimpleSQLiteQuery("PRAGMA " + name))) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+
+    /** Log-like lines with some free text, so compression ratios are realistic rather than ideal. */
+    private static List<String> texts ( int[] sizes, Random random ) {
+        List<String> texts = new ArrayList<>(NOTES);
+        for (int i = 0; i < NOTES; i++) {
+            int size = sizes[random.nextInt(sizes.length)];
+            StringBuilder text = new StringBuilder(size + 100);
+            while (text.length() < size) {
+                if (random.nextInt(4) == 0) text.append(NoteFixtures.randomText(random)).append('\n');
+                else text.append(String.format("2024-03-%02d %02d:%02d:%02d INFO [worker-%d] request %d served in %d ms%n",
+                        1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60),
+                        random.nextInt(8), random.nextInt(1_000_000), random.nextInt(500)));
+            }
+            texts.add(text.substring(0, size));
+        }
+        return texts;
+    }
+
+    private static final class Result {
+        long sizeBytes;
+        long writeNanos;
+        long readNanos;
+    }
+}
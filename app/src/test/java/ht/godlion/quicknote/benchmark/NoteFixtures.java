@@ -0,0 +1,52 @@
+package ht.godlion.quicknote.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.model.Note;
+
+/**
+ * Seeds synthetic notes for the benchmarks. Text sizes follow a skewed distribution: most notes are
+ * a sentence or two, some are a few paragraphs and a few are several kilobytes long.
+ */
+public final class NoteFixtures {
+    private static final String[] WORDS = {
+            "meeting", "groceries", "call", "idea", "project", "deadline", "review", "travel",
+            "book", "recipe", "budget", "doctor", "gift", "garden", "password", "release",
+            "draft", "invoice", "train", "weekend", "note", "list", "todo", "remember"
+    };
+    static final long START_DATE = 1_600_000_000_000L;
+
+    private NoteFixtures () {}
+
+    public static String randomText ( Random random ) {
+        int roll = random.nextInt(100);
+        int words = roll < 70 ? 5 + random.nextInt(30) : roll < 95 ? 50 + random.nextInt(200) : 500 + random.nextInt(1500);
+        StringBuilder text = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) text.append(i % 12 == 0 ? '\n' : ' ');
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    public static List<Note> randomNotes ( int count, Random random ) {
+        List<Note> notes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) notes.add(new Note(randomText(random), START_DATE + i * 60_000L));
+        return notes;
+    }
+
+    /**
+     * Inserts {@code count} synthetic notes in a single transaction.
+     */
+    public static void seed ( NotesDB db, int count, long seed ) {
+        NotesDao dao = db.notesDao();
+        Random random = new Random(seed);
+        db.runInTransaction(() -> {
+            for (int i = 0; i < count; i++) dao.insertNote(new Note(randomText(random), START_DATE + i * 60_000L));
+        });
+    }
+}
@@ -0,0 +1,120 @@
+package ht.godlion.quicknote.benchmark;
+
+import android.database.Cursor;
+
+import androidx.paging.PagedList;
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.db.NotesKeyedDataSource;
+import ht.godlion.quicknote.db.NotesRepository;
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NotePreview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares loading the whole table with {@code getNotes()} against building the paged list used by
+ * the list screen, from 100 to 100k notes. The paged list should keep both the retained heap and the
+ * time to the first page flat while the full load grows with the table. Also compares loading a
+ * page deep in the list with a keyset cursor against LIMIT/OFFSET.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PagedListBenchmark {
+    private static final int[] SIZES = {100, 1_000, 10_000, 100_000};
+    private static final PagedList.Config CONFIG = new PagedList.Config.Builder()
+            .setPageSize(NotesRepository.PAGE_SIZE)
+            .setInitialLoadSizeHint(NotesRepository.PAGE_SIZE * 2)
+            .setEnablePlaceholders(false)
+            .build();
+
+    private NotesDB db;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void pagedListStaysFlat () {
+        int seeded = 0;
+        long pagedHeapAtLargest = 0, fullHeapAtLargest = 0;
+        for (int size : SIZES) {
+            NoteFixtures.seed(db, size - seeded, size);
+            seeded = size;
+
+            long before = usedHeap();
+            long start = System.nanoTime();
+            PagedList<NotePreview> paged = new PagedList.Builder<>(
+                    new NotesKeyedDataSource.Factory(db.notesDao(), db.getInvalidationTracker()).create(), CONFIG)
+                    .setFetchExecutor(Runnable::run)
+                    .setNotifyExecutor(Runnable::run)
+                    .build();
+            long pagedNanos = System.nanoTime() - start;
+            long pagedHeap = usedHeap() - before;
+
+            before = usedHeap();
+            start = System.nanoTime();
+            List<Note> full = db.notesDao().getNotes();
+            long fullNanos = System.nanoTime() - start;
+            long fullHeap = usedHeap() - before;
+
+            System.out.printf("notes=%d paged: first page %.2f ms, heap %d KB | full: %.2f ms, heap %d KB (%d rows)%n",
+                    size, pagedNanos / 1e6, pagedHeap / 1024, fullNanos / 1e6, fullHeap / 1024, full.size());
+            assertEquals(Math.min(size, NotesRepository.PAGE_SIZE * 2), paged.size());
+            pagedHeapAtLargest = pagedHeap;
+            fullHeapAtLargest = fullHeap;
+        }
+        assertTrue(pagedHeapAtLargest < fullHeapAtLargest);
+    }
+
+    @Test
+    public void keysetPageCostIsFlatWithDepth () {
+        int size = SIZES[SIZES.length - 1];
+        NoteFixtures.seed(db, size, size);
+        NotesDao dao = db.notesDao();
+        for (int depth : new int[]{0, 1_000, 10_000, 90_000}) {
+            NotePreview cursor = dao.getNotesBefore(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, depth + 1).get(depth);
+
+            long start = System.nanoTime();
+            List<NotePreview> keyset = dao.getNotesBefore(Long.MIN_VALUE, cursor.getNoteDate(), cursor.getId(), NotesRepository.PAGE_SIZE);
+            long keysetNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int offsetRows;
+            try (Cursor offset = db.query(new SimpleSQLiteQuery("SELECT * FROM notes ORDER BY date DESC, id DESC LIMIT "
+                    + NotesRepository.PAGE_SIZE + " OFFSET " + (depth + 1)))) {
+                offsetRows = offset.getCount();
+            }
+            long offsetNanos = System.nanoTime() - start;
+
+            assertEquals(offsetRows, keyset.size());
+            System.out.printf("depth=%d keyset page: %.3f ms | offset page: %.3f ms%n", depth, keysetNanos / 1e6, offsetNanos / 1e6);
+        }
+    }
+
+    private static long usedHeap () {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
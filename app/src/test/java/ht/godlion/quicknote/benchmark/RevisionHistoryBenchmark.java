@@ -0,0 +1,109 @@
+package ht.godlion.quicknote.benchmark;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import android.database.Cursor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.history.NoteHistory;
+import ht.godlion.quicknote.model.Note;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Saves notes of a few sizes hundreds of times with small local edits, the way autosave does, and
+ * compares the bytes stored in the revision table with what keeping a full copy per save would
+ * take. Then times rebuilding revisions spread over the history.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RevisionHistoryBenchmark {
+    private static final int[] NOTE_SIZES = {1_000, 10_000, 100_000};
+    private static final int EDITS = 500;
+
+    private NotesDB db;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class).allowMainThreadQueries().build();
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void storageAndRebuildLatency () {
+        NotesDao dao = db.notesDao();
+        Random random = new Random(3);
+        for (int size : NOTE_SIZES) {
+            StringBuilder seed = new StringBuilder(size);
+            while (seed.length() < size) seed.append(NoteFixtures.randomText(random)).append('\n');
+            String text = seed.substring(0, size);
+            int noteId = (int) dao.insertNote(new Note(text, 0L));
+
+            List<String> versions = new ArrayList<>(EDITS + 1);
+            versions.add(text);
+            long fullCopyBytes = text.getBytes(StandardCharsets.UTF_8).length;
+            long start = System.nanoTime();
+            for (int i = 1; i <= EDITS; i++) {
+                text = edit(text, random);
+                Note note = new Note(text, i);
+                note.setId(noteId);
+                dao.updateNoteWithHistory(note);
+                versions.add(text);
+                fullCopyBytes += text.getBytes(StandardCharsets.UTF_8).length;
+            }
+            long saveNanos = (System.nanoTime() - start) / EDITS;
+            long storedBytes = storedBytes(noteId);
+
+            int rebuilds = 0;
+            long rebuildNanos = 0;
+            long worstNanos = 0;
+            for (int number = 1; number <= versions.size(); number += 7) {
+                long begin = System.nanoTime();
+                String rebuilt = NoteHistory.rebuild(dao.getRevisionChain(noteId, number));
+                long elapsed = System.nanoTime() - begin;
+                assertEquals(versions.get(number - 1), rebuilt);
+                rebuildNanos += elapsed;
+                worstNanos = Math.max(worstNanos, elapsed);
+                rebuilds++;
+            }
+
+            System.out.println(String.format("%,d-char note, %d saves: revisions %,d bytes vs %,d for full copies (%.1f%%);"
+                            + " save %.2f ms; rebuild avg %.2f ms, worst %.2f ms", size, EDITS, storedBytes, fullCopyBytes,
+                    100.0 * storedBytes / fullCopyBytes, saveNanos / 1e6, rebuildNanos / 1e6 / rebuilds, worstNanos / 1e6));
+            assertTrue(storedBytes * 5 < fullCopyBytes);
+        }
+    }
+
+    /** Replaces a few characters somewhere in the text with a few new words. */
+    private static String edit ( String text, Random random ) {
+        int start = random.nextInt(text.length());
+        int end = Math.min(text.length(), start + random.nextInt(12));
+        return text.substring(0, start) + " edit " + random.nextInt(1000) + text.substring(end);
+    }
+
+    private long storedBytes ( int noteId ) {
+        try (Cursor cursor = db.query(new SimpleSQLiteQuery(
+                "SELECT SUM(length(data)) FROM note_revisions WHERE note_id = ?", new Object[]{noteId}))) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+}
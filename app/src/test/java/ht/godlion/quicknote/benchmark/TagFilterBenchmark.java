@@ -0,0 +1,131 @@
+package ht.godlion.quicknote.benchmark;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.db.NotesRepository;
+import ht.godlion.quicknote.model.NotePreview;
+import ht.godlion.quicknote.model.NoteTag;
+import ht.godlion.quicknote.model.Tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Filters 100k notes filed under 1k tags, with tag popularity skewed so a few tags cover most notes
+ * and most tags only a handful. Times the first page of AND and OR filters, the filter counts and
+ * the tag counts, with the {@code (tag_id, note_id)} index and again after dropping it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TagFilterBenchmark {
+    private static final int NOTES = 100_000;
+    private static final int TAGS = 1_000;
+    private static final int MAX_TAGS_PER_NOTE = 5;
+    private static final int RUNS = 5;
+
+    private NotesDB db;
+    private NotesDao dao;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = db.notesDao();
+        NoteFixtures.seed(db, NOTES, NOTES);
+        Random random = new Random(TAGS);
+        db.runInTransaction(() -> {
+            for (int tag = 1; tag <= TAGS; tag++) dao.insertTag(new Tag("tag " + tag));
+            List<NoteTag> noteTags = new ArrayList<>();
+            for (int note = 1; note <= NOTES; note++) {
+                int count = random.nextInt(MAX_TAGS_PER_NOTE + 1);
+                for (int i = 0; i < count; i++) noteTags.add(new NoteTag(note, skewedTag(random)));
+                if (noteTags.size() >= 10_000) {
+                    dao.insertNoteTags(noteTags);
+                    noteTags.clear();
+                }
+            }
+            dao.insertNoteTags(noteTags);
+        });
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void tagFiltersWithAndWithoutIndex () {
+        assertTrue(plan("SELECT note_id FROM note_tags WHERE tag_id IN (1, 2)").contains("index_note_tags_tag_id_note_id"));
+        List<Long> indexed = run("indexed");
+        db.getOpenHelper().getWritableDatabase().execSQL("DROP INDEX index_note_tags_tag_id_note_id");
+        List<Long> unindexed = run("no tag index");
+        assertEquals(indexed, unindexed);
+    }
+
+    /**
+     * Runs every query and returns a checksum of each result so both runs can be compared.
+     */
+    private List<Long> run ( String label ) {
+        List<Integer> popular = Arrays.asList(1, 2);
+        List<Integer> rare = Collections.singletonList(TAGS - 1);
+        List<Integer> mixed = Arrays.asList(1, 50, TAGS - 1);
+        int page = NotesRepository.PAGE_SIZE;
+        List<Long> checksums = new ArrayList<>();
+        checksums.add(time(label, "tag counts", () -> (long) dao.getTagCounts().get(0).getNoteCount()));
+        checksums.add(time(label, "OR popular page", () -> firstId(dao.getNotesWithTags(popular, false, Long.MAX_VALUE, Integer.MAX_VALUE, page))));
+        checksums.add(time(label, "AND popular page", () -> firstId(dao.getNotesWithTags(popular, true, Long.MAX_VALUE, Integer.MAX_VALUE, page))));
+        checksums.add(time(label, "OR rare page", () -> firstId(dao.getNotesWithTags(rare, false, Long.MAX_VALUE, Integer.MAX_VALUE, page))));
+        checksums.add(time(label, "OR mixed page", () -> firstId(dao.getNotesWithTags(mixed, false, Long.MAX_VALUE, Integer.MAX_VALUE, page))));
+        checksums.add(time(label, "OR popular count", () -> (long) dao.countNotesWithTags(popular, false)));
+        checksums.add(time(label, "AND popular count", () -> (long) dao.countNotesWithTags(popular, true)));
+        return checksums;
+    }
+
+    private static long time ( String label, String query, Supplier<Long> work ) {
+        long result = work.get();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            work.get();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%s %s: %.3f ms (result %d)%n", label, query, best / 1e6, result);
+        return result;
+    }
+
+    private static long firstId ( List<NotePreview> notes ) {
+        return notes.isEmpty() ? -1 : notes.get(0).getId() * 31L + notes.size();
+    }
+
+    /** Picks tag {@code t} with a probability roughly proportional to 1/t, from 1 to {@code TAGS - 1}. */
+    private static int skewedTag ( Random random ) {
+        return Math.max(1, (int) Math.exp(random.nextDouble() * Math.log(TAGS)));
+    }
+
+    private String plan ( String sql ) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.query(new SimpleSQLiteQuery("EXPLAIN QUERY PLAN " + sql))) {
+            while (cursor.moveToNext()) plan.append(cursor.getString(cursor.getColumnCount() - 1)).append('\n');
+        }
+        return plan.toString();
+    }
+}
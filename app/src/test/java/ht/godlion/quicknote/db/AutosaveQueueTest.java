@@ -0,0 +1,90 @@
+package ht.godlion.quicknote.db;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import ht.godlion.quicknote.model.Note;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link AutosaveQueue} writes only the latest version of each draft, inserts a new
+ * note once and updates it afterwards. The write lane is a queue drained by hand.
+ */
+public class AutosaveQueueTest {
+    private final Queue<Runnable> writeLane = new ArrayDeque<>();
+    private final List<String> writes = new ArrayList<>();
+    private AutosaveQueue queue;
+
+    @Before
+    public void setUp () {
+        NotesDao dao = (NotesDao) Proxy.newProxyInstance(NotesDao.class.getClassLoader(),
+                new Class<?>[]{NotesDao.class}, (proxy, method, args) -> {
+                    Note note = (Note) args[0];
+                    writes.add(method.getName() + " " + note.getId() + " " + note.getNoteText());
+                    return method.getName().equals("insertNote") ? 42L : null;
+                });
+        queue = new AutosaveQueue(dao, writeLane::add);
+    }
+
+    @Test
+    public void versionsSubmittedBeforeTheWriteRunsAreCoalesced () {
+        AutosaveQueue.Draft draft = new AutosaveQueue.Draft(7);
+        for (int i = 1; i <= 100; i++) queue.submit(draft, "version " + i, i);
+
+        assertEquals(1, writeLane.size());
+        drain();
+        assertEquals(1, writes.size());
+        assertEquals("updateNoteWithHistory 7 version 100", writes.get(0));
+        assertEquals(100, queue.getSubmitCount());
+        assertEquals(99, queue.getCoalesceCount());
+        assertEquals(1, queue.getWriteCount());
+    }
+
+    @Test
+    public void newNoteIsInsertedOnceThenUpdated () {
+        AutosaveQueue.Draft draft = new AutosaveQueue.Draft(0);
+        queue.submit(draft, "first", 1);
+        drain();
+        assertEquals(42, draft.getNoteId());
+        queue.submit(draft, "second", 2);
+        drain();
+
+        assertEquals("insertNote 0 first", writes.get(0));
+        assertEquals("updateNoteWithHistory 42 second", writes.get(1));
+    }
+
+    @Test
+    public void draftsAreQueuedSeparately () {
+        AutosaveQueue.Draft first = new AutosaveQueue.Draft(1);
+        AutosaveQueue.Draft second = new AutosaveQueue.Draft(2);
+        queue.submit(first, "a", 1);
+        queue.submit(second, "b", 1);
+        queue.submit(first, "c", 2);
+        drain();
+
+        assertEquals(2, writes.size());
+        assertTrue(writes.contains("updateNoteWithHistory 1 c"));
+        assertTrue(writes.contains("updateNoteWithHistory 2 b"));
+    }
+
+    @Test
+    public void flushRunsAfterQueuedWrites () {
+        queue.submit(new AutosaveQueue.Draft(3), "text", 1);
+        queue.flush(() -> writes.add("flushed"));
+        drain();
+
+        assertEquals("flushed", writes.get(writes.size() - 1));
+    }
+
+    private void drain () {
+        Runnable task;
+        while ((task = writeLane.poll()) != null) task.run();
+    }
+}
@@ -0,0 +1,152 @@
+package ht.godlion.quicknote.db;
+
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ht.godlion.quicknote.backup.NotesBackup;
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NoteChunk;
+import ht.godlion.quicknote.text.ChunkedText;
+import ht.godlion.quicknote.utils.NoteCodec;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that large notes are stored in chunks, that an edit rewrites only the chunks it touches,
+ * and that the whole text can be put back together.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LargeNoteTest {
+    private NotesDB db;
+    private NotesDao dao;
+    private String large;
+    private int id;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class).allowMainThreadQueries().build();
+        dao = db.notesDao();
+        large = text(ChunkedText.LARGE_NOTE_LENGTH + 12_345);
+        id = (int) dao.insertNote(new Note("small", 1000L));
+        Note note = new Note(large, 2000L);
+        note.setId(id);
+        dao.updateNoteWithHistory(note);
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void largeTextIsStoredInChunks () {
+        Note note = dao.getNoteById(id);
+        assertTrue(note.isChunked());
+        assertNull(note.getBody());
+        assertEquals(NoteCodec.searchablePrefix(large), note.getNoteText());
+        assertEquals(2000L, note.getNoteDate());
+        assertTrue(dao.getChunkLayout(id).size() > 1);
+        assertEquals(large, String.join("", dao.getChunkTexts(id)));
+        assertEquals(0, dao.getLatestRevisionNumber(id));
+    }
+
+    @Test
+    public void editRewritesOnlyTheChunksItTouches () {
+        ChunkedText text = dao.openChunkedText(id);
+        assertEquals(large.length(), text.length());
+        int at = large.length() / 2;
+        load(text, at, at + 10);
+        assertEquals(1, text.getLoadedChunkCount());
+
+        text.replace(at, at + 10, "edited");
+        ChunkedText.Changes changes = text.takeChanges(3000L);
+        assertEquals(1, changes.getWrittenOrds().length);
+        assertNull(changes.getPrefix());
+        dao.saveChunks(id, changes);
+
+        String expected = large.substring(0, at) + "edited" + large.substring(at + 10);
+        assertEquals(expected, String.join("", dao.getChunkTexts(id)));
+        assertEquals(2000L, dao.getNoteById(id).getNoteDate());
+    }
+
+    @Test
+    public void editAtTheStartUpdatesThePrefixAndDate () {
+        ChunkedText text = dao.openChunkedText(id);
+        load(text, 0, 1);
+        text.replace(0, 0, "Title\n");
+        dao.saveChunks(id, text.takeChanges(3000L));
+
+        Note note = dao.getNoteById(id);
+        assertTrue(note.getNoteText().startsWith("Title\n"));
+        assertEquals(3000L, note.getNoteDate());
+        assertEquals("Title\n" + large, String.join("", dao.getChunkTexts(id)));
+    }
+
+    @Test
+    public void wordsPastThePrefixAreSearchable () {
+        String lines = large.substring(0, large.lastIndexOf('\n'));
+        String lastNumber = lines.substring(lines.lastIndexOf(' ') + 1);
+        assertFalse(NoteCodec.searchablePrefix(large).contains(lastNumber));
+        assertEquals(1, dao.matchNotes(lastNumber, 10).size());
+
+        ChunkedText text = dao.openChunkedText(id);
+        int at = large.length() / 2;
+        load(text, at, at + 1);
+        text.replace(at, at, "\nquince\n");
+        dao.saveChunks(id, text.takeChanges(3000L));
+        assertEquals(1, dao.matchNotes("quince", 10).size());
+        assertEquals(1, dao.matchNotes(lastNumber, 10).size());
+    }
+
+    @Test
+    public void noteThatBecomesShortIsStoredWholeAgain () {
+        Note note = new Note("short again", 3000L);
+        note.setId(id);
+        dao.updateNoteWithHistory(note);
+
+        Note stored = dao.getNoteById(id);
+        assertFalse(stored.isChunked());
+        assertEquals("short again", stored.getNoteText());
+        assertTrue(dao.getChunkLayout(id).isEmpty());
+    }
+
+    @Test
+    public void exportWritesTheWholeText () throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, NotesBackup.exportNotes(dao, out, true));
+        assertEquals(1, NotesBackup.importNotes(dao, new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(large, dao.getNoteById(id + 1).getNoteText());
+    }
+
+    @Test
+    public void deletingTheNoteDeletesItsChunks () {
+        dao.deleteNotesById(Collections.singletonList(id));
+        assertTrue(dao.getChunkLayout(id).isEmpty());
+    }
+
+    private void load ( ChunkedText text, int start, int end ) {
+        List<Long> ords = new ArrayList<>();
+        for (long ord : text.getMissingOrds(start, end)) ords.add(ord);
+        for (NoteChunk chunk : dao.getChunks(id, ords)) text.fill(chunk.getOrd(), chunk.getText());
+    }
+
+    private static String text ( int length ) {
+        StringBuilder text = new StringBuilder(length);
+        for (int line = 0; text.length() < length; line++) text.append("line ").append(line).append('\n');
+        text.setLength(length);
+        return text.toString();
+    }
+}
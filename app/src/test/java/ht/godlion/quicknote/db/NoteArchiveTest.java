@@ -0,0 +1,213 @@
+package ht.godlion.quicknote.db;
+
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ht.godlion.quicknote.history.NoteHistory;
+import ht.godlion.quicknote.model.ArchivedNote;
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.Tag;
+import ht.godlion.quicknote.text.ChunkedText;
+import ht.godlion.quicknote.utils.AppExecutors;
+import ht.godlion.quicknote.utils.NoteCodec;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link NoteArchiver} moves old notes out of {@code notes} in bounded passes, that
+ * archived notes stay searchable, and that restoring one puts it back as it was.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NoteArchiveTest {
+    private static final int OLD_NOTES = 120;
+    private static final int RECENT_NOTES = 30;
+    private static final long CUTOFF = 1_000_000L;
+
+    private NotesDB db;
+    private NotesDao dao;
+    private NoteArchiver archiver;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class).allowMainThreadQueries().build();
+        dao = db.notesDao();
+        archiver = new NoteArchiver(dao);
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < OLD_NOTES; i++) notes.add(new Note("old note " + i + (i % 3 == 0 ? " garden" : ""), 1000L + i));
+        for (int i = 0; i < RECENT_NOTES; i++) notes.add(new Note("recent note " + i + " garden", CUTOFF + i));
+        dao.insertNotes(notes);
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void onlyNotesOlderThanTheCutoffAreArchived () {
+        NoteArchiver.Pass pass = archiver.runPass(CUTOFF, Long.MAX_VALUE);
+        assertTrue(pass.isFinished());
+        assertEquals(OLD_NOTES, pass.getArchivedIds().size());
+        assertEquals(RECENT_NOTES, dao.countNotes());
+        assertEquals(OLD_NOTES, dao.countArchivedNotes());
+        assertNull(dao.getNoteById(pass.getArchivedIds().get(0)));
+        assertTrue(archiver.runPass(CUTOFF, Long.MAX_VALUE).getArchivedIds().isEmpty());
+    }
+
+    @Test
+    public void eachPassWithoutBudgetArchivesOneBatch () {
+        int passes = 0;
+        NoteArchiver.Pass pass;
+        do {
+            pass = archiver.runPass(CUTOFF, 0);
+            assertTrue(pass.getArchivedIds().size() <= NoteArchiver.BATCH_SIZE);
+            passes++;
+        } while (!pass.isFinished());
+        assertEquals(OLD_NOTES / NoteArchiver.BATCH_SIZE + 1, passes);
+        assertEquals(RECENT_NOTES, dao.countNotes());
+    }
+
+    @Test
+    public void oldestNotesAreArchivedFirst () {
+        List<Integer> ids = archiver.runPass(CUTOFF, 0).getArchivedIds();
+        for (int i = 0; i < ids.size(); i++) assertEquals(1000L + i, dao.getArchivedNote(ids.get(i)).getNoteDate());
+    }
+
+    @Test
+    public void archivedNotesAreSearchable () {
+        int oldMatches = dao.matchNotes("garden", 1000).size() - RECENT_NOTES;
+        archiver.runPass(CUTOFF, Long.MAX_VALUE);
+        assertEquals(RECENT_NOTES, dao.matchNotes("garden", 1000).size());
+        assertEquals(oldMatches, dao.searchArchivedNotes("garden", 1000).size());
+        assertEquals(0, dao.searchArchivedNotes("recent", 1000).size());
+        assertTrue(dao.getArchivedNotesBefore(Long.MAX_VALUE, Integer.MAX_VALUE, 10).get(0).getPreview().startsWith("old note 119"));
+    }
+
+    @Test
+    public void wordsPastTheStoredPrefixOfAnArchivedNoteAreSearchable () {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 4 * NoteCodec.SEARCHABLE_PREFIX) text.append("long archived line ").append(text.length()).append('\n');
+        int id = (int) dao.insertNote(new Note(text + "quince", 1L));
+        assertEquals(Collections.singletonList(id), dao.archiveNotes(Collections.singletonList(id), 2L));
+        assertNotNull(dao.getArchivedNote(id).getBody());
+
+        assertEquals(1, dao.searchArchivedNotes("quince", 10).size());
+        dao.restoreArchivedNotes(Collections.singletonList(id), 3L);
+        assertEquals(0, dao.searchArchivedNotes("quince", 10).size());
+        assertEquals(1, dao.matchNotes("quince", 10).size());
+    }
+
+    @Test
+    public void restoredNoteKeepsItsIdTextAndTags () {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 20_000) text.append("a long and repetitive note. ");
+        int id = (int) dao.insertNote(new Note(text.toString(), 500L));
+        dao.tagNote(id, Arrays.asList("work", "home"));
+        archiver.runPass(CUTOFF, Long.MAX_VALUE);
+
+        ArchivedNote archived = dao.getArchivedNote(id);
+        assertNotNull(archived.getBody());
+        assertTrue(archived.getBody().length < text.length() / 10);
+        assertTrue(dao.getTagsForNote(id).isEmpty());
+
+        assertEquals(1, dao.restoreArchivedNotes(Collections.singletonList(id), 2_000_000L));
+        Note restored = dao.getNoteById(id);
+        assertEquals(text.toString(), restored.getNoteText());
+        assertEquals(500L, restored.getNoteDate());
+        List<String> tags = new ArrayList<>();
+        for (Tag tag : dao.getTagsForNote(id)) tags.add(tag.getName());
+        assertEquals(Arrays.asList("home", "work"), tags);
+        assertNull(dao.getArchivedNote(id));
+        assertEquals(OLD_NOTES, dao.countArchivedNotes());
+    }
+
+    @Test
+    public void restoredNoteIsNotArchivedAgainUntilTheCutoffPassesIt () {
+        int id = archiver.runPass(CUTOFF, Long.MAX_VALUE).getArchivedIds().get(0);
+        dao.restoreArchivedNotes(Collections.singletonList(id), 2_000_000L);
+        assertTrue(archiver.runPass(CUTOFF, Long.MAX_VALUE).getArchivedIds().isEmpty());
+        assertEquals(id, (int) archiver.runPass(3_000_000L, Long.MAX_VALUE).getArchivedIds().get(0));
+    }
+
+    @Test
+    public void archivingEverythingRunsABatchPerWriteTask () {
+        Queue<Runnable> writes = new ArrayDeque<>();
+        NotesRepository repository = new NotesRepository(dao, null, new AppExecutors(Runnable::run, writes::add, Runnable::run));
+        AtomicInteger archived = new AtomicInteger(-1);
+        repository.archiveNotesExcept(new int[]{OLD_NOTES + 1}, archived::set);
+        AtomicInteger savedAfterTask = new AtomicInteger();
+        AtomicInteger tasks = new AtomicInteger();
+        repository.updateNote(dao.getNoteById(OLD_NOTES + 2), () -> savedAfterTask.set(tasks.get()));
+
+        while (!writes.isEmpty()) {
+            writes.poll().run();
+            tasks.incrementAndGet();
+        }
+        assertEquals(OLD_NOTES + RECENT_NOTES - 1, archived.get());
+        assertEquals((OLD_NOTES + RECENT_NOTES) / NoteArchiver.BATCH_SIZE + 2, tasks.get());
+        assertEquals(1, savedAfterTask.get());
+        assertEquals(1, dao.countNotes());
+    }
+
+    @Test
+    public void historyIsArchivedAndRestoredWithTheNote () {
+        Note edited = dao.getNoteById(1);
+        edited.setNoteText("old note 0, edited");
+        dao.updateNoteWithHistory(edited);
+
+        assertTrue(archiver.runPass(CUTOFF, Long.MAX_VALUE).getArchivedIds().contains(1));
+        assertTrue(dao.getRevisions(1).isEmpty());
+        assertEquals(1, dao.restoreArchivedNotes(Collections.singletonList(1), CUTOFF));
+        assertEquals(2, dao.getRevisions(1).size());
+        assertEquals("old note 0 garden", NoteHistory.rebuild(dao.getRevisionChain(1, 1)));
+
+        Note again = dao.getNoteById(1);
+        again.setNoteText("old note 0, edited twice");
+        dao.updateNoteWithHistory(again);
+        assertEquals(3, dao.getLatestRevisionNumber(1));
+        assertEquals("old note 0, edited twice", NoteHistory.rebuild(dao.getRevisionChain(1, 3)));
+    }
+
+    @Test
+    public void editOfANoteArchivedWhileOpenRestoresIt () {
+        Note open = dao.getNoteById(1);
+        archiver.runPass(CUTOFF, Long.MAX_VALUE);
+        assertNull(dao.getNoteById(1));
+
+        open.setNoteText("edited after it was archived");
+        open.setNoteDate(CUTOFF + 100);
+        dao.updateNoteWithHistory(open);
+        assertEquals("edited after it was archived", dao.getNoteById(1).getNoteText());
+        assertNull(dao.getArchivedNote(1));
+        assertEquals(OLD_NOTES - 1, dao.countArchivedNotes());
+    }
+
+    @Test
+    public void chunkedNotesStayInTheNoteTable () {
+        int id = (int) dao.insertNote(new Note("small", 700L));
+        StringBuilder text = new StringBuilder();
+        while (text.length() <= ChunkedText.LARGE_NOTE_LENGTH) text.append("chunked text ");
+        Note large = new Note(text.toString(), 800L);
+        large.setId(id);
+        dao.updateNoteWithHistory(large);
+
+        archiver.runPass(CUTOFF, Long.MAX_VALUE);
+        assertTrue(dao.getNoteById(id).isChunked());
+        assertNull(dao.getArchivedNote(id));
+        assertEquals(RECENT_NOTES + 1, dao.countNotes());
+    }
+}
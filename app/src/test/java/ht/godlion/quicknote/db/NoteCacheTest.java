@@ -0,0 +1,91 @@
+package ht.godlion.quicknote.db;
+
+import org.junit.Test;
+
+import ht.godlion.quicknote.model.Note;
+
+import static org.junit.Assert.*;
+
+public class NoteCacheTest {
+
+    @Test
+    public void hitsReturnCopiesAndCountersAdd () {
+        NoteCache cache = new NoteCache(1_000);
+        cache.put(note(1, "one"));
+
+        Note hit = cache.get(1);
+        assertEquals("one", hit.getNoteText());
+        hit.setNoteText("changed by caller");
+        assertEquals("one", cache.get(1).getNoteText());
+        assertNull(cache.get(2));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void boundedByTextSizeEvictingLeastRecentlyUsed () {
+        long noteBytes = NoteCache.weigh(note(0, "0123456789"));
+        NoteCache cache = new NoteCache(noteBytes * 3);
+        cache.put(note(1, "0123456789"));
+        cache.put(note(2, "0123456789"));
+        cache.put(note(3, "0123456789"));
+        cache.get(1);
+        cache.put(note(4, "0123456789"));
+
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(1));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(noteBytes * 3, cache.getSizeBytes());
+
+        cache.put(note(5, repeat('x', 3 * (int) noteBytes)));
+        assertNull(cache.get(5));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void largeNoteEvictsSeveralSmallOnes () {
+        NoteCache cache = new NoteCache(NoteCache.weigh(note(0, repeat('x', 100))));
+        for (int id = 1; id <= 5; id++) cache.put(note(id, "small"));
+        cache.put(note(9, repeat('x', 100)));
+
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get(9));
+    }
+
+    @Test
+    public void writeThroughReplacesAndRemoves () {
+        NoteCache cache = new NoteCache(10_000);
+        cache.put(note(1, "old"));
+        cache.put(note(1, "new text"));
+        assertEquals("new text", cache.get(1).getNoteText());
+        assertEquals(NoteCache.weigh(note(1, "new text")), cache.getSizeBytes());
+
+        cache.remove(1);
+        assertNull(cache.get(1));
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    public void loadStartedBeforeAWriteIsNotCached () {
+        NoteCache cache = new NoteCache(10_000);
+        int version = cache.getVersion();
+        cache.put(note(1, "written"));
+        cache.putLoaded(note(1, "stale"), version);
+        assertEquals("written", cache.get(1).getNoteText());
+
+        cache.putLoaded(note(2, "fresh"), cache.getVersion());
+        assertEquals("fresh", cache.get(2).getNoteText());
+    }
+
+    private static Note note ( int id, String text ) {
+        Note note = new Note(text, id);
+        note.setId(id);
+        return note;
+    }
+
+    private static String repeat ( char c, int count ) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) builder.append(c);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package ht.godlion.quicknote.db;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Collections;
+import java.util.List;
+
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NotePreview;
+import ht.godlion.quicknote.utils.NoteCodec;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that long notes are stored compressed with a plain searchable prefix, read back whole, and
+ * that list previews and search keep working on them.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NoteCompressionTest {
+    private NotesDB db;
+    private NotesDao dao;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class).allowMainThreadQueries().build();
+        dao = db.notesDao();
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void longNoteIsStoredCompressedAndReadWhole () {
+        String text = "kiwi " + logLines(2_000);
+        int id = (int) dao.insertNote(new Note(text, 1L));
+
+        assertEquals(NoteCodec.SEARCHABLE_PREFIX, storedTextLength(id));
+        assertTrue(bodyLength(id) > 0);
+        assertEquals(text, dao.getNoteById(id).getNoteText());
+        List<NotePreview> previews = dao.getNotesBefore(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, 10);
+        assertEquals(text.substring(0, NotePreview.PREVIEW_LENGTH), previews.get(0).getPreview());
+        assertEquals(1, dao.matchNotes("kiwi", 10).size());
+    }
+
+    @Test
+    public void wordsPastTheStoredPrefixAreSearchable () {
+        int id = (int) dao.insertNote(new Note(logLines(2_000) + " mango", 1L));
+        assertEquals(NoteCodec.SEARCHABLE_PREFIX, storedTextLength(id));
+        assertEquals(1, dao.matchNotes("mango", 10).size());
+
+        Note note = dao.getNoteById(id);
+        note.setNoteText(logLines(2_000) + " papaya");
+        dao.updateNoteWithHistory(note);
+        assertEquals(0, dao.matchNotes("mango", 10).size());
+        assertEquals(1, dao.matchNotes("papaya", 10).size());
+
+        dao.deleteNotesById(Collections.singletonList(id));
+        assertEquals(0, dao.matchNotes("papaya", 10).size());
+        assertEquals(0, queryLong("SELECT count(*) FROM notes_fts"));
+    }
+
+    @Test
+    public void shortNoteStaysPlain () {
+        int id = (int) dao.insertNote(new Note("short note", 1L));
+        assertEquals("short note".length(), storedTextLength(id));
+        assertEquals(0, bodyLength(id));
+    }
+
+    @Test
+    public void shorteningALongNoteDropsItsBody () {
+        int id = (int) dao.insertNote(new Note(logLines(2_000), 1L));
+        Note note = dao.getNoteById(id);
+        note.setNoteText("now short");
+        dao.updateNoteWithHistory(note);
+
+        assertEquals(0, bodyLength(id));
+        assertEquals("now short", dao.getNoteById(id).getNoteText());
+    }
+
+    private static String logLines ( int count ) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) text.append("12:00:").append(i % 60).append(" INFO request ").append(i).append(" served\n");
+        return text.toString();
+    }
+
+    private long storedTextLength ( int id ) {
+        return queryLong("SELECT length(text) FROM notes WHERE id = " + id);
+    }
+
+    private long bodyLength ( int id ) {
+        return queryLong("SELECT COALESCE(length(body), 0) FROM notes WHERE id = " + id);
+    }
+
+    private long queryLong ( String sql ) {
+        try (Cursor cursor = db.query(new SimpleSQLiteQuery(sql))) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ht.godlion.quicknote.db;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.search.SearchQuery;
+import ht.godlion.quicknote.search.SearchRanker;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a search ranks every matching note rather than only the newest ones.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NoteSearchTest {
+    private static final int NEWER_NOTES = NotesRepository.NARROW_LIMIT + 100;
+
+    private NotesDB db;
+    private NotesDao dao;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class).allowMainThreadQueries().build();
+        dao = db.notesDao();
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void oldBestMatchOutranksManyNewerWeakMatches () {
+        int best = (int) dao.insertNote(new Note("quince quince quince", 1L));
+        List<Note> newer = new ArrayList<>();
+        for (int i = 0; i < NEWER_NOTES; i++)
+            newer.add(new Note("a long line about the garden, the weather and one quince " + i, 1000L + i));
+        dao.insertNotes(newer);
+
+        List<Integer> ranked;
+        try (Cursor matches = dao.matchAllNotes(SearchQuery.toMatchExpression("quin"))) {
+            ranked = SearchRanker.rank(matches);
+        }
+        assertEquals(NEWER_NOTES + 1, ranked.size());
+        assertEquals(best, (int) ranked.get(0));
+    }
+}
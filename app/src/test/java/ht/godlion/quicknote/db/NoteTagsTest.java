@@ -0,0 +1,104 @@
+package ht.godlion.quicknote.db;
+
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NotePreview;
+import ht.godlion.quicknote.model.Tag;
+import ht.godlion.quicknote.model.TagCount;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks tagging, AND/OR tag filters with keyset paging, and the tag counts.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NoteTagsTest {
+    private NotesDB db;
+    private NotesDao dao;
+    private int work, home, urgent;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class).allowMainThreadQueries().build();
+        dao = db.notesDao();
+        // Notes 1..6: work on every note, home on even notes, urgent on notes 3 and 6.
+        for (int i = 1; i <= 6; i++) {
+            int id = (int) dao.insertNote(new Note("note " + i, i * 1000L));
+            dao.tagNote(id, Collections.singletonList("Work"));
+            if (i % 2 == 0) dao.tagNote(id, Collections.singletonList(" home "));
+            if (i % 3 == 0) dao.tagNote(id, Arrays.asList("URGENT", "work"));
+        }
+        work = dao.getTagByName("work").getId();
+        home = dao.getTagByName("home").getId();
+        urgent = dao.getTagByName("urgent").getId();
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void namesAreNormalizedAndTaggingIsIdempotent () {
+        assertEquals(3, dao.getTagCounts().size());
+        assertEquals(2, dao.getTagsForNote(3).size());
+        assertEquals(Arrays.asList("home", "urgent", "work"), names(dao.getTagsForNote(6)));
+    }
+
+    @Test
+    public void anyAndAllFilters () {
+        assertEquals(Arrays.asList(6, 4, 3, 2), ids(dao.getNotesWithTags(Arrays.asList(home, urgent), false, Long.MAX_VALUE, Integer.MAX_VALUE, 10)));
+        assertEquals(Collections.singletonList(6), ids(dao.getNotesWithTags(Arrays.asList(home, urgent), true, Long.MAX_VALUE, Integer.MAX_VALUE, 10)));
+        assertEquals(Arrays.asList(6, 4, 2), ids(dao.getNotesWithTags(Arrays.asList(home, home, work), true, Long.MAX_VALUE, Integer.MAX_VALUE, 10)));
+        assertEquals(4, dao.countNotesWithTags(Arrays.asList(home, urgent), false));
+        assertEquals(1, dao.countNotesWithTags(Arrays.asList(home, urgent), true));
+    }
+
+    @Test
+    public void filtersPageWithKeysetCursor () {
+        List<NotePreview> first = dao.getNotesWithTags(Collections.singletonList(work), false, Long.MAX_VALUE, Integer.MAX_VALUE, 4);
+        NotePreview last = first.get(first.size() - 1);
+        List<NotePreview> second = dao.getNotesWithTags(Collections.singletonList(work), false, last.getNoteDate(), last.getId(), 4);
+        assertEquals(Arrays.asList(6, 5, 4, 3), ids(first));
+        assertEquals(Arrays.asList(2, 1), ids(second));
+    }
+
+    @Test
+    public void countsComeFromSqlAndFollowDeletes () {
+        dao.deleteNoteById(6);
+        dao.untagNote(4, home);
+        int empty = dao.getOrCreateTagId("Empty");
+        for (TagCount count : dao.getTagCounts()) {
+            if (count.getId() == work) assertEquals(5, count.getNoteCount());
+            else if (count.getId() == home) assertEquals(1, count.getNoteCount());
+            else if (count.getId() == urgent) assertEquals(1, count.getNoteCount());
+            else assertEquals(empty, count.getId());
+        }
+        dao.deleteTag(urgent);
+        assertTrue(dao.getTagsForNote(3).stream().noneMatch(tag -> tag.getId() == urgent));
+    }
+
+    private static List<Integer> ids ( List<NotePreview> notes ) {
+        Integer[] ids = new Integer[notes.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = notes.get(i).getId();
+        return Arrays.asList(ids);
+    }
+
+    private static List<String> names ( List<Tag> tags ) {
+        String[] names = new String[tags.size()];
+        for (int i = 0; i < names.length; i++) names[i] = tags.get(i).getName();
+        return Arrays.asList(names);
+    }
+}
@@ -0,0 +1,156 @@
+package ht.godlion.quicknote.db;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.utils.AppExecutors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Inserts notes one transaction at a time on one thread while other threads keep reading, and
+ * checks that the database is in write-ahead-log mode, that reads keep completing while writes are
+ * in progress, that no read sees a partial state and that the median read stays within a generous
+ * bound.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NotesConcurrencyTest {
+    private static final String DB_NAME = "concurrency-test";
+    private static final int SEEDED = 1_000;
+    private static final int INSERTS = 2_000;
+    private static final int READERS = 2;
+    /** Median latency bounds, loose enough for a slow CI machine; a blocked reader blows past them. */
+    private static final long MAX_MEDIAN_LIST_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MAX_MEDIAN_BY_ID_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private Context context;
+    private AppExecutors executors;
+    private NotesDB db;
+
+    @Before
+    public void setUp () {
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(DB_NAME);
+        executors = new AppExecutors(Executors.newFixedThreadPool(2), Executors.newSingleThreadExecutor());
+        db = NotesDB.configure(Room.databaseBuilder(context, NotesDB.class, DB_NAME), executors)
+                .allowMainThreadQueries()
+                .build();
+        List<Note> notes = new ArrayList<>(SEEDED);
+        for (int i = 1; i <= SEEDED; i++) notes.add(new Note("seeded note " + i, i));
+        db.notesDao().insertNotes(notes);
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+        executors.shutdown();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void databaseUsesWriteAheadLog () {
+        try (Cursor cursor = db.query(new SimpleSQLiteQuery("PRAGMA journal_mode"))) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("wal", cursor.getString(0).toLowerCase());
+        }
+    }
+
+    @Test
+    public void readsCompleteWhileInsertsAreRunning () throws Exception {
+        NotesDao dao = db.notesDao();
+        ExecutorService threads = Executors.newFixedThreadPool(READERS + 1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<?> writer = threads.submit(() -> {
+                start.await();
+                try {
+                    for (int i = 1; i <= INSERTS; i++) dao.insertNote(new Note("inserted note " + i, SEEDED + i));
+                } finally {
+                    writing.set(false);
+                }
+                return null;
+            });
+            List<Future<long[]>> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; r++) {
+                int reader = r;
+                readers.add(threads.submit(() -> read(dao, reader, writing, start)));
+            }
+            start.countDown();
+
+            writer.get(60, TimeUnit.SECONDS);
+            List<Long> listNanos = new ArrayList<>();
+            List<Long> byIdNanos = new ArrayList<>();
+            for (Future<long[]> reader : readers) {
+                long[] samples = reader.get(60, TimeUnit.SECONDS);
+                for (int i = 0; i < samples.length; i += 2) {
+                    listNanos.add(samples[i]);
+                    byIdNanos.add(samples[i + 1]);
+                }
+            }
+
+            assertFalse("no read completed while inserts were running", listNanos.isEmpty());
+            assertEquals(SEEDED + INSERTS, dao.countNotes());
+            assertTrue("getNotes median too slow", percentile(listNanos, 50) < MAX_MEDIAN_LIST_NANOS);
+            assertTrue("getNoteById median too slow", percentile(byIdNanos, 50) < MAX_MEDIAN_BY_ID_NANOS);
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    /**
+     * Times getNotes and getNoteById back to back until the writer is done. Returns the latencies of
+     * each pair. Every seeded note must always be found and the list must never shrink.
+     */
+    private static long[] read ( NotesDao dao, int reader, AtomicBoolean writing, CountDownLatch start )
+            throws InterruptedException {
+        start.await();
+        long[] samples = new long[64];
+        int count = 0;
+        int lastSize = 0;
+        for (int i = reader; writing.get(); i++) {
+            long begin = System.nanoTime();
+            int size = dao.getNotes().size();
+            long listed = System.nanoTime();
+            Note note = dao.getNoteById(1 + i % SEEDED);
+            long fetched = System.nanoTime();
+
+            assertTrue(size >= lastSize && size >= SEEDED);
+            assertNotNull(note);
+            lastSize = size;
+            if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+            samples[count++] = listed - begin;
+            samples[count++] = fetched - listed;
+        }
+        return Arrays.copyOf(samples, count);
+    }
+
+    private static long percentile ( List<Long> values, int percentile ) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        int index = Math.max(0, (int) Math.ceil(sorted.size() * percentile / 100.0) - 1);
+        return sorted.get(index);
+    }
+}
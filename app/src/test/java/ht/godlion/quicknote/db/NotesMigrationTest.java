@@ -0,0 +1,143 @@
+package ht.godlion.quicknote.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Collections;
+import java.util.List;
+
+import ht.godlion.quicknote.model.NotePreview;
+
+import static org.junit.Assert.*;
+
+/**
+ * Opens a database written by version 1 of the app with the current {@link NotesDB} and checks that
+ * every note survives the migrations and that the new schema objects are in place.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NotesMigrationTest {
+    private static final String DB_NAME = "migration-test";
+    private static final int NOTES = 50;
+
+    private Context context;
+    private NotesDB db;
+
+    @Before
+    public void setUp () {
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(DB_NAME);
+        try (SQLiteDatabase v1 = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DB_NAME), null)) {
+            v1.execSQL("CREATE TABLE IF NOT EXISTS `notes` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `text` TEXT, `date` INTEGER NOT NULL)");
+            for (int i = 1; i <= NOTES; i++)
+                v1.execSQL("INSERT INTO notes (text, date) VALUES (?, ?)", new Object[]{"note " + i + (i % 2 == 0 ? " garden" : ""), i * 1000L});
+            v1.setVersion(1);
+        }
+        db = Room.databaseBuilder(context, NotesDB.class, DB_NAME)
+                .addMigrations(NotesDB.MIGRATIONS)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void notesSurviveMigration () {
+        NotesDao dao = db.notesDao();
+        assertEquals(NOTES, dao.countNotes());
+        assertEquals("note 7", dao.getNoteById(7).getNoteText());
+    }
+
+    @Test
+    public void existingNotesAreSearchable () {
+        assertEquals(NOTES / 2, db.notesDao().matchNotes("garden", 100).size());
+    }
+
+    @Test
+    public void searchIndexHoldsItsOwnText () {
+        assertEquals(0, count("SELECT count(*) FROM sqlite_master WHERE type = 'trigger' AND name LIKE '%notes_fts%'"));
+        assertEquals(NOTES, count("SELECT count(*) FROM notes_fts"));
+        db.notesDao().deleteNoteById(2);
+        assertEquals(NOTES / 2 - 1, db.notesDao().matchNotes("garden", 100).size());
+    }
+
+    @Test
+    public void dateIndexIsBuiltAndUsedByKeysetQueries () {
+        assertEquals(0, count("SELECT count(*) FROM sqlite_master WHERE type = 'index' AND name = 'index_notes_date'"));
+        assertEquals(1, count("SELECT count(*) FROM sqlite_master WHERE type = 'index' AND name = 'index_notes_deleted_at_date'"));
+        List<NotePreview> page = db.notesDao().getNotesBefore(Long.MIN_VALUE, 10_000L, 10, 3);
+        assertEquals(3, page.size());
+        assertEquals(9, page.get(0).getId());
+        assertEquals(7, page.get(2).getId());
+    }
+
+    @Test
+    public void revisionTableIsCreatedEmpty () {
+        assertEquals(1, count("SELECT count(*) FROM sqlite_master WHERE type = 'table' AND name = 'note_revisions'"));
+        assertEquals(0, db.notesDao().getLatestRevisionNumber(7));
+    }
+
+    @Test
+    public void existingNotesStayPlainText () {
+        assertEquals(0, count("SELECT count(*) FROM notes WHERE body IS NOT NULL"));
+        assertEquals("note 2 garden", db.notesDao().getNoteById(2).getNoteText());
+    }
+
+    @Test
+    public void existingNotesCanBeTagged () {
+        assertEquals(1, count("SELECT count(*) FROM sqlite_master WHERE type = 'index' AND name = 'index_note_tags_tag_id_note_id'"));
+        NotesDao dao = db.notesDao();
+        dao.tagNote(7, Collections.singletonList("Garden"));
+        assertEquals(1, dao.countNotesWithTags(Collections.singletonList(dao.getTagByName("garden").getId()), false));
+    }
+
+    @Test
+    public void existingNotesAreNotChunked () {
+        assertEquals(1, count("SELECT count(*) FROM sqlite_master WHERE type = 'table' AND name = 'note_chunks'"));
+        assertEquals(0, count("SELECT count(*) FROM notes WHERE chunked != 0"));
+        assertFalse(db.notesDao().getNoteById(7).isChunked());
+    }
+
+    @Test
+    public void existingNotesCanBeArchivedAndRestored () {
+        assertEquals(1, count("SELECT count(*) FROM sqlite_master WHERE type = 'table' AND name = 'archived_notes'"));
+        assertEquals(0, count("SELECT count(*) FROM notes WHERE restored_at != 0"));
+        NotesDao dao = db.notesDao();
+        assertEquals(NOTES, new NoteArchiver(dao).runPass(Long.MAX_VALUE, Long.MAX_VALUE).getArchivedIds().size());
+        assertEquals(NOTES / 2, dao.searchArchivedNotes("garden", 100).size());
+        assertEquals(1, dao.restoreArchivedNotes(Collections.singletonList(7), 1L));
+        assertEquals("note 7", dao.getNoteById(7).getNoteText());
+    }
+
+    @Test
+    public void existingNotesAreNotDeleted () {
+        assertEquals(0, count("SELECT count(*) FROM notes WHERE deleted_at != 0"));
+        NotesDao dao = db.notesDao();
+        dao.softDeleteNote(7, 1L);
+        assertNull(dao.getNoteById(7));
+        assertEquals(NOTES - 1, dao.countNotes());
+        assertEquals(1, dao.purgeDeletedNotes(2L, 10));
+        assertEquals(NOTES - 1, count("SELECT count(*) FROM notes"));
+    }
+
+    private long count ( String sql ) {
+        try (Cursor cursor = db.query(new SimpleSQLiteQuery(sql))) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ht.godlion.quicknote.db;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.utils.AppExecutors;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Checks that {@link NotesRepository} never calls {@link NotesDao} on the main looper thread and
+ * always delivers its results back on it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NotesRepositoryTest {
+    private final List<Thread> daoThreads = Collections.synchronizedList(new ArrayList<>());
+    private final List<Thread> callbackThreads = new ArrayList<>();
+    private final AtomicInteger callbacks = new AtomicInteger();
+    private AppExecutors executors;
+    private NotesRepository repository;
+
+    @Before
+    public void setUp () {
+        NotesDao dao = (NotesDao) Proxy.newProxyInstance(NotesDao.class.getClassLoader(),
+                new Class<?>[]{NotesDao.class}, (proxy, method, args) -> {
+                    daoThreads.add(Thread.currentThread());
+                    if (method.getReturnType() == long.class) return 0L;
+                    return method.getReturnType() == List.class ? new ArrayList<Note>() : null;
+                });
+        executors = new AppExecutors(Executors.newFixedThreadPool(2), Executors.newSingleThreadExecutor());
+        repository = new NotesRepository(dao, null, executors);
+    }
+
+    @After
+    public void tearDown () {
+        executors.shutdown();
+    }
+
+    @Test
+    public void daoCallsNeverRunOnLooperThread () throws InterruptedException {
+        Note note = new Note("text", 1L);
+        repository.getNotes(this::onCallback);
+        repository.getNoteById(1, this::onCallback);
+        repository.insertNote(note, () -> onCallback(null));
+        repository.updateNote(note, () -> onCallback(null));
+        repository.deleteNotes(Collections.singletonList(note), () -> onCallback(null));
+        repository.deleteNoteById(1, () -> onCallback(null));
+        repository.insertNotes(Collections.singletonList(note), () -> onCallback(null));
+        repository.updateNotes(Collections.singletonList(note), () -> onCallback(null));
+
+        awaitCallbacks(8);
+
+        Thread looperThread = Looper.getMainLooper().getThread();
+        assertEquals(8, daoThreads.size());
+        for (Thread thread : daoThreads) assertNotSame(looperThread, thread);
+        for (Thread thread : callbackThreads) assertSame(looperThread, thread);
+    }
+
+    private void onCallback ( Object result ) {
+        callbackThreads.add(Thread.currentThread());
+        callbacks.incrementAndGet();
+    }
+
+    private void awaitCallbacks ( int expected ) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (callbacks.get() < expected && System.nanoTime() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.sleep(5);
+        }
+        assertEquals(expected, callbacks.get());
+    }
+}
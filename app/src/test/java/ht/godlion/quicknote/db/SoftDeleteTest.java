@@ -0,0 +1,176 @@
+package ht.godlion.quicknote.db;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NotePreview;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that deleted notes are tombstones hidden from every query, that a delete can be undone,
+ * and that the purge removes expired tombstones for good, a batch at a time.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SoftDeleteTest {
+    private static final int NOTES = 20;
+
+    private NotesDB db;
+    private NotesDao dao;
+    private int work;
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class).allowMainThreadQueries().build();
+        dao = db.notesDao();
+        for (int i = 1; i <= NOTES; i++) {
+            int id = (int) dao.insertNote(new Note("note " + i + " garden", i * 1000L));
+            dao.tagNote(id, Collections.singletonList("work"));
+        }
+        work = dao.getTagByName("work").getId();
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void deletedNoteIsLeftOutOfEveryQuery () {
+        dao.softDeleteNote(NOTES, 5L);
+        List<Integer> tags = Collections.singletonList(work);
+
+        assertNull(dao.getNoteById(NOTES));
+        assertEquals(NOTES - 1, dao.countNotes());
+        assertEquals(NOTES - 1, dao.getNotes().size());
+        assertEquals(NOTES - 1, dao.getNotesBefore(0, Long.MAX_VALUE, Integer.MAX_VALUE, 100).size());
+        assertEquals(NOTES - 1, dao.getNotesBefore(0, Long.MAX_VALUE, Integer.MAX_VALUE, 1).get(0).getId());
+        assertEquals(NOTES - 1, dao.matchNotes("garden", 100).size());
+        assertEquals(NOTES - 1, dao.getTagCounts().get(0).getNoteCount());
+        assertEquals(NOTES - 1, dao.countNotesWithTags(tags, false));
+        assertEquals(NOTES - 1, dao.countNotesWithTags(tags, true));
+        assertEquals(NOTES - 1, dao.getNotesWithTags(tags, true, Long.MAX_VALUE, Integer.MAX_VALUE, 100).size());
+        assertFalse(dao.getArchivableNoteIds(Long.MAX_VALUE, 100).contains(NOTES));
+    }
+
+    @Test
+    public void undoBringsBackTheNotesOfThatDeleteOnly () {
+        dao.softDeleteNotesById(Arrays.asList(1, 2, 3), 10L);
+        dao.softDeleteNote(4, 11L);
+        assertEquals(NOTES - 4, dao.countNotes());
+
+        assertEquals(3, dao.undeleteNotes(10L));
+        assertEquals(NOTES - 1, dao.countNotes());
+        assertEquals("note 2 garden", dao.getNoteById(2).getNoteText());
+        assertNull(dao.getNoteById(4));
+        assertEquals(0, dao.undeleteNotes(10L));
+    }
+
+    @Test
+    public void deletedMatchesDoNotUseUpTheSearchLimit () {
+        List<Note> deleted = new ArrayList<>();
+        for (int i = 0; i < NotesDao.MAX_BATCH_SIZE + 100; i++) deleted.add(new Note("deleted garden", 50_000L + i));
+        dao.insertNotes(deleted);
+        List<Integer> ids = new ArrayList<>();
+        for (int id = NOTES + 1; id <= NOTES + deleted.size(); id++) ids.add(id);
+        dao.softDeleteNotesById(ids, 10L);
+
+        assertEquals(NOTES, dao.matchNotes("garden", NotesDao.MAX_BATCH_SIZE).size());
+        assertEquals(NOTES, dao.matchNotes("garden", NOTES).size());
+        assertEquals(NOTES, count("SELECT count(*) FROM notes_fts"));
+
+        dao.undeleteNotes(10L);
+        assertEquals(deleted.size(), dao.matchNotes("deleted", Integer.MAX_VALUE).size());
+        assertEquals(NOTES + deleted.size(), count("SELECT count(*) FROM notes_fts"));
+    }
+
+    @Test
+    public void deleteAllButTheKeptNotes () {
+        dao.softDeleteNotesExcept(new int[]{7, 3}, 10L);
+        List<Integer> ids = new ArrayList<>();
+        for (NotePreview note : dao.getNotesBefore(0, Long.MAX_VALUE, Integer.MAX_VALUE, 100)) ids.add(note.getId());
+        assertEquals(Arrays.asList(7, 3), ids);
+        assertEquals(2, dao.matchNotes("garden", 100).size());
+        assertEquals(NOTES - 2, dao.undeleteNotes(10L));
+        assertEquals(NOTES, dao.matchNotes("garden", 100).size());
+    }
+
+    @Test
+    public void purgeRemovesExpiredTombstonesInBatches () {
+        List<Integer> expired = new ArrayList<>();
+        for (int id = 1; id <= 15; id++) expired.add(id);
+        dao.softDeleteNotesById(expired, 10L);
+        dao.softDeleteNote(16, 100L);
+
+        assertEquals(10, dao.purgeDeletedNotes(50L, 10));
+        assertEquals(5, dao.purgeDeletedNotes(50L, 10));
+        assertEquals(0, dao.purgeDeletedNotes(50L, 10));
+        assertEquals(NOTES - 15, count("SELECT count(*) FROM notes"));
+        assertEquals(NOTES - 15, count("SELECT count(*) FROM note_tags"));
+        assertEquals(0, dao.undeleteNotes(10L));
+        assertEquals(1, dao.undeleteNotes(100L));
+    }
+
+    @Test
+    public void editOfADeletedNoteBringsItBack () {
+        dao.softDeleteNote(2, 10L);
+        Note edited = new Note("note 2 quince", 5000L);
+        edited.setId(2);
+        dao.updateNoteWithHistory(edited);
+
+        assertEquals("note 2 quince", dao.getNoteById(2).getNoteText());
+        assertEquals(2, dao.getLatestRevisionNumber(2));
+        assertEquals(1, dao.matchNotes("quince", 10).size());
+        assertEquals(0, dao.undeleteNotes(10L));
+    }
+
+    @Test
+    public void editOfAPurgedNoteIsStoredAgain () {
+        dao.softDeleteNote(2, 10L);
+        assertEquals(1, dao.purgeDeletedNotes(50L, 10));
+        Note edited = new Note("note 2 quince", 5000L);
+        edited.setId(2);
+        dao.updateNoteWithHistory(edited);
+
+        assertEquals("note 2 quince", dao.getNoteById(2).getNoteText());
+        assertEquals(1, dao.matchNotes("quince", 10).size());
+        assertEquals(NOTES, dao.countNotes());
+    }
+
+    @Test
+    public void listAndPurgeGoThroughTheTombstoneIndex () {
+        assertTrue(plan("SELECT id, date FROM notes WHERE deleted_at = 0 AND date >= 0 AND date <= 5000 " +
+                "AND (date < 5000 OR id < 5) ORDER BY date DESC, id DESC LIMIT 10").contains("index_notes_deleted_at_date"));
+        assertTrue(plan("SELECT id FROM notes WHERE deleted_at > 0 AND deleted_at < 50 LIMIT 10").contains("index_notes_deleted_at_date"));
+    }
+
+    private String plan ( String sql ) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.query(new SimpleSQLiteQuery("EXPLAIN QUERY PLAN " + sql))) {
+            while (cursor.moveToNext()) plan.append(cursor.getString(cursor.getColumnCount() - 1)).append('\n');
+        }
+        return plan.toString();
+    }
+
+    private long count ( String sql ) {
+        try (Cursor cursor = db.query(new SimpleSQLiteQuery(sql))) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+}
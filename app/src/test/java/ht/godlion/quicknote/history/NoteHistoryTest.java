@@ -0,0 +1,123 @@
+package ht.godlion.quicknote.history;
+
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NoteRevision;
+import ht.godlion.quicknote.text.ChunkedText;
+
+import static org.junit.Assert.*;
+
+/**
+ * Saves a note many times through {@link NotesDao#updateNoteWithHistory} and checks that every
+ * revision can be rebuilt, that checkpoints bound the chains and that history goes with its note.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NoteHistoryTest {
+    private static final int EDITS = 40;
+
+    private NotesDB db;
+    private NotesDao dao;
+    private int noteId;
+    private final List<String> versions = new ArrayList<>();
+
+    @Before
+    public void setUp () {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class).allowMainThreadQueries().build();
+        dao = db.notesDao();
+        String text = "first version";
+        noteId = (int) dao.insertNote(new Note(text, 0L));
+        versions.add(text);
+        for (int i = 1; i <= EDITS; i++) {
+            text = text + "\nline " + i;
+            Note note = dao.getNoteById(noteId);
+            note.setNoteText(text);
+            note.setNoteDate(i);
+            dao.updateNoteWithHistory(note);
+            versions.add(text);
+        }
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+    }
+
+    @Test
+    public void everyRevisionIsRebuilt () {
+        assertEquals(EDITS + 1, dao.getLatestRevisionNumber(noteId));
+        for (int number = 1; number <= versions.size(); number++)
+            assertEquals(versions.get(number - 1), NoteHistory.rebuild(dao.getRevisionChain(noteId, number)));
+    }
+
+    @Test
+    public void chainsStartAtACheckpointAndStayShort () {
+        for (int number = 1; number <= versions.size(); number++) {
+            List<NoteRevision> chain = dao.getRevisionChain(noteId, number);
+            assertTrue(chain.get(0).isCheckpoint());
+            assertTrue(chain.size() <= NoteHistory.CHECKPOINT_INTERVAL);
+            assertEquals(number, chain.get(chain.size() - 1).getNumber());
+        }
+    }
+
+    @Test
+    public void revisionsAreListedNewestFirst () {
+        List<NoteRevision> revisions = dao.getRevisions(noteId);
+        assertEquals(EDITS + 1, revisions.size());
+        assertEquals(EDITS + 1, revisions.get(0).getNumber());
+        assertEquals(EDITS, revisions.get(0).getDate());
+    }
+
+    @Test
+    public void dateOnlyChangesAddNoRevision () {
+        Note note = dao.getNoteById(noteId);
+        note.setNoteDate(1_000L);
+        dao.updateNoteWithHistory(note);
+        assertEquals(EDITS + 1, dao.getLatestRevisionNumber(noteId));
+    }
+
+    @Test
+    public void historyGoesOnAfterTheNoteWasChunked () {
+        StringBuilder large = new StringBuilder(versions.get(EDITS));
+        while (!ChunkedText.isLarge(large.toString())) large.append(" large text");
+        save(large.toString(), EDITS + 1);
+        assertTrue(dao.getNoteById(noteId).isChunked());
+        assertEquals(EDITS + 1, dao.getLatestRevisionNumber(noteId));
+
+        save("small again", EDITS + 2);
+        versions.add("small again");
+        for (int i = 1; i <= 20; i++) {
+            save(versions.get(versions.size() - 1) + "\nedit " + i, EDITS + 2 + i);
+            versions.add(versions.get(versions.size() - 1) + "\nedit " + i);
+        }
+        assertEquals(versions.size(), dao.getLatestRevisionNumber(noteId));
+        for (int number = 1; number <= versions.size(); number++)
+            assertEquals(versions.get(number - 1), NoteHistory.rebuild(dao.getRevisionChain(noteId, number)));
+    }
+
+    private void save ( String text, long date ) {
+        Note note = dao.getNoteById(noteId);
+        note.setNoteText(text);
+        note.setNoteDate(date);
+        dao.updateNoteWithHistory(note);
+    }
+
+    @Test
+    public void historyIsDeletedWithItsNote () {
+        dao.deleteNotesById(Collections.singletonList(noteId));
+        assertTrue(dao.getRevisions(noteId).isEmpty());
+    }
+}
@@ -0,0 +1,77 @@
+package ht.godlion.quicknote.history;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TextDeltaTest {
+
+    @Test
+    public void fullTextRoundTrips () {
+        byte[] data = TextDelta.encodeText("hello");
+        assertTrue(TextDelta.isFullText(data));
+        assertEquals("hello", TextDelta.apply("anything", data));
+    }
+
+    @Test
+    public void deltaStoresOnlyTheChangedMiddle () {
+        String base = repeat("lorem ipsum dolor sit amet ", 20);
+        String text = base.substring(0, 200) + "EDIT" + base.substring(210);
+        byte[] data = TextDelta.encode(base, text);
+
+        assertFalse(TextDelta.isFullText(data));
+        assertTrue(data.length < 16);
+        assertEquals(text, TextDelta.apply(base, data));
+    }
+
+    @Test
+    public void insertionsDeletionsAndEmptyTexts () {
+        String[][] cases = {
+                {"", "new"}, {"old", ""}, {"", ""}, {"abc", "abc"}, {"abc", "abXc"}, {"abXc", "abc"},
+                {"aaaa", "aaaaaa"}, {"aaaaaa", "aaaa"}, {"start", "new start"}, {"end", "end new"}
+        };
+        for (String[] c : cases) assertEquals(c[1], TextDelta.apply(c[0], TextDelta.encode(c[0], c[1])));
+    }
+
+    @Test
+    public void surrogatePairsAreNeverSplit () {
+        String base = "note 😀 end";
+        String text = "note 😁 end";
+        assertEquals(text, TextDelta.apply(base, TextDelta.encode(base, text)));
+        assertEquals(base, TextDelta.apply(text, TextDelta.encode(text, base)));
+    }
+
+    @Test
+    public void largeReplacementsAreCompressed () {
+        String text = repeat("a repetitive line of text\n", 100);
+        byte[] data = TextDelta.encode("short", text);
+        assertTrue(data.length < text.length() / 4);
+        assertEquals(text, TextDelta.apply("short", data));
+    }
+
+    @Test
+    public void randomEditsRoundTrip () {
+        Random random = new Random(7);
+        String text = repeat("The quick brown fox jumps over the lazy dog. ", 50);
+        for (int i = 0; i < 500; i++) {
+            int start = random.nextInt(text.length() + 1);
+            int end = Math.min(text.length(), start + random.nextInt(20));
+            String next = text.substring(0, start) + repeat("x", random.nextInt(10)) + text.substring(end);
+            assertEquals(next, TextDelta.apply(text, TextDelta.encode(text, next)));
+            text = next;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deltaAgainstAnotherBaseIsRejected () {
+        TextDelta.apply("a different base", TextDelta.encode("base", "based"));
+    }
+
+    private static String repeat ( String s, int times ) {
+        StringBuilder builder = new StringBuilder(s.length() * times);
+        for (int i = 0; i < times; i++) builder.append(s);
+        return builder.toString();
+    }
+}
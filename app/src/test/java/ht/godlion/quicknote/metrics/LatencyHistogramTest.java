@@ -0,0 +1,99 @@
+package ht.godlion.quicknote.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndIncreasing () {
+        assertEquals(1024, LatencyHistogram.BUCKETS);
+        for (int i = 1; i < LatencyHistogram.BUCKETS; i++)
+            assertEquals(LatencyHistogram.highestInBucket(i - 1) + 1, LatencyHistogram.lowestInBucket(i));
+        assertEquals(LatencyHistogram.MAX_NANOS, LatencyHistogram.highestInBucket(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void everyValueFallsInItsBucket () {
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            long value = (long) Math.exp(random.nextDouble() * Math.log(LatencyHistogram.MAX_NANOS));
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.lowestInBucket(index) <= value);
+            assertTrue(value <= LatencyHistogram.highestInBucket(index));
+        }
+    }
+
+    @Test
+    public void smallValuesAreExact () {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) histogram.record(i);
+        assertEquals(10, histogram.getCount());
+        assertEquals(5.5, histogram.getMean(), 0);
+        assertEquals(5, histogram.getValueAtPercentile(50));
+        assertEquals(9, histogram.getValueAtPercentile(90));
+        assertEquals(10, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision () {
+        Random random = new Random(2);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[50_000];
+        for (int i = 0; i < values.length; i++) {
+            // Roughly log-normal around 2 ms, like a query or a bind.
+            values[i] = (long) (2_000_000 * Math.exp(random.nextGaussian()));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long approximate = histogram.getValueAtPercentile(percentile);
+            assertTrue(approximate >= exact);
+            assertTrue(percentile + ": " + approximate + " vs " + exact, approximate <= exact * 1.04);
+        }
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void outOfRangeValuesAreClamped () {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_NANOS, histogram.getMax());
+    }
+
+    @Test
+    public void emptyAndReset () {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMean(), 0);
+        histogram.record(1_000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted () throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 10_000; i++) histogram.record(i);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMax());
+    }
+}
@@ -0,0 +1,74 @@
+package ht.godlion.quicknote.metrics;
+
+import android.database.sqlite.SQLiteConstraintException;
+
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Collections;
+
+import ht.godlion.quicknote.db.NotesDB;
+import ht.godlion.quicknote.db.NotesDao;
+import ht.godlion.quicknote.model.Note;
+import ht.godlion.quicknote.model.NoteTag;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that calls through a traced DAO are timed by method, and what the dump shows.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MetricsTest {
+    private NotesDB db;
+    private NotesDao dao;
+
+    @Before
+    public void setUp () {
+        Metrics.reset();
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), NotesDB.class).allowMainThreadQueries().build();
+        dao = Metrics.traced(NotesDao.class, db.notesDao());
+    }
+
+    @After
+    public void tearDown () {
+        db.close();
+        Metrics.reset();
+    }
+
+    @Test
+    public void tracedDaoTimesEachCall () {
+        int id = (int) dao.insertNote(new Note("first", 1L));
+        dao.tagNote(id, Collections.singletonList("work"));
+        assertEquals("first", dao.getNoteById(id).getNoteText());
+        assertEquals("first", dao.getNoteById(id).getNoteText());
+
+        assertEquals(1, Metrics.histogram("NotesDao.insertNote").getCount());
+        assertEquals(2, Metrics.histogram("NotesDao.getNoteById").getCount());
+        // A default method counts once, not once per query it runs.
+        assertEquals(1, Metrics.histogram("NotesDao.tagNote").getCount());
+        assertEquals(0, Metrics.histogram("NotesDao.insertTag").getCount());
+    }
+
+    @Test(expected = SQLiteConstraintException.class)
+    public void tracedCallRethrowsTheOriginalException () {
+        // Neither the note nor the tag exists.
+        dao.insertNoteTags(Collections.singletonList(new NoteTag(999, 999)));
+    }
+
+    @Test
+    public void dumpListsCountersAndLatencies () {
+        Metrics.increment("NoteCache.hit");
+        Metrics.increment("NoteCache.hit");
+        Metrics.histogram("NotesAdapter.bind").record(1_500_000);
+        String dump = Metrics.dump();
+        assertTrue(dump, dump.contains("  NoteCache.hit: 2\n"));
+        assertTrue(dump, dump.contains("  NotesAdapter.bind: 1 1.500 1.500 1.500 1.500\n"));
+        assertEquals(0, Metrics.getCount("NoteCache.miss"));
+    }
+}
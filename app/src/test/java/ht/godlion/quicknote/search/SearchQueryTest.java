@@ -0,0 +1,60 @@
+package ht.godlion.quicknote.search;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import ht.godlion.quicknote.model.NoteMatch;
+
+import static org.junit.Assert.*;
+
+public class SearchQueryTest {
+
+    @Test
+    public void wordsBecomePrefixTerms () {
+        assertEquals("gro* list*", SearchQuery.toMatchExpression("Gro list"));
+    }
+
+    @Test
+    public void quotedTextBecomesPhrase () {
+        assertEquals("\"buy milk\" today*", SearchQuery.toMatchExpression("\"Buy  milk\" today"));
+        assertEquals("\"open phrase\"", SearchQuery.toMatchExpression("\"open phrase"));
+    }
+
+    @Test
+    public void syntaxCharactersAreDropped () {
+        assertEquals("a* b* c*", SearchQuery.toMatchExpression("a* -b (c):"));
+        assertEquals("and* or*", SearchQuery.toMatchExpression("AND OR"));
+        assertNull(SearchQuery.toMatchExpression("  *-() \"\" "));
+        assertNull(SearchQuery.toMatchExpression(null));
+    }
+
+    @Test
+    public void rankPrefersMoreHitsInShorterNotes () {
+        // One phrase, one column, 100 rows, average length 50; the term is in 10 rows.
+        NoteMatch longNote = match(1, 400, 1);
+        NoteMatch shortNote = match(2, 20, 1);
+        NoteMatch manyHits = match(3, 50, 5);
+        List<Integer> ranked = SearchRanker.rank(Arrays.asList(longNote, shortNote, manyHits));
+        assertEquals(Arrays.asList(3, 2, 1), ranked);
+    }
+
+    @Test
+    public void rankIgnoresMissingMatchInfo () {
+        assertEquals(0, SearchRanker.bm25(null), 0);
+        assertEquals(0, SearchRanker.bm25(new byte[4]), 0);
+    }
+
+    private static NoteMatch match ( int id, int length, int hits ) {
+        int[] info = {1, 1, 100, 50, length, hits, 40, 10};
+        ByteBuffer buffer = ByteBuffer.allocate(info.length * 4).order(ByteOrder.nativeOrder());
+        for (int value : info) buffer.putInt(value);
+        NoteMatch match = new NoteMatch();
+        match.setId(id);
+        match.setMatchInfo(buffer.array());
+        return match;
+    }
+}
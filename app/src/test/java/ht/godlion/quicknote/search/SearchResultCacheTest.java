@@ -0,0 +1,62 @@
+package ht.godlion.quicknote.search;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SearchResultCacheTest {
+    private final SearchResultCache cache = new SearchResultCache(2);
+
+    @Test
+    public void exactHitsAreCounted () {
+        List<Integer> ids = Arrays.asList(3, 1, 2);
+        cache.put("gard", "gard*", ids, true, cache.getVersion());
+        assertSame(ids, cache.get("gard*"));
+        assertNull(cache.get("gar*"));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void narrowingUsesLongestNarrowablePrefix () {
+        List<Integer> shorter = Arrays.asList(1, 2, 3, 4);
+        List<Integer> longer = Arrays.asList(1, 2);
+        cache.put("g", "g*", shorter, true, cache.getVersion());
+        cache.put("gard", "gard*", longer, true, cache.getVersion());
+        assertSame(longer, cache.getSuperset("garden gift"));
+        assertEquals(1, cache.getNarrowedCount());
+    }
+
+    @Test
+    public void largeAndPhraseResultsAreNotNarrowed () {
+        cache.put("gard", "gard*", Collections.singletonList(1), false, cache.getVersion());
+        cache.put("\"gard", "\"gard\"", Collections.singletonList(1), true, cache.getVersion());
+        assertNull(cache.getSuperset("garden"));
+        assertNull(cache.getSuperset("\"garden"));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted () {
+        cache.put("a", "a*", Collections.singletonList(1), true, cache.getVersion());
+        cache.put("b", "b*", Collections.singletonList(2), true, cache.getVersion());
+        cache.get("a*");
+        cache.put("c", "c*", Collections.singletonList(3), true, cache.getVersion());
+        assertNotNull(cache.get("a*"));
+        assertNull(cache.get("b*"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void clearDropsEntriesAndStalePuts () {
+        int version = cache.getVersion();
+        cache.put("a", "a*", Collections.singletonList(1), true, version);
+        cache.clear();
+        assertEquals(0, cache.size());
+        cache.put("a", "a*", Collections.singletonList(1), true, version);
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,136 @@
+package ht.godlion.quicknote.text;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class ChunkedTextTest {
+
+    @Test
+    public void randomEditsMatchStringBuilderAcrossSaves () {
+        Random random = new Random(21);
+        StringBuilder expected = new StringBuilder(text(random, 300_000));
+        ChunkedText text = ChunkedText.fromText(expected);
+        TreeMap<Long, String> store = new TreeMap<>();
+        apply(store, text.takeChanges(1L));
+
+        for (int round = 0; round < 2_000; round++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = Math.min(expected.length(), start + (random.nextInt(4) == 0 ? random.nextInt(100_000) : random.nextInt(20)));
+            String replacement = text(random, random.nextInt(10) == 0 ? random.nextInt(150_000) : random.nextInt(30));
+            text.replace(start, end, replacement);
+            expected.replace(start, end, replacement);
+            if (round % 50 == 0) apply(store, text.takeChanges(round));
+        }
+        assertEquals(expected.toString(), text.toString());
+        apply(store, text.takeChanges(0L));
+        assertEquals(expected.toString(), String.join("", store.values()));
+    }
+
+    @Test
+    public void smallEditWritesOneChunk () {
+        ChunkedText text = ChunkedText.fromText(text(new Random(1), 10 * ChunkedText.CHUNK_SIZE));
+        text.takeChanges(1L);
+        text.replace(5 * ChunkedText.CHUNK_SIZE + 10, 5 * ChunkedText.CHUNK_SIZE + 12, "edit");
+
+        ChunkedText.Changes changes = text.takeChanges(2L);
+        assertEquals(1, changes.getWrittenOrds().length);
+        assertEquals(0, changes.getDeletedOrds().length);
+        assertEquals(0, changes.getMovedFrom().length);
+        assertTrue(text.takeChanges(3L).isEmpty());
+    }
+
+    @Test
+    public void loadsOnlyTheChunksOfAWindow () {
+        String whole = text(new Random(2), 20 * ChunkedText.CHUNK_SIZE);
+        TreeMap<Long, String> store = new TreeMap<>();
+        apply(store, ChunkedText.fromText(whole).takeChanges(1L));
+        ChunkedText text = open(store);
+
+        int start = 7 * ChunkedText.CHUNK_SIZE + 100;
+        int end = start + ChunkedText.CHUNK_SIZE;
+        long[] missing = text.getMissingOrds(start, end);
+        assertEquals(2, missing.length);
+        try {
+            text.substring(start, end);
+            fail();
+        } catch (IllegalStateException expected) {}
+        for (long ord : missing) text.fill(ord, store.get(ord));
+        assertEquals(whole.substring(start, end), text.substring(start, end));
+        assertEquals(2, text.getLoadedChunkCount());
+
+        text.replace(start, start, "x");
+        text.evictOutside(0, 10);
+        assertEquals(1, text.getLoadedChunkCount());
+        assertNull(text.takeChanges(2L).getPrefix());
+    }
+
+    @Test
+    public void insertingAtTheEndOfAWindowUsesItsLastChunk () {
+        String whole = text(new Random(3), 4 * ChunkedText.CHUNK_SIZE);
+        TreeMap<Long, String> store = new TreeMap<>();
+        apply(store, ChunkedText.fromText(whole).takeChanges(1L));
+        ChunkedText text = open(store);
+        for (long ord : text.getMissingOrds(0, ChunkedText.CHUNK_SIZE)) text.fill(ord, store.get(ord));
+
+        text.replace(ChunkedText.CHUNK_SIZE, ChunkedText.CHUNK_SIZE, "tail");
+        apply(store, text.takeChanges(2L));
+        assertEquals(whole.substring(0, ChunkedText.CHUNK_SIZE) + "tail" + whole.substring(ChunkedText.CHUNK_SIZE),
+                String.join("", store.values()));
+    }
+
+    @Test
+    public void repeatedSplitsInOneGapRenumber () {
+        ChunkedText text = ChunkedText.fromText(text(new Random(4), 2 * ChunkedText.CHUNK_SIZE));
+        TreeMap<Long, String> store = new TreeMap<>();
+        apply(store, text.takeChanges(1L));
+        StringBuilder expected = new StringBuilder(text.toString());
+        String paste = text(new Random(5), ChunkedText.MAX_CHUNK_SIZE);
+        for (int i = 0; i < 40; i++) {
+            int at = ChunkedText.CHUNK_SIZE / 2;
+            text.replace(at, at, paste);
+            expected.insert(at, paste);
+            apply(store, text.takeChanges(i));
+        }
+        assertEquals(expected.toString(), String.join("", store.values()));
+    }
+
+    @Test
+    public void chunksNeverSplitSurrogatePairs () {
+        StringBuilder emoji = new StringBuilder();
+        while (emoji.length() < 3 * ChunkedText.CHUNK_SIZE) emoji.append("a😀");
+        ChunkedText text = ChunkedText.fromText(emoji);
+        for (String chunk : text.takeChanges(1L).getWrittenTexts())
+            assertFalse(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)));
+    }
+
+    /** Applies changes the way NotesDao.saveChunks does, to a map of order key to chunk. */
+    private static void apply ( TreeMap<Long, String> store, ChunkedText.Changes changes ) {
+        if (changes.replacesAll()) store.clear();
+        for (long ord : changes.getDeletedOrds()) assertNotNull(store.remove(ord));
+        TreeMap<Long, String> moved = new TreeMap<>();
+        for (int i = 0; i < changes.getMovedFrom().length; i++) moved.put(changes.getMovedTo()[i], store.remove(changes.getMovedFrom()[i]));
+        for (Long ord : moved.keySet()) assertNull(store.put(ord, moved.get(ord)));
+        for (int i = 0; i < changes.getWrittenOrds().length; i++) store.put(changes.getWrittenOrds()[i], changes.getWrittenTexts()[i]);
+    }
+
+    private static ChunkedText open ( TreeMap<Long, String> store ) {
+        long[] ords = new long[store.size()];
+        int[] lengths = new int[store.size()];
+        int i = 0;
+        for (Long ord : store.keySet()) {
+            ords[i] = ord;
+            lengths[i++] = store.get(ord).length();
+        }
+        return ChunkedText.fromChunks(ords, lengths);
+    }
+
+    private static String text ( Random random, int length ) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) text.append((char) ('a' + random.nextInt(26)));
+        return text.toString();
+    }
+}
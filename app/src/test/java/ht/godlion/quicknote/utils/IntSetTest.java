@@ -0,0 +1,58 @@
+package ht.godlion.quicknote.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class IntSetTest {
+
+    @Test
+    public void addContainsRemove () {
+        IntSet set = new IntSet();
+        assertTrue(set.add(7));
+        assertFalse(set.add(7));
+        assertTrue(set.contains(7));
+        assertFalse(set.contains(8));
+        assertTrue(set.remove(7));
+        assertFalse(set.remove(7));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZero () {
+        new IntSet().add(0);
+    }
+
+    @Test
+    public void matchesHashSetUnderRandomOperations () {
+        IntSet set = new IntSet();
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(18);
+        for (int i = 0; i < 200_000; i++) {
+            int value = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) assertEquals(expected.remove(value), set.remove(value));
+            else assertEquals(expected.add(value), set.add(value));
+        }
+        assertEquals(expected.size(), set.size());
+        for (int value = 1; value <= 5_000; value++) assertEquals(expected.contains(value), set.contains(value));
+
+        int[] values = set.toArray();
+        Arrays.sort(values);
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).sorted().toArray(), values);
+    }
+
+    @Test
+    public void clearEmptiesGrownSet () {
+        IntSet set = new IntSet();
+        for (int value = 1; value <= 1_000; value++) set.add(value);
+        set.clear();
+        assertEquals(0, set.size());
+        assertFalse(set.contains(500));
+        assertEquals(0, set.toArray().length);
+    }
+}
@@ -0,0 +1,43 @@
+package ht.godlion.quicknote.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NoteCodecTest {
+
+    @Test
+    public void shortTextsAreNotCompressed () {
+        assertNull(NoteCodec.compress(null));
+        assertNull(NoteCodec.compress(repeat("a", NoteCodec.COMPRESS_THRESHOLD)));
+    }
+
+    @Test
+    public void longTextsRoundTrip () {
+        String text = repeat("12:00:01 INFO request served in 12 ms\n", 1_000);
+        byte[] body = NoteCodec.compress(text);
+        assertNotNull(body);
+        assertTrue(body.length < text.length() / 10);
+        assertEquals(text, NoteCodec.decompress(body));
+    }
+
+    @Test
+    public void prefixNeverSplitsASurrogatePair () {
+        String text = repeat("a", NoteCodec.SEARCHABLE_PREFIX - 1) + "😀" + repeat("b", 10);
+        String prefix = NoteCodec.searchablePrefix(text);
+        assertEquals(NoteCodec.SEARCHABLE_PREFIX - 1, prefix.length());
+        assertEquals(repeat("abc", 3), NoteCodec.searchablePrefix(repeat("abc", 3)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedDataIsRejected () {
+        byte[] body = NoteCodec.compress(repeat("some text ", 5_000));
+        NoteCodec.inflate(body, 0, body.length / 2);
+    }
+
+    private static String repeat ( String s, int times ) {
+        StringBuilder builder = new StringBuilder(s.length() * times);
+        for (int i = 0; i < times; i++) builder.append(s);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package ht.godlion.quicknote.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class NoteUtilsTest {
+    private final TimeZone defaultZone = TimeZone.getDefault();
+
+    @After
+    public void tearDown () {
+        TimeZone.setDefault(defaultZone);
+        NoteUtils.onTimeZoneChanged();
+    }
+
+    @Test
+    public void matchesTheOriginalFormat () {
+        SimpleDateFormat legacy = new SimpleDateFormat("EEE, dd MMM yyyy 'at' hh:mm aaa", Locale.US);
+        Random random = new Random(9);
+        for (int i = 0; i < 10_000; i++) {
+            long time = 1_500_000_000_000L + (long) (random.nextDouble() * 400_000_000_000L);
+            assertEquals(legacy.format(new Date(time)), NoteUtils.dateFromLong(time));
+        }
+    }
+
+    @Test
+    public void sameMinuteReturnsCachedString () {
+        long minute = 1_700_000_040_000L;
+        assertSame(NoteUtils.dateFromLong(minute), NoteUtils.dateFromLong(minute + 59_999L));
+        assertNotEquals(NoteUtils.dateFromLong(minute), NoteUtils.dateFromLong(minute + 60_000L));
+    }
+
+    @Test
+    public void timeZoneChangeIsApplied () {
+        long time = 1_700_000_000_000L;
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        NoteUtils.onTimeZoneChanged();
+        String utc = NoteUtils.dateFromLong(time);
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+        NoteUtils.onTimeZoneChanged();
+        assertNotEquals(utc, NoteUtils.dateFromLong(time));
+    }
+}